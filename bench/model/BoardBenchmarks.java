@@ -0,0 +1,448 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the board and piece operations the game spends its time
+ * in.
+ *
+ * <p>Every benchmark reports operations per second; run with {@code -prof gc}
+ * for the bytes allocated per operation. Boards and games are seeded with
+ * the seeds of the {@code mySeed} parameter and line clears are measured at
+ * the stack heights of the {@code myStack} parameter, so results from different
+ * builds can be compared.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = BoardBenchmarks.WARMUPS, time = 1)
+@Measurement(iterations = BoardBenchmarks.ITERATIONS, time = 1)
+@Fork(1)
+public class BoardBenchmarks {
+
+    /** The number of warm-up iterations. */
+    static final int WARMUPS = 5;
+
+    /** The number of timed iterations. */
+    static final int ITERATIONS = 5;
+
+    /** The width of the boards measured. */
+    private static final int WIDTH = 10;
+
+    /** The height of the boards measured. */
+    private static final int HEIGHT = 20;
+
+    /** The seed of the states not measured at several seeds. */
+    private static final long SEED = 305L;
+
+    /** The size of the transposition table measured, in bytes. */
+    private static final long TABLE_BYTES = 64L << 20;
+
+    /** The number of hashes probed in the table, a power of two. */
+    private static final int TABLE_HASHES = 1 << 20;
+
+    /**
+     * Moves the current piece one column left and back.
+     *
+     * @param theState the board
+     * @return the piece's column
+     */
+    @Benchmark
+    public int moveLeftRight(final BoardState theState) {
+        theState.getBoard().moveLeft();
+        theState.getBoard().moveRight();
+        return theState.getBoard().getCurrentPiece().getX();
+    }
+
+    /**
+     * Rotates the current piece.
+     *
+     * @param theState the board
+     * @return the piece's rotation
+     */
+    @Benchmark
+    public int rotateCW(final BoardState theState) {
+        theState.getBoard().rotateCW();
+        return ((AbstractPiece) theState.getBoard().getCurrentPiece()).getRotationIndex();
+    }
+
+    /**
+     * Moves the current piece down a row, freezing it at the bottom.
+     *
+     * @param theState the board
+     * @return the number of pieces frozen
+     */
+    @Benchmark
+    public int moveDown(final BoardState theState) {
+        theState.getBoard().moveDown();
+        theState.restartIfOver();
+        return theState.getBoard().getPiecesFrozen();
+    }
+
+    /**
+     * Drops the current piece.
+     *
+     * @param theState the board
+     * @return the number of pieces frozen
+     */
+    @Benchmark
+    public int hardDrop(final BoardState theState) {
+        theState.getBoard().hardDrop();
+        theState.restartIfOver();
+        return theState.getBoard().getPiecesFrozen();
+    }
+
+    /**
+     * Clears four lines from the bottom of a stack and puts four rows back.
+     *
+     * @param theState the stack
+     * @return the number of lines cleared
+     */
+    @Benchmark
+    public int clearLines(final ClearState theState) {
+        return theState.clear();
+    }
+
+    /**
+     * Computes a piece's blocks on the board.
+     *
+     * @param theState the pieces
+     * @return the coordinates
+     */
+    @Benchmark
+    public int[][] getBoardCoordinates(final PieceState theState) {
+        return theState.getPiece().getBoardCoordinates();
+    }
+
+    /**
+     * Copies a piece.
+     *
+     * @param theState the pieces
+     * @return the copy
+     * @throws CloneNotSupportedException never
+     */
+    @Benchmark
+    public Piece pieceClone(final PieceState theState) throws CloneNotSupportedException {
+        return theState.getPiece().clone();
+    }
+
+    /**
+     * Extracts the features the bots score a board by.
+     *
+     * @param theState the stacked board
+     * @return the number of holes
+     */
+    @Benchmark
+    public int extractFeatures(final StackState theState) {
+        return theState.extract();
+    }
+
+    /**
+     * Writes out the board.
+     *
+     * @param theState the stacked board
+     * @return the board as text
+     */
+    @Benchmark
+    public String boardToString(final StackState theState) {
+        return theState.getBoard().toString();
+    }
+
+    /**
+     * Looks up a hash in a table larger than the caches, half of the hashes
+     * stored.
+     *
+     * @param theState the table
+     * @return the entry
+     */
+    @Benchmark
+    public long tableProbe(final TableState theState) {
+        return theState.probe();
+    }
+
+    /**
+     * Plays a full game with random inputs, so the score is games per second.
+     *
+     * @param theState the engine
+     * @return the number of ticks the game lasted
+     */
+    @Benchmark
+    public long randomGame(final GameState theState) {
+        return theState.play();
+    }
+
+    /**
+     * A board with seeded pieces.
+     */
+    @State(Scope.Thread)
+    public static class BoardState {
+
+        /** The seed of the pieces. */
+        @Param({"305", "2014"})
+        private long mySeed;
+
+        /** The board played on. */
+        private Board myBoard;
+
+        /**
+         * Starts the game.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            myBoard = new Board(WIDTH, HEIGHT, new UniformRandomizer(mySeed));
+        }
+
+        /**
+         * @return the board played on
+         */
+        Board getBoard() {
+            return myBoard;
+        }
+
+        /**
+         * Starts a new game if the current one is over.
+         */
+        void restartIfOver() {
+            if (myBoard.isGameOver()) {
+                myBoard.newGame(WIDTH, HEIGHT, null);
+            }
+        }
+    }
+
+    /**
+     * A board with a ragged stack holding holes.
+     */
+    @State(Scope.Thread)
+    public static class StackState {
+
+        /** The board. */
+        private final Board myBoard = new Board(WIDTH, HEIGHT, new UniformRandomizer(SEED));
+
+        /** The extractor measured. */
+        private final BoardFeatures myFeatures = new BoardFeatures();
+
+        /** The features extracted. */
+        private final int[] myValues = new int[BoardFeatures.COUNT];
+
+        /**
+         * Builds the stack.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < WIDTH * 2; i++) {
+                for (int move = 0; move < i % WIDTH / 2; move++) {
+                    myBoard.moveLeft();
+                }
+                for (int turn = 0; turn < i % 3; turn++) {
+                    myBoard.rotateCW();
+                }
+                myBoard.hardDrop();
+                if (myBoard.isGameOver()) {
+                    myBoard.newGame(WIDTH, HEIGHT, null);
+                }
+            }
+        }
+
+        /**
+         * @return the board
+         */
+        Board getBoard() {
+            return myBoard;
+        }
+
+        /**
+         * Extracts the board's features.
+         *
+         * @return the number of holes
+         */
+        int extract() {
+            myFeatures.extract(myBoard, myValues, 0);
+            return myValues[BoardFeatures.HOLES];
+        }
+    }
+
+    /**
+     * A stack of nearly full rows, kept at the same height by putting back
+     * the rows each clear takes away.
+     */
+    @State(Scope.Thread)
+    public static class ClearState {
+
+        /** The number of lines cleared at once. */
+        private static final int LINES = Scoring.MAX_LINES;
+
+        /** The kinds of blocks. */
+        private static final Block[] BLOCKS = Block.values();
+
+        /** The height of the stack, at least four. */
+        @Param({"4", "12", "20"})
+        private int myStack;
+
+        /** The frozen blocks. */
+        private final BitBoard myBlocks = new BitBoard(WIDTH, HEIGHT + LINES);
+
+        /**
+         * Builds the stack.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            myBlocks.reset(WIDTH, HEIGHT + LINES);
+            fillRows(0, myStack);
+        }
+
+        /**
+         * Completes and clears the bottom four rows and refills the top.
+         *
+         * @return the number of lines cleared
+         */
+        int clear() {
+            for (int y = 0; y < LINES; y++) {
+                myBlocks.set(0, y, Block.I);
+            }
+            final int result = myBlocks.clearFullRows(0, LINES - 1);
+            fillRows(myStack - LINES, myStack);
+            return result;
+        }
+
+        /**
+         * Fills rows in every column but the first.
+         *
+         * @param theLow the lowest row to fill
+         * @param theHigh the row above the highest row to fill
+         */
+        private void fillRows(final int theLow, final int theHigh) {
+            for (int y = theLow; y < theHigh; y++) {
+                for (int x = 1; x < WIDTH; x++) {
+                    myBlocks.set(x, y, BLOCKS[1 + x % (BLOCKS.length - 1)]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A piece in the middle of the board.
+     */
+    @State(Scope.Thread)
+    public static class PieceState {
+
+        /** The piece measured. */
+        private final AbstractPiece myPiece = new TPiece(WIDTH / 2, HEIGHT / 2);
+
+        /**
+         * @return the piece measured
+         */
+        AbstractPiece getPiece() {
+            return myPiece;
+        }
+    }
+
+    /**
+     * A table with half of a set of random hashes stored.
+     */
+    @State(Scope.Thread)
+    public static class TableState {
+
+        /** The table measured, larger than the caches. */
+        private final TranspositionTable myTable = new TranspositionTable(TABLE_BYTES);
+
+        /** The hashes probed. */
+        private final long[] myHashes = new long[TABLE_HASHES];
+
+        /** The index of the next hash probed. */
+        private int myNext;
+
+        /**
+         * Fills the table.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            final SplittableRandom random = new SplittableRandom(SEED);
+            myTable.clear();
+            final int age = myTable.newSearch();
+            for (int i = 0; i < myHashes.length; i++) {
+                myHashes[i] = random.nextLong();
+                if (i % 2 == 0) {
+                    myTable.store(myHashes[i], i, TranspositionTable.NO_MOVE, 0, age);
+                }
+            }
+        }
+
+        /**
+         * Probes the next hash.
+         *
+         * @return the entry
+         */
+        long probe() {
+            final long result = myTable.probe(myHashes[myNext]);
+            myNext = myNext + 1 & TABLE_HASHES - 1;
+            return result;
+        }
+    }
+
+    /**
+     * An engine playing games with random inputs, each on the next seed.
+     */
+    @State(Scope.Thread)
+    public static class GameState {
+
+        /** The seed of the first game and of the inputs. */
+        @Param({"305", "2014"})
+        private long mySeed;
+
+        /** The engine playing the games. */
+        private final GameEngine myEngine = new GameEngine(WIDTH, HEIGHT,
+                                                           new BagRandomizer());
+
+        /** The inputs a game may be given. */
+        private final Action[] myActions = Action.values();
+
+        /** The source of the random inputs. */
+        private SplittableRandom myInputs;
+
+        /** The seed of the next game. */
+        private long myNextSeed;
+
+        /**
+         * Starts over from the first seed.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            myInputs = new SplittableRandom(mySeed);
+            myNextSeed = mySeed;
+        }
+
+        /**
+         * Plays a game to the end.
+         *
+         * @return the number of ticks the game lasted
+         */
+        long play() {
+            myEngine.reset(myNextSeed);
+            myNextSeed++;
+            while (!myEngine.isGameOver()) {
+                myEngine.apply(myActions[myInputs.nextInt(myActions.length)]);
+                myEngine.step();
+            }
+            return myEngine.getTicks();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.List;
+
+/**
+ * Counts the placements reachable from fixed boards, the way move generators
+ * for chess are checked with "perft" counts.
+ *
+ * <p>For each fixture the count of every sequence of placements up to a depth
+ * is compared with a known count, and every placement of the first piece is
+ * checked by applying its inputs to a copy of the board and comparing the
+ * result with locking the piece at the placement directly. Then the fixture
+ * is counted again and again for a second to measure placements per second.
+ *
+ * <p>Run with the names, or parts of names, of the fixtures to check; with no
+ * arguments every fixture is checked. The exit status is 1 if any check fails.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class PlacementPerft {
+
+    /** The width of the fixture boards. */
+    private static final int WIDTH = 10;
+
+    /** The height of the fixture boards. */
+    private static final int HEIGHT = 20;
+
+    /** The block the fixtures' frozen cells are filled with. */
+    private static final Block FILL = Block.O;
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS = 1e9;
+
+    /** The time spent measuring each fixture, in nanoseconds. */
+    private static final long MEASURE = 1_000_000_000L;
+
+    /** The fixtures. */
+    private static final Fixture[] FIXTURES = {
+        new Fixture("empty", "TIOLJSZ", new long[] {34, 596, 5_542},
+                    ""),
+        new Fixture("tspin", "TTZLS", new long[] {35, 1_257, 23_303},
+                    "XX   XXXXX",
+                    "XX    XXXX",
+                    "XXX XXXXXX",
+                    "XXX XXXXXX"),
+        new Fixture("cave", "ISJZ", new long[] {22, 494, 20_057},
+                    "     XXXX ",
+                    "          ",
+                    "  X       ",
+                    "XXX  XXXX ",
+                    "XX   XXXX "),
+        new Fixture("tall", "OILT", new long[] {9, 153, 1_258},
+                    "XXXXXXX XX",
+                    "XXXX XXXXX",
+                    "XXXXXXX XX",
+                    "XXX XXXXXX",
+                    "XXXXXXX XX",
+                    "XX XXXXXXX",
+                    "XXXXXXX XX",
+                    "XXXX XXXXX",
+                    "XXXXXXX XX",
+                    "XXX XXXXXX",
+                    "XXXXXXX XX",
+                    "XX XXXXXXX",
+                    "XXXXXXX XX",
+                    "XXXX XXXXX",
+                    "XXXXXXX XX",
+                    "XXX XXXXXX",
+                    "XXXXXXX XX",
+                    "XX XXXXXXX"),
+    };
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PlacementPerft() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Checks and measures the fixtures.
+     *
+     * @param theArgs the names, or parts of names, of the fixtures to check
+     */
+    public static void main(final String[] theArgs) {
+        System.out.println("# " + System.getProperty("java.vm.name") + " "
+                           + System.getProperty("java.version"));
+        boolean passed = true;
+        for (final Fixture fixture : FIXTURES) {
+            if (selected(fixture.myName, theArgs)) {
+                passed &= check(fixture);
+            }
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks one fixture and prints its results.
+     *
+     * @param theFixture the fixture
+     * @return true if every check passed
+     */
+    private static boolean check(final Fixture theFixture) {
+        final Board board = theFixture.create();
+        final PlacementGenerator[] generators =
+            new PlacementGenerator[theFixture.myCounts.length];
+        final long[][] states = new long[generators.length][board.stateSize()];
+        for (int i = 0; i < generators.length; i++) {
+            generators[i] = new PlacementGenerator();
+        }
+
+        final boolean inputs = checkInputs(board);
+        boolean result = inputs;
+        for (int depth = 1; depth <= generators.length; depth++) {
+            final long count = perft(board, depth, generators, states);
+            final long expected = theFixture.myCounts[depth - 1];
+            result &= count == expected;
+            System.out.println(String.format("%-8s depth %d %,12d %s", theFixture.myName,
+                                             depth, count, verdict(count == expected)));
+        }
+
+        long nodes = 0;
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            nodes += perft(board, generators.length, generators, states);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE);
+        System.out.println(String.format("%-8s inputs %s %,14.0f placements/s",
+                                         theFixture.myName, verdict(inputs),
+                                         nodes * NANOS / elapsed));
+        return result;
+    }
+
+    /**
+     * Counts the sequences of placements of the next pieces of a board.
+     * The board is left as it was.
+     *
+     * @param theBoard the board
+     * @param theDepth the number of pieces to place, at least 1
+     * @param theGenerators a generator for each depth
+     * @param theStates room to save the board at each depth
+     * @return the number of sequences
+     */
+    private static long perft(final Board theBoard, final int theDepth,
+                              final PlacementGenerator[] theGenerators,
+                              final long[][] theStates) {
+        final PlacementGenerator generator = theGenerators[theDepth - 1];
+        final long[] state = theStates[theDepth - 1];
+        long result = generator.generate(theBoard);
+        if (theDepth > 1) {
+            result = 0;
+            theBoard.saveState(state, 0);
+            for (int i = 0; i < generator.getCount(); i++) {
+                generator.place(theBoard, i);
+                if (!theBoard.isGameOver()) {
+                    result += perft(theBoard, theDepth - 1, theGenerators, theStates);
+                }
+                theBoard.restoreState(state, 0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that the inputs of every placement of a board's current piece
+     * lock it where the placement says.
+     *
+     * @param theBoard the board, which is left as it was
+     * @return true if every placement's inputs are right
+     */
+    private static boolean checkInputs(final Board theBoard) {
+        final PlacementGenerator generator = new PlacementGenerator();
+        final long[] start = new long[theBoard.stateSize()];
+        final long[] placed = new long[theBoard.stateSize()];
+        final long[] played = new long[theBoard.stateSize()];
+        theBoard.saveState(start, 0);
+        boolean result = true;
+        final int count = generator.generate(theBoard);
+        for (int i = 0; i < count; i++) {
+            generator.place(theBoard, i);
+            final int size = theBoard.saveState(placed, 0);
+            theBoard.restoreState(start, 0);
+            final List<Action> inputs = generator.getInputs(i);
+            for (final Action input : inputs) {
+                input.applyTo(theBoard);
+            }
+            theBoard.saveState(played, 0);
+            theBoard.restoreState(start, 0);
+            for (int j = 0; j < size; j++) {
+                result &= placed[j] == played[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param thePassed whether a check passed
+     * @return the word reported for the check
+     */
+    private static String verdict(final boolean thePassed) {
+        String result = "FAIL";
+        if (thePassed) {
+            result = "ok";
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether a fixture was asked for.
+     *
+     * @param theName the name of the fixture
+     * @param theArgs the names, or parts of names, asked for
+     * @return true if the fixture should be checked
+     */
+    private static boolean selected(final String theName, final String[] theArgs) {
+        boolean result = theArgs.length == 0;
+        for (final String arg : theArgs) {
+            if (theName.contains(arg)) {
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A board with frozen blocks and a fixed sequence of pieces, and the
+     * known number of sequences of placements at each depth.
+     */
+    private static final class Fixture {
+
+        /** The name of the fixture. */
+        private final String myName;
+
+        /** The pieces dealt, in order and then repeated. */
+        private final String myPieces;
+
+        /** The number of sequences of placements at each depth from 1. */
+        private final long[] myCounts;
+
+        /** The rows of frozen blocks from the top down; X is a block. */
+        private final String[] myRows;
+
+        /**
+         * Creates a fixture.
+         *
+         * @param theName the name of the fixture
+         * @param thePieces the pieces dealt, by letter
+         * @param theCounts the number of sequences at each depth from 1
+         * @param theRows the rows of frozen blocks from the top down
+         */
+        Fixture(final String theName, final String thePieces, final long[] theCounts,
+                final String... theRows) {
+            myName = theName;
+            myPieces = thePieces;
+            myCounts = theCounts;
+            myRows = theRows;
+        }
+
+        /**
+         * @return a board set up as the fixture describes
+         */
+        Board create() {
+            final byte[] types = new byte[myPieces.length()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = (byte) Block.valueOf(myPieces.substring(i, i + 1)).ordinal();
+            }
+            final Board result = new Board(WIDTH, HEIGHT, new Sequence(types));
+            final BitBoard blocks = result.getFrozenBits();
+            for (int row = 0; row < myRows.length; row++) {
+                final int y = myRows.length - 1 - row;
+                for (int x = 0; x < myRows[row].length(); x++) {
+                    if (myRows[row].charAt(x) != ' ') {
+                        blocks.set(x, y, FILL);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Deals a fixed sequence of pieces over and over.
+     */
+    private static final class Sequence implements Randomizer {
+
+        /** The pieces, as Block ordinals. */
+        private final byte[] myTypes;
+
+        /** The index of the next piece. */
+        private int myNext;
+
+        /**
+         * Creates a sequence.
+         *
+         * @param theTypes the pieces, as Block ordinals
+         */
+        Sequence(final byte[] theTypes) {
+            myTypes = theTypes;
+        }
+
+        @Override
+        public void reset(final long theSeed) {
+            myNext = 0;
+        }
+
+        @Override
+        public int next() {
+            final int result = myTypes[myNext];
+            myNext = (myNext + 1) % myTypes.length;
+            return result;
+        }
+
+        @Override
+        public void fill(final byte[] theBuffer, final int theOffset, final int theLength) {
+            for (int i = theOffset; i < theOffset + theLength; i++) {
+                theBuffer[i] = (byte) next();
+            }
+        }
+
+        @Override
+        public Randomizer split() {
+            return new Sequence(myTypes);
+        }
+    }
+}
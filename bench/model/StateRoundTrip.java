@@ -0,0 +1,114 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Checks that saved states put boards back exactly, on boards of several
+ * heights including ones taller than a byte can count.
+ *
+ * <p>For each height a seeded game drops pieces in random columns until it
+ * ends. Every few pieces its state is saved and restored onto a board of
+ * the default size, which must then match it in size, state hash and text,
+ * and a {@link StateHistory} is rewound over the pieces played since its
+ * last save, which must give back the hash saved.
+ *
+ * <p>The exit status is 1 if any check fails.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class StateRoundTrip {
+
+    /** The width of the boards. */
+    private static final int WIDTH = 10;
+
+    /** The heights of the boards. */
+    private static final int[] HEIGHTS = {20, 255, 300, 1000};
+
+    /** The seed of the pieces and moves. */
+    private static final long SEED = 305L;
+
+    /** The number of pieces dropped between checks. */
+    private static final int INTERVAL = 5;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StateRoundTrip() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Checks every height.
+     *
+     * @param theArgs ignored
+     */
+    public static void main(final String[] theArgs) {
+        boolean passed = true;
+        for (final int height : HEIGHTS) {
+            passed &= check(height);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays a game on a board of one height, checking its saved states.
+     *
+     * @param theHeight the height of the board
+     * @return true if every check passed
+     */
+    private static boolean check(final int theHeight) {
+        final Board board = new Board(WIDTH, theHeight, new UniformRandomizer(SEED));
+        final Board copy = new Board();
+        final StateHistory history = new StateHistory(board, 1);
+        final long[] state = new long[board.stateSize()];
+        final SplittableRandom moves = new SplittableRandom(SEED);
+
+        boolean result = true;
+        int checks = 0;
+        long saved = board.getStateHash();
+        history.save();
+        while (!board.isGameOver()) {
+            for (int turn = moves.nextInt(4); turn > 0; turn--) {
+                board.rotateCW();
+            }
+            final int shift = moves.nextInt(WIDTH) - WIDTH / 2;
+            for (int move = 0; move < Math.abs(shift); move++) {
+                if (shift < 0) {
+                    board.moveLeft();
+                } else {
+                    board.moveRight();
+                }
+            }
+            board.hardDrop();
+            if (board.getPiecesFrozen() % INTERVAL == 0) {
+                board.saveState(state, 0);
+                copy.restoreState(state, 0);
+                result &= copy.getWidth() == board.getWidth()
+                          && copy.getHeight() == board.getHeight()
+                          && copy.getStateHash() == board.getStateHash()
+                          && copy.toString().equals(board.toString());
+
+                final long hash = board.getStateHash();
+                history.rewind();
+                result &= board.getStateHash() == saved;
+                board.restoreState(state, 0);
+                result &= board.getStateHash() == hash;
+                saved = hash;
+                history.save();
+                checks++;
+            }
+        }
+        System.out.println(String.format("%dx%-5d %,6d pieces %,4d rows %,4d checks %s", WIDTH,
+                                         theHeight, board.getPiecesFrozen(),
+                                         board.getFrozenBits().getRowCount(), checks,
+                                         result ? "ok" : "FAILED"));
+        return result;
+    }
+}
@@ -7,6 +7,9 @@ package model;
 /**
  * Provides default behavior for Tetris Pieces.
  * 
+ * <p>A piece only stores its type, rotation index and position; its geometry
+ * is read from the shared tables in {@link PieceShapes}.
+ * 
  * @author Alan Fowler
  * @version Autumn 2014
  */
@@ -15,7 +18,7 @@ public abstract class AbstractPiece implements Piece, Cloneable {
     /**
      * The number of blocks in a piece.
      */
-    private static final int BLOCKS = 4;
+    private static final int BLOCKS = PieceShapes.BLOCKS;
 
     /** The x coordinate of this Piece. */
     private int myX;
@@ -23,9 +26,6 @@ public abstract class AbstractPiece implements Piece, Cloneable {
     /** The y coordinate of this Piece. */
     private int myY;
 
-    /** The rotational states of this Piece. */
-    private int[][][] myRotations;
-
     /** The index of the current rotational state of this Piece. */
     private int myCurrentRotation;
 
@@ -35,25 +35,53 @@ public abstract class AbstractPiece implements Piece, Cloneable {
     /**
      * Creates a new piece at the given coordinates.
      * 
+     * @param theX the initial x coordinate for this piece.
+     * @param theY the initial y coordinate for this piece.
+     * @param theBlock the type of block.
+     */
+    protected AbstractPiece(final int theX, final int theY, final Block theBlock) {
+        myCurrentRotation = 0;
+        myX = theX;
+        myY = theY;
+        myBlock = theBlock;
+    }
+
+    /**
+     * Creates a new piece at the given coordinates with the given rotations.
+     * 
+     * <p>The geometry of every piece is read from {@link PieceShapes}, so
+     * the rotations must be the ones registered there for the block type.
+     * 
      * @param theRotations the rotational states for this Piece.
      * @param theX the initial x coordinate for this piece.
      * @param theY the initial y coordinate for this piece.
      * @param theBlock the type of block.
+     * @throws IllegalArgumentException if theRotations are not the rotations
+     *         of theBlock's piece type
      */
     protected AbstractPiece(final int[][][] theRotations, final int theX, final int theY,
                             final Block theBlock) {
-        
-        // make a defensive copy of theRotations 3D array since arrays are mutable
-        myRotations = new int[theRotations.length][theRotations[0].length][];
+        this(theX, theY, theBlock);
+        if (!PieceShapes.hasRotations(theBlock.ordinal(), theRotations)) {
+            throw new IllegalArgumentException("Rotations do not match " + theBlock);
+        }
+    }
+
+    /**
+     * Makes a deep copy of a table of rotations, since arrays are mutable.
+     * 
+     * @param theRotations the x and y-coordinates for all rotations of a piece
+     * @return the copy
+     */
+    static int[][][] copyRotations(final int[][][] theRotations) {
+        final int[][][] result = new int[theRotations.length][][];
         for (int array2D = 0; array2D < theRotations.length; array2D++) {
-            for (int array1D = 0; array1D < theRotations[0].length; array1D++) {
-                myRotations[array2D][array1D] = theRotations[array2D][array1D].clone();
+            result[array2D] = new int[theRotations[array2D].length][];
+            for (int array1D = 0; array1D < theRotations[array2D].length; array1D++) {
+                result[array2D][array1D] = theRotations[array2D][array1D].clone();
             }
         }
-        myCurrentRotation = 0;
-        myX = theX;
-        myY = theY;
-        myBlock = theBlock;
+        return result;
     }
 
     /**
@@ -80,14 +108,34 @@ public abstract class AbstractPiece implements Piece, Cloneable {
         myY--;
     }
 
+    /**
+     * Shifts the piece down several spaces at once.
+     * 
+     * @param theRows the number of spaces to move down
+     */
+    final void moveDown(final int theRows) {
+        myY -= theRows;
+    }
+
+    /**
+     * Returns the piece to its starting rotation at a new position,
+     * so that the same piece can be dealt again.
+     *
+     * @param theX the new x-coordinate
+     * @param theY the new y-coordinate
+     */
+    final void reset(final int theX, final int theY) {
+        myCurrentRotation = 0;
+        myX = theX;
+        myY = theY;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public final void rotateCW() {
-        if (myRotations.length > 1) {
-            myCurrentRotation = (myCurrentRotation + 1) % myRotations.length;
-        }
+        myCurrentRotation = PieceShapes.nextRotation(myBlock.ordinal(), myCurrentRotation);
     }
 
     /**
@@ -96,7 +144,28 @@ public abstract class AbstractPiece implements Piece, Cloneable {
      * @return The coordinates of this piece's current rotation.
      */
     public final int[][] getRotation() {
-        return myRotations[myCurrentRotation].clone();
+        final int shape = getShape();
+        final int[][] result = new int[BLOCKS][2];
+
+        for (int i = 0; i < BLOCKS; i++) {
+            result[i][0] = PieceShapes.cellX(shape, i);
+            result[i][1] = PieceShapes.cellY(shape, i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the current rotational state of this Piece.
+     */
+    public final int getRotationIndex() {
+        return myCurrentRotation;
+    }
+
+    /**
+     * @return the shape of this Piece's current rotation in {@link PieceShapes}.
+     */
+    public final int getShape() {
+        return PieceShapes.shape(myBlock.ordinal(), myCurrentRotation);
     }
 
     /**
@@ -122,12 +191,32 @@ public abstract class AbstractPiece implements Piece, Cloneable {
         final int[][] result = new int[BLOCKS][2];
 
         for (int i = 0; i < BLOCKS; i++) {
-            result[i][0] = myRotations[myCurrentRotation][i][0] + myX;
-            result[i][1] = myRotations[myCurrentRotation][i][1] + myY;
+            result[i][0] = getBoardX(i);
+            result[i][1] = getBoardY(i);
         }
         return result;
     }
 
+    /**
+     * Returns the board x coordinate of one block of this Piece without allocating.
+     * 
+     * @param theBlock the block index, 0 to 3
+     * @return the x coordinate of the block on the board
+     */
+    public final int getBoardX(final int theBlock) {
+        return PieceShapes.cellX(getShape(), theBlock) + myX;
+    }
+
+    /**
+     * Returns the board y coordinate of one block of this Piece without allocating.
+     * 
+     * @param theBlock the block index, 0 to 3
+     * @return the y coordinate of the block on the board
+     */
+    public final int getBoardY(final int theBlock) {
+        return PieceShapes.cellY(getShape(), theBlock) + myY;
+    }
+
     /**
      * @return the block type of this piece
      */
@@ -140,20 +229,8 @@ public abstract class AbstractPiece implements Piece, Cloneable {
      */
     @Override
     public Piece clone() throws CloneNotSupportedException {
-
-        // clone this Piece
-        final Piece result = (Piece) super.clone();
-
-        // now separately clone the my_rotations 3D array since arrays are mutable
-        final int[][][] newArray3D = new int[myRotations.length][myRotations[0].length][];
-        for (int array2D = 0; array2D < myRotations.length; array2D++) {
-            for (int array1D = 0; array1D < myRotations[0].length; array1D++) {
-                newArray3D[array2D][array1D] = myRotations[array2D][array1D].clone();
-            }
-        }
-        ((AbstractPiece) result).myRotations = newArray3D;
-
-        return result;
+        // all state is primitive, the geometry is shared
+        return (Piece) super.clone();
     }
 
     /**
@@ -162,24 +239,19 @@ public abstract class AbstractPiece implements Piece, Cloneable {
     @Override
     public String toString() {
 
-        final int width = determineWidth();
-        final int height = determineHeight();
+        final int shape = getShape();
+        final int width = PieceShapes.maxX(shape) + 1;
+        final int height = PieceShapes.maxY(shape) + 1;
         final StringBuilder sb = new StringBuilder();
 
         // Construct the string by walking through the piece top to bottom, left to right.
         for (int col = height; col >= 0; col--) {
             for (int row = 0; row < width; row++) {
-                boolean found = false;
-                for (int b = 0; b < BLOCKS; b++) {
-                    if (myRotations[myCurrentRotation][b][1] == col
-                        && myRotations[myCurrentRotation][b][0] == row) {
-                        // There is a block here, so print and move on
-                        sb.append("[]");
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
+                if (col < PieceShapes.BOX
+                    && (PieceShapes.rowMask(shape, col) & (1L << row)) != 0) {
+                    // There is a block here
+                    sb.append("[]");
+                } else {
                     // None of the blocks are here, so put in empty space
                     sb.append("  ");
                 }
@@ -189,34 +261,4 @@ public abstract class AbstractPiece implements Piece, Cloneable {
         }
         return sb.toString();
     }
-    
-    /**
-     * Returns the height of this piece.
-     * 
-     * @return The height of this piece
-     */
-    private int determineHeight() {
-        int result = 0;
-        for (int i = 0; i < BLOCKS; i++) {
-            if (myRotations[myCurrentRotation][i][1] > result) {
-                result = myRotations[myCurrentRotation][i][1];
-            }
-        }
-        return result + 1;
-    }
-
-    /**
-     * Returns the width of this piece.
-     * 
-     * @return The width of this piece
-     */
-    private int determineWidth() {
-        int result = 0;
-        for (int i = 0; i < BLOCKS; i++) {
-            if (myRotations[myCurrentRotation][i][0] > result) {
-                result = myRotations[myCurrentRotation][i][0];
-            }
-        }
-        return result + 1;
-    }
 }
@@ -0,0 +1,81 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Provides default behavior for Randomizers seeded from a SplittableRandom.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public abstract class AbstractRandomizer implements Randomizer {
+
+    /** The number of piece types. */
+    protected static final int TYPES = 7;
+
+    /** The source of random numbers. */
+    private SplittableRandom myRandom;
+
+    /**
+     * Creates a randomizer drawing from the given source.
+     * 
+     * @param theRandom the source of random numbers
+     */
+    protected AbstractRandomizer(final SplittableRandom theRandom) {
+        myRandom = theRandom;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void reset(final long theSeed) {
+        myRandom = new SplittableRandom(theSeed);
+        restart();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fill(final byte[] theBuffer, final int theOffset, final int theLength) {
+        for (int i = theOffset; i < theOffset + theLength; i++) {
+            theBuffer[i] = (byte) next();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Randomizer split() {
+        return create(myRandom.split());
+    }
+
+    /**
+     * Returns a random number.
+     * 
+     * @param theBound the upper bound, exclusive
+     * @return a number from 0 to theBound - 1
+     */
+    protected final int nextInt(final int theBound) {
+        return myRandom.nextInt(theBound);
+    }
+
+    /**
+     * Clears any state carried over from earlier pieces.
+     */
+    protected abstract void restart();
+
+    /**
+     * Creates a randomizer of this kind drawing from the given source.
+     * 
+     * @param theRandom the source of random numbers
+     * @return the new randomizer
+     */
+    protected abstract Randomizer create(SplittableRandom theRandom);
+}
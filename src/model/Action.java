@@ -0,0 +1,54 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The inputs a player can apply to a game.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public enum Action {
+
+    /** Do nothing. */
+    NONE,
+    /** Move the current piece one space left. */
+    LEFT,
+    /** Move the current piece one space right. */
+    RIGHT,
+    /** Move the current piece one space down, freezing it if it cannot move. */
+    DOWN,
+    /** Rotate the current piece one quarter turn clockwise. */
+    ROTATE_CW,
+    /** Drop the current piece all the way down and freeze it. */
+    HARD_DROP;
+
+    /**
+     * Applies this action to a board.
+     * 
+     * @param theBoard the board to act on
+     */
+    public void applyTo(final Board theBoard) {
+        switch (this) {
+            case LEFT:
+                theBoard.moveLeft();
+                break;
+            case RIGHT:
+                theBoard.moveRight();
+                break;
+            case DOWN:
+                theBoard.moveDown();
+                break;
+            case ROTATE_CW:
+                theBoard.rotateCW();
+                break;
+            case HARD_DROP:
+                theBoard.hardDrop();
+                break;
+            default: // NONE
+                break;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals the seven piece types in shuffled bags, so each type appears exactly
+ * once in every group of seven pieces.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BagRandomizer extends AbstractRandomizer {
+
+    /** The current bag of Block ordinals. */
+    private final byte[] myBag;
+
+    /** The number of pieces left in the bag. */
+    private int myRemaining;
+
+    /**
+     * Creates a randomizer with an arbitrary seed.
+     */
+    public BagRandomizer() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Creates a randomizer with the given seed.
+     * 
+     * @param theSeed the seed
+     */
+    public BagRandomizer(final long theSeed) {
+        this(new SplittableRandom(theSeed));
+    }
+
+    /**
+     * Creates a randomizer drawing from the given source.
+     * 
+     * @param theRandom the source of random numbers
+     */
+    private BagRandomizer(final SplittableRandom theRandom) {
+        super(theRandom);
+        myBag = new byte[TYPES];
+        myRemaining = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() {
+        if (myRemaining == 0) {
+            // refill and shuffle the bag
+            for (int i = 0; i < TYPES; i++) {
+                myBag[i] = (byte) (i + 1);
+            }
+            for (int i = TYPES - 1; i > 0; i--) {
+                final int j = nextInt(i + 1);
+                final byte swap = myBag[i];
+                myBag[i] = myBag[j];
+                myBag[j] = swap;
+            }
+            myRemaining = TYPES;
+        }
+        myRemaining--;
+        return myBag[myRemaining];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void restart() {
+        myRemaining = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Randomizer create(final SplittableRandom theRandom) {
+        return new BagRandomizer(theRandom);
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many Tetris games stepped in lockstep, for training automated players.
+ *
+ * <p>All boards share one width and height and follow the same rules as
+ * {@link Board}: pieces come from {@link PieceShapes}, spawn at the same
+ * position, move only where they fit, freeze when they cannot move down, and
+ * the game ends when the frozen rows rise above the board. Lines are scored with
+ * {@link Scoring}. Instead of one object per board, every board's state lives in
+ * shared primitive arrays indexed by board number: one occupancy mask per row,
+ * and the current piece, next piece and score of each board.
+ *
+ * <p>{@link #stepAll(int[])} applies one action to every board and then one
+ * gravity step, splitting the boards across a fork/join pool. Each board has
+ * its own seeded piece generator, so results do not depend on how the work
+ * is split. If an {@link ObservationBuffer} is attached, each board is written
+ * to the slot with its number as soon as it has been stepped or reset.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BatchEnvironment {
+
+    /** The number of rows above the board that can hold frozen blocks. */
+    private static final int EXTRA_ROWS = 4;
+
+    /** The number of piece types. */
+    private static final int PIECE_TYPES = 7;
+
+    /** The fewest boards worth handing to a separate task. */
+    private static final int SPLIT_THRESHOLD = 256;
+
+    /** The action codes, indexed by ordinal. */
+    private static final Action[] ACTIONS = Action.values();
+
+    /** The number of boards. */
+    private final int mySize;
+
+    /** The width of every board. */
+    private final int myWidth;
+
+    /** The height of every board. */
+    private final int myHeight;
+
+    /** The number of rows stored per board. */
+    private final int myCapacity;
+
+    /** The mask of a row with every column occupied. */
+    private final long myFullRow;
+
+    /** The occupancy mask of every row, board by board. */
+    private final long[] myRows;
+
+    /** The number of rows in use on each board. */
+    private final int[] myRowCounts;
+
+    /** The Block ordinal of each board's current piece. */
+    private final int[] myTypes;
+
+    /** The rotation index of each board's current piece. */
+    private final int[] myRotations;
+
+    /** The x-coordinate of each board's current piece. */
+    private final int[] myXs;
+
+    /** The y-coordinate of each board's current piece. */
+    private final int[] myYs;
+
+    /** The Block ordinal of each board's next piece. */
+    private final int[] myNextTypes;
+
+    /** The random number generator state of each board. */
+    private final long[] mySeeds;
+
+    /** The score of each board. */
+    private final long[] myScores;
+
+    /** The number of lines cleared on each board. */
+    private final int[] myLines;
+
+    /** The points each board earned during the last step. */
+    private final int[] myRewards;
+
+    /** Whether each board's game is over. */
+    private final boolean[] myGameOver;
+
+    /** The pool the boards are stepped on. */
+    private final ForkJoinPool myPool;
+
+    /** The buffer observations are published to, or null. */
+    private ObservationBuffer myObservations;
+
+    /**
+     * Creates a batch of boards stepped on the common fork/join pool.
+     *
+     * @param theSize the number of boards
+     * @param theWidth the width of every board, 5 to 64
+     * @param theHeight the height of every board, at least 5
+     */
+    public BatchEnvironment(final int theSize, final int theWidth, final int theHeight) {
+        this(theSize, theWidth, theHeight, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a batch of boards stepped on the given fork/join pool.
+     *
+     * @param theSize the number of boards
+     * @param theWidth the width of every board, 5 to 64
+     * @param theHeight the height of every board, at least 5
+     * @param thePool the pool to step the boards on
+     */
+    public BatchEnvironment(final int theSize, final int theWidth, final int theHeight,
+                            final ForkJoinPool thePool) {
+        Board.checkDimensions(theWidth, theHeight);
+        if (theSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        mySize = theSize;
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myCapacity = theHeight + EXTRA_ROWS;
+        myFullRow = theWidth == Long.SIZE ? -1L : (1L << theWidth) - 1;
+        myPool = thePool;
+
+        myRows = new long[theSize * myCapacity];
+        myRowCounts = new int[theSize];
+        myTypes = new int[theSize];
+        myRotations = new int[theSize];
+        myXs = new int[theSize];
+        myYs = new int[theSize];
+        myNextTypes = new int[theSize];
+        mySeeds = new long[theSize];
+        myScores = new long[theSize];
+        myLines = new int[theSize];
+        myRewards = new int[theSize];
+        myGameOver = new boolean[theSize];
+    }
+
+    /**
+     * Attaches a buffer that every board is published to after it changes.
+     *
+     * @param theObservations the buffer, with a slot for every board and matching
+     *        dimensions, or null to stop publishing
+     */
+    public void setObservationBuffer(final ObservationBuffer theObservations) {
+        if (theObservations != null
+            && (theObservations.getSlots() < mySize
+                || theObservations.getWidth() != myWidth
+                || theObservations.getRows() != myCapacity)) {
+            throw new IllegalArgumentException();
+        }
+        myObservations = theObservations;
+    }
+
+    /**
+     * Starts a new game on every board. Board i is seeded with theSeed + i.
+     *
+     * @param theSeed the seed of board 0
+     */
+    public void resetAll(final long theSeed) {
+        for (int board = 0; board < mySize; board++) {
+            reset(board, theSeed + board);
+        }
+    }
+
+    /**
+     * Starts a new game on one board.
+     *
+     * @param theBoard the board number
+     * @param theSeed the seed for choosing the board's pieces
+     */
+    public void reset(final int theBoard, final long theSeed) {
+        final int offset = theBoard * myCapacity;
+        for (int row = 0; row < myCapacity; row++) {
+            myRows[offset + row] = 0L;
+        }
+        myRowCounts[theBoard] = 0;
+        mySeeds[theBoard] = theSeed;
+        myScores[theBoard] = 0;
+        myLines[theBoard] = 0;
+        myRewards[theBoard] = 0;
+        myGameOver[theBoard] = false;
+        myNextTypes[theBoard] = randomType(theBoard);
+        spawn(theBoard);
+        publish(theBoard);
+    }
+
+    /**
+     * Writes a board to the attached observation buffer, if there is one.
+     *
+     * @param theBoard the board number
+     */
+    private void publish(final int theBoard) {
+        if (myObservations != null) {
+            myObservations.write(theBoard, this, theBoard);
+        }
+    }
+
+    /**
+     * Applies one action to every board whose game is not over, followed by one
+     * gravity step.
+     *
+     * @param theActions the {@link Action} ordinal for each board
+     */
+    public void stepAll(final int[] theActions) {
+        if (theActions.length < mySize) {
+            throw new IllegalArgumentException();
+        }
+        myPool.invoke(new StepTask(theActions, 0, mySize));
+    }
+
+    /**
+     * Steps a range of boards on the current thread.
+     *
+     * @param theActions the action for each board
+     * @param theFrom the first board to step
+     * @param theTo one past the last board to step
+     */
+    private void stepRange(final int[] theActions, final int theFrom, final int theTo) {
+        for (int board = theFrom; board < theTo; board++) {
+            myRewards[board] = 0;
+            if (!myGameOver[board]) {
+                act(board, ACTIONS[theActions[board]]);
+                if (!myGameOver[board]) {
+                    moveDown(board);
+                }
+                publish(board);
+            }
+        }
+    }
+
+    /**
+     * Applies an action to one board.
+     *
+     * @param theBoard the board number
+     * @param theAction the action
+     */
+    private void act(final int theBoard, final Action theAction) {
+        final int shape = PieceShapes.shape(myTypes[theBoard], myRotations[theBoard]);
+        final int x = myXs[theBoard];
+        final int y = myYs[theBoard];
+
+        switch (theAction) {
+            case LEFT:
+                if (fits(theBoard, shape, x - 1, y)) {
+                    myXs[theBoard] = x - 1;
+                }
+                break;
+            case RIGHT:
+                if (fits(theBoard, shape, x + 1, y)) {
+                    myXs[theBoard] = x + 1;
+                }
+                break;
+            case DOWN:
+                moveDown(theBoard);
+                break;
+            case ROTATE_CW: {
+                final int rotation = PieceShapes.nextRotation(myTypes[theBoard],
+                                                              myRotations[theBoard]);
+                if (fits(theBoard, PieceShapes.shape(myTypes[theBoard], rotation), x, y)) {
+                    myRotations[theBoard] = rotation;
+                }
+                break;
+            }
+            case HARD_DROP: {
+                int drop = y;
+                while (fits(theBoard, shape, x, drop - 1)) {
+                    drop--;
+                }
+                myYs[theBoard] = drop;
+                freeze(theBoard);
+                break;
+            }
+            default: // NONE
+                break;
+        }
+    }
+
+    /**
+     * Moves a board's current piece down, or freezes it if it cannot move.
+     *
+     * @param theBoard the board number
+     */
+    private void moveDown(final int theBoard) {
+        final int shape = PieceShapes.shape(myTypes[theBoard], myRotations[theBoard]);
+        if (fits(theBoard, shape, myXs[theBoard], myYs[theBoard] - 1)) {
+            myYs[theBoard]--;
+        } else {
+            freeze(theBoard);
+        }
+    }
+
+    /**
+     * Tests whether a shape fits on a board at the given position.
+     *
+     * @param theBoard the board number
+     * @param theShape the shape
+     * @param theX The x-coordinate of the shape's origin
+     * @param theY The y-coordinate of the shape's origin
+     * @return true if the shape fits
+     */
+    private boolean fits(final int theBoard, final int theShape,
+                         final int theX, final int theY) {
+        boolean result = theX + PieceShapes.minX(theShape) >= 0
+                         && theX + PieceShapes.maxX(theShape) < myWidth
+                         && theY + PieceShapes.minY(theShape) >= 0;
+        final int offset = theBoard * myCapacity;
+
+        for (int row = PieceShapes.minY(theShape);
+                result && row <= PieceShapes.maxY(theShape); row++) {
+            final int y = theY + row;
+            result = y >= myCapacity
+                     || (BitBoard.shift(PieceShapes.rowMask(theShape, row), theX)
+                         & myRows[offset + y]) == 0;
+        }
+        return result;
+    }
+
+    /**
+     * Freezes a board's current piece, clears lines and spawns the next piece.
+     *
+     * @param theBoard the board number
+     */
+    private void freeze(final int theBoard) {
+        final int shape = PieceShapes.shape(myTypes[theBoard], myRotations[theBoard]);
+        final int offset = theBoard * myCapacity;
+        final int low = myYs[theBoard] + PieceShapes.minY(shape);
+        final int high = myYs[theBoard] + PieceShapes.maxY(shape);
+
+        for (int row = PieceShapes.minY(shape); row <= PieceShapes.maxY(shape); row++) {
+            myRows[offset + myYs[theBoard] + row] |=
+                BitBoard.shift(PieceShapes.rowMask(shape, row), myXs[theBoard]);
+        }
+        if (high >= myRowCounts[theBoard]) {
+            myRowCounts[theBoard] = high + 1;
+        }
+
+        // compact the rows above the lowest full row in one pass
+        int cleared = 0;
+        final int count = myRowCounts[theBoard];
+        for (int y = low; y < count; y++) {
+            final long row = myRows[offset + y];
+            if (y <= high && row == myFullRow) {
+                cleared++;
+            } else if (cleared > 0) {
+                myRows[offset + y - cleared] = row;
+            }
+        }
+        for (int y = count - cleared; y < count; y++) {
+            myRows[offset + y] = 0L;
+        }
+        myRowCounts[theBoard] = count - cleared;
+
+        if (cleared > 0) {
+            final int points = Scoring.points(cleared, Scoring.level(myLines[theBoard]));
+            myRewards[theBoard] += points;
+            myScores[theBoard] += points;
+            myLines[theBoard] += cleared;
+        }
+
+        if (myRowCounts[theBoard] > myHeight) {
+            myGameOver[theBoard] = true;
+        } else {
+            spawn(theBoard);
+        }
+    }
+
+    /**
+     * Makes a board's next piece its current piece and chooses a new next piece.
+     *
+     * @param theBoard the board number
+     */
+    private void spawn(final int theBoard) {
+        myTypes[theBoard] = myNextTypes[theBoard];
+        myRotations[theBoard] = 0;
+        myXs[theBoard] = myWidth / 2 - 2;
+        myYs[theBoard] = myHeight;
+        myNextTypes[theBoard] = randomType(theBoard);
+    }
+
+    /**
+     * Chooses a random piece type with a board's SplitMix64 generator.
+     *
+     * @param theBoard the board number
+     * @return the Block ordinal of the piece type, 1 to 7
+     */
+    private int randomType(final int theBoard) {
+        mySeeds[theBoard] += StateHash.GOLDEN_GAMMA;
+        final long z = StateHash.mix(mySeeds[theBoard]);
+        return 1 + (int) ((z >>> 1) % PIECE_TYPES);
+    }
+
+    /**
+     * @return the number of boards
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * @return the width of every board
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the height of every board
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the occupancy mask of a row of a board.
+     *
+     * @param theBoard the board number
+     * @param theY the row, 0 to height + 3
+     * @return the mask of the row, bit x set when column x is occupied
+     */
+    public long getRow(final int theBoard, final int theY) {
+        return myRows[theBoard * myCapacity + theY];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the Block of the board's current piece
+     */
+    public Block getCurrentType(final int theBoard) {
+        return Block.values()[myTypes[theBoard]];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the rotation index of the board's current piece
+     */
+    public int getRotation(final int theBoard) {
+        return myRotations[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the x-coordinate of the board's current piece
+     */
+    public int getX(final int theBoard) {
+        return myXs[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the y-coordinate of the board's current piece
+     */
+    public int getY(final int theBoard) {
+        return myYs[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the Block of the board's next piece
+     */
+    public Block getNextType(final int theBoard) {
+        return Block.values()[myNextTypes[theBoard]];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the board's score
+     */
+    public long getScore(final int theBoard) {
+        return myScores[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the number of lines cleared on the board
+     */
+    public int getLines(final int theBoard) {
+        return myLines[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return the points the board earned during the last step
+     */
+    public int getReward(final int theBoard) {
+        return myRewards[theBoard];
+    }
+
+    /**
+     * @param theBoard the board number
+     * @return whether the board's game is over
+     */
+    public boolean isGameOver(final int theBoard) {
+        return myGameOver[theBoard];
+    }
+
+    /**
+     * Steps a range of boards, splitting it in half while it is large.
+     */
+    @SuppressWarnings("serial")
+    private final class StepTask extends RecursiveAction {
+
+        /** The action for each board. */
+        private final int[] myActions;
+
+        /** The first board to step. */
+        private final int myFrom;
+
+        /** One past the last board to step. */
+        private final int myTo;
+
+        /**
+         * Creates a task for a range of boards.
+         *
+         * @param theActions the action for each board
+         * @param theFrom the first board to step
+         * @param theTo one past the last board to step
+         */
+        StepTask(final int[] theActions, final int theFrom, final int theTo) {
+            super();
+            myActions = theActions;
+            myFrom = theFrom;
+            myTo = theTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (myTo - myFrom <= SPLIT_THRESHOLD) {
+                stepRange(myActions, myFrom, myTo);
+            } else {
+                final int middle = (myFrom + myTo) >>> 1;
+                invokeAll(new StepTask(myActions, myFrom, middle),
+                          new StepTask(myActions, middle, myTo));
+            }
+        }
+    }
+}
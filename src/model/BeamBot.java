@@ -0,0 +1,655 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays Tetris by searching ahead over the pieces it can see.
+ *
+ * <p>The bot runs a beam search: every placement of the current piece is
+ * scored, the best {@link #getBeamWidth()} boards are kept, every placement
+ * of the next piece is tried on each of them, and so on for the next piece
+ * and any pieces of preview after it. A board is scored by a weighted sum of
+ * its {@link BoardFeatures} and the lines cleared on the way to it. The
+ * current piece goes where the best board at the deepest level began.
+ *
+ * <p>The boards of each level are expanded in parallel on a fork/join pool,
+ * each worker thread with its own board, placement generator and feature
+ * extractor. Boards are kept between levels as saved states in one long
+ * array. Children are ranked by score and then by the order they were
+ * generated in, so the choice never depends on the number of threads.
+ *
+ * <p>Placing pieces in a different order often builds the same stack, so
+ * children are keyed by the hash of their frozen blocks. A child with the
+ * same key and score as one already chosen at its level is the same board,
+ * and is dropped so the beam holds different boards. With a
+ * {@link TranspositionTable} the evaluation of each stack is cached under its
+ * key, and the move chosen by a search that reached its full depth is kept
+ * under a key of the board, the pieces searched and the bot's settings, so
+ * the same search is not made twice. Evaluations are rounded to floats
+ * whether or not they come from the table, so it never changes a move.
+ *
+ * <p>A search can be given a budget of boards scored or of time. A level
+ * that would go over the time budget is abandoned and the bot moves as the
+ * last complete level says; the first level is always completed. A bot
+ * searches one board at a time.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BeamBot implements Bot {
+
+    /** The index of the weight of the lines cleared, after the feature weights. */
+    public static final int LINES = BoardFeatures.COUNT;
+
+    /** The number of weights. */
+    public static final int WEIGHTS = LINES + 1;
+
+    /** The default number of boards kept at each level. */
+    public static final int DEFAULT_BEAM_WIDTH = 8;
+
+    /** The weights of a bot that clears lines steadily. */
+    private static final double[] DEFAULT_WEIGHTS = {
+        -0.5, 0.0, -4.0, -4.0, -0.2, -1.0, -3.0, -1.0, 1.0,
+    };
+
+    /** The number of boards a fork/join task expands without splitting. */
+    private static final int SPLIT = 2;
+
+    /** The weights of the features and of the lines cleared. */
+    private final double[] myWeights;
+
+    /** The number of boards kept at each level. */
+    private final int myBeamWidth;
+
+    /** The number of pieces searched after the next piece. */
+    private final int myPreview;
+
+    /** The pool the levels are expanded on, or null to use the calling thread. */
+    private final ForkJoinPool myPool;
+
+    /** The scratch space of each thread that expands boards. */
+    private final ThreadLocal<Worker> myWorkers;
+
+    /** Finds the inputs for the chosen placement. */
+    private final PlacementGenerator myChooser;
+
+    /** A hash of the weights and beam width, so bots can share a table. */
+    private final long mySettings;
+
+    /** Caches evaluations and moves, or null. */
+    private TranspositionTable myTable;
+
+    /** The age the table gave the current search. */
+    private int myAge;
+
+    /** The most boards scored in one search. */
+    private long myNodeBudget;
+
+    /** The most time spent in one search, in nanoseconds. */
+    private long myTimeBudget;
+
+    /** The piece type of each level, as Block ordinals. */
+    private int[] myTypes;
+
+    /** The number of longs of each saved board. */
+    private int myStateSize;
+
+    /** The most children one board can have. */
+    private int myStride;
+
+    /** The boards of the current level, as saved states. */
+    private long[] myBeam;
+
+    /** The placement of the current piece each board of the level began with. */
+    private int[] myBeamFirst;
+
+    /** The number of boards in the current level. */
+    private int myBeamCount;
+
+    /** The boards of the next level, as saved states. */
+    private long[] myNextBeam;
+
+    /** The placement of the current piece each board of the next level began with. */
+    private int[] myNextFirst;
+
+    /** The moves to each child, packed, myStride to a board of the level. */
+    private int[] myChildMoves;
+
+    /** The score of each child, myStride to a board of the level. */
+    private double[] myChildScores;
+
+    /** The key of each child's frozen blocks, myStride to a board of the level. */
+    private long[] myChildKeys;
+
+    /** The number of children of each board of the level. */
+    private int[] myChildCounts;
+
+    /** The children chosen for the next level, as indexes into the child arrays. */
+    private int[] myChosen;
+
+    /** The lines cleared on the board searched. */
+    private int myRootLines;
+
+    /** The time the current search started, in System.nanoTime() terms. */
+    private long mySearchStart;
+
+    /** Set when a worker finds the current search out of time. */
+    private volatile boolean myOutOfTime;
+
+    /** The number of boards scored by the last search. */
+    private long myNodes;
+
+    /** The number of levels completed by the last search. */
+    private int myDepth;
+
+    /**
+     * Creates a bot with the default weights and beam width that searches
+     * the current and next pieces on the common fork/join pool.
+     */
+    public BeamBot() {
+        this(DEFAULT_WEIGHTS, DEFAULT_BEAM_WIDTH, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a bot.
+     *
+     * @param theWeights the weight of each of the {@link BoardFeatures} and then
+     *        of the lines cleared, {@link #WEIGHTS} in all
+     * @param theBeamWidth the number of boards kept at each level, at least 1
+     * @param thePreview the number of pieces searched after the next piece, from
+     *        0 to 63
+     * @param thePool the pool to expand levels on, or null to search on the
+     *        calling thread
+     */
+    public BeamBot(final double[] theWeights, final int theBeamWidth, final int thePreview,
+                   final ForkJoinPool thePool) {
+        if (theWeights.length != WEIGHTS || theBeamWidth < 1 || thePreview < 0) {
+            throw new IllegalArgumentException();
+        }
+        myWeights = theWeights.clone();
+        myBeamWidth = theBeamWidth;
+        myPreview = thePreview;
+        myPool = thePool;
+        myWorkers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker();
+            }
+        };
+        myChooser = new PlacementGenerator();
+        myNodeBudget = Long.MAX_VALUE;
+        myTimeBudget = Long.MAX_VALUE;
+        myTypes = new int[2 + thePreview];
+        myBeam = new long[0];
+        myNextBeam = myBeam;
+        myBeamFirst = new int[theBeamWidth];
+        myNextFirst = new int[theBeamWidth];
+        myChosen = new int[theBeamWidth];
+        myChildCounts = new int[theBeamWidth];
+        myChildMoves = new int[0];
+        myChildScores = new double[0];
+        myChildKeys = new long[0];
+        long settings = StateHash.combine(theBeamWidth, thePreview);
+        for (final double weight : myWeights) {
+            settings = StateHash.combine(settings, Double.doubleToLongBits(weight));
+        }
+        mySettings = settings;
+    }
+
+    /**
+     * @return a copy of the default weights, {@link #WEIGHTS} in all
+     */
+    public static double[] defaultWeights() {
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * Limits the number of boards scored in each search. A level in progress
+     * is finished before the limit is checked.
+     *
+     * @param theNodes the most boards, at least 1
+     */
+    public void setNodeBudget(final long theNodes) {
+        if (theNodes < 1) {
+            throw new IllegalArgumentException();
+        }
+        myNodeBudget = theNodes;
+    }
+
+    /**
+     * Limits the time spent in each search. The first level is finished
+     * whatever the limit.
+     *
+     * @param theNanos the most time in nanoseconds, at least 1
+     */
+    @Override
+    public void setTimeBudget(final long theNanos) {
+        if (theNanos < 1) {
+            throw new IllegalArgumentException();
+        }
+        myTimeBudget = theNanos;
+    }
+
+    /**
+     * Shares a table for caching evaluations and moves, which other bots on
+     * other boards may use at the same time.
+     *
+     * @param theTable the table, or null for none
+     */
+    public void setTable(final TranspositionTable theTable) {
+        myTable = theTable;
+    }
+
+    /**
+     * @return the number of boards kept at each level
+     */
+    public int getBeamWidth() {
+        return myBeamWidth;
+    }
+
+    /**
+     * @return the number of boards scored by the last search
+     */
+    public long getNodes() {
+        return myNodes;
+    }
+
+    /**
+     * @return the number of pieces the last search looked at
+     */
+    public int getDepth() {
+        return myDepth;
+    }
+
+    /**
+     * Chooses where the current piece of a board goes.
+     *
+     * @param theBoard the board, which is left unchanged apart from drawing
+     *        preview pieces from its randomizer early
+     * @return the inputs that take the current piece there and lock it, or no
+     *         inputs if the game is over
+     */
+    @Override
+    public List<Action> chooseInputs(final Board theBoard) {
+        List<Action> result = Collections.emptyList();
+        final int placement = search(theBoard);
+        if (placement >= 0) {
+            myChooser.generate(theBoard);
+            result = myChooser.getInputs(placement);
+        }
+        return result;
+    }
+
+    /**
+     * Chooses where the current piece of a board goes and locks it there
+     * without applying the inputs one by one.
+     *
+     * @param theBoard the board
+     * @return false if the game was already over, true otherwise
+     */
+    @Override
+    public boolean playPiece(final Board theBoard) {
+        final int placement = search(theBoard);
+        if (placement >= 0) {
+            myChooser.generate(theBoard);
+            myChooser.place(theBoard, placement);
+        }
+        return placement >= 0;
+    }
+
+    /**
+     * Searches ahead from a board.
+     *
+     * @param theBoard the board
+     * @return the index of the chosen placement among those a
+     *         {@link PlacementGenerator} finds on the board, or -1 if the game
+     *         is already over
+     */
+    private int search(final Board theBoard) {
+        myNodes = 0;
+        myDepth = 0;
+        int result = -1;
+        if (!theBoard.isGameOver()) {
+            // if every placement ends the game, the first will do
+            result = 0;
+            mySearchStart = System.nanoTime();
+            myOutOfTime = false;
+            myRootLines = theBoard.getLinesCleared();
+            myTypes[0] = ((AbstractPiece) theBoard.getCurrentPiece()).getBlock().ordinal();
+            myTypes[1] = ((AbstractPiece) theBoard.getNextPiece()).getBlock().ordinal();
+            for (int i = 2; i < myTypes.length; i++) {
+                myTypes[i] = theBoard.getPreviewType(i - 2);
+            }
+            resize(theBoard);
+            theBoard.saveState(myBeam, 0);
+            myBeamFirst[0] = -1;
+            myBeamCount = 1;
+
+            long key = StateHash.combine(theBoard.getStateHash(), mySettings);
+            for (final int type : myTypes) {
+                key = StateHash.combine(key, type);
+            }
+            long entry = 0L;
+            if (myTable != null) {
+                myAge = myTable.newSearch();
+                entry = myTable.probe(key);
+            }
+            boolean searching = true;
+            if (TranspositionTable.depth(entry) >= myTypes.length) {
+                searching = false;
+                result = TranspositionTable.move(entry);
+                myDepth = myTypes.length;
+            }
+            float best = 0f;
+            for (int level = 0; searching && level < myTypes.length; level++) {
+                expand(level);
+                final int chosen = choose();
+                if (chosen == 0 || myOutOfTime && level > 0) {
+                    searching = false;
+                } else {
+                    best = (float) myChildScores[myChosen[0]];
+                    materialize(level, chosen);
+                    myDepth = level + 1;
+                    result = myBeamFirst[0];
+                    searching = myNodes < myNodeBudget;
+                }
+            }
+            if (myTable != null && myDepth == myTypes.length && entry == 0L
+                && result <= TranspositionTable.MAX_MOVE) {
+                myTable.store(key, best, result, myDepth, myAge);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scores every child of every board of a level.
+     *
+     * @param theLevel the level, from 0 for the current piece
+     */
+    private void expand(final int theLevel) {
+        final Expansion task = new Expansion(theLevel, 0, myBeamCount);
+        if (myPool == null || myBeamCount <= SPLIT) {
+            task.compute();
+        } else {
+            myPool.invoke(task);
+        }
+        for (int node = 0; node < myBeamCount; node++) {
+            myNodes += myChildCounts[node];
+        }
+    }
+
+    /**
+     * Chooses the best different children of a level, best first.
+     *
+     * @return the number of children chosen, 0 if every child ends the game
+     */
+    private int choose() {
+        int count = 0;
+        for (int node = 0; node < myBeamCount; node++) {
+            for (int child = node * myStride; child < node * myStride + myChildCounts[node];
+                    child++) {
+                if (myChildScores[child] != Double.NEGATIVE_INFINITY
+                    && (count < myBeamWidth || better(child, myChosen[count - 1]))
+                    && !chosen(child, count)) {
+                    // insert in order, dropping the worst once the beam is full
+                    int slot = count - 1;
+                    if (count < myBeamWidth) {
+                        slot = count;
+                        count++;
+                    }
+                    while (slot > 0 && better(child, myChosen[slot - 1])) {
+                        myChosen[slot] = myChosen[slot - 1];
+                        slot--;
+                    }
+                    myChosen[slot] = child;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests whether the same board as a child has been chosen already.
+     * Boards with the same frozen blocks at the same level have the same
+     * score too, as they cleared the same number of lines.
+     *
+     * @param theChild the child
+     * @param theCount the number of children chosen so far
+     * @return true if a chosen child has the same key and score
+     */
+    private boolean chosen(final int theChild, final int theCount) {
+        boolean result = false;
+        for (int i = 0; i < theCount && !result; i++) {
+            result = myChildKeys[myChosen[i]] == myChildKeys[theChild]
+                     && myChildScores[myChosen[i]] == myChildScores[theChild];
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether one child ranks ahead of another.
+     *
+     * @param theChild a child
+     * @param theOther another child
+     * @return true if theChild scores higher, or the same and was generated first
+     */
+    private boolean better(final int theChild, final int theOther) {
+        return myChildScores[theChild] > myChildScores[theOther]
+               || myChildScores[theChild] == myChildScores[theOther] && theChild < theOther;
+    }
+
+    /**
+     * Makes the chosen children of a level the boards of the next level.
+     *
+     * @param theLevel the level the children were found at
+     * @param theCount the number of children chosen
+     */
+    private void materialize(final int theLevel, final int theCount) {
+        final Worker worker = myWorkers.get();
+        for (int i = 0; i < theCount; i++) {
+            final int child = myChosen[i];
+            final int parent = child / myStride;
+            worker.load(theLevel, parent);
+            PlacementGenerator.lock(worker.myBoard, myChildMoves[child]);
+            worker.myBoard.saveState(myNextBeam, i * myStateSize);
+            if (theLevel == 0) {
+                myNextFirst[i] = child - parent * myStride;
+            } else {
+                myNextFirst[i] = myBeamFirst[parent];
+            }
+        }
+        final long[] beam = myBeam;
+        myBeam = myNextBeam;
+        myNextBeam = beam;
+        final int[] first = myBeamFirst;
+        myBeamFirst = myNextFirst;
+        myNextFirst = first;
+        myBeamCount = theCount;
+    }
+
+    /**
+     * Makes the arrays big enough to search a board.
+     *
+     * @param theBoard the board
+     */
+    private void resize(final Board theBoard) {
+        myStateSize = theBoard.stateSize();
+        myStride = PlacementGenerator.positions(theBoard);
+        if (myBeam.length < myBeamWidth * myStateSize) {
+            myBeam = new long[myBeamWidth * myStateSize];
+            myNextBeam = new long[myBeamWidth * myStateSize];
+        }
+        if (myChildScores.length < myBeamWidth * myStride) {
+            myChildMoves = new int[myBeamWidth * myStride];
+            myChildScores = new double[myBeamWidth * myStride];
+            myChildKeys = new long[myBeamWidth * myStride];
+        }
+    }
+
+    /**
+     * Scores boards of a level, splitting the work until each task has only a few.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Expansion extends RecursiveAction {
+
+        /** The class's serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The level being expanded. */
+        private final int myLevel;
+
+        /** The first board of the task. */
+        private final int myLow;
+
+        /** One past the last board of the task. */
+        private final int myHigh;
+
+        /**
+         * Creates a task.
+         *
+         * @param theLevel the level being expanded
+         * @param theLow the first board of the task
+         * @param theHigh one past the last board of the task
+         */
+        Expansion(final int theLevel, final int theLow, final int theHigh) {
+            super();
+            myLevel = theLevel;
+            myLow = theLow;
+            myHigh = theHigh;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (myHigh - myLow <= SPLIT) {
+                final Worker worker = myWorkers.get();
+                for (int node = myLow; node < myHigh; node++) {
+                    if (myLevel > 0 && (myOutOfTime
+                                        || System.nanoTime() - mySearchStart > myTimeBudget)) {
+                        myOutOfTime = true;
+                        myChildCounts[node] = 0;
+                    } else {
+                        worker.expand(myLevel, node);
+                    }
+                }
+            } else {
+                final int middle = (myLow + myHigh) >>> 1;
+                invokeAll(new Expansion(myLevel, myLow, middle),
+                          new Expansion(myLevel, middle, myHigh));
+            }
+        }
+    }
+
+    /**
+     * The boards and tools one thread expands boards with.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Worker {
+
+        /** The board children are played on. */
+        private final Board myBoard;
+
+        /** Finds the children of a board. */
+        private final PlacementGenerator myGenerator;
+
+        /** Measures the children. */
+        private final BoardFeatures myFeatures;
+
+        /** The features of the last child measured. */
+        private final int[] myValues;
+
+        /**
+         * Creates a worker.
+         */
+        Worker() {
+            myBoard = new Board();
+            myGenerator = new PlacementGenerator();
+            myFeatures = new BoardFeatures();
+            myValues = new int[BoardFeatures.COUNT];
+        }
+
+        /**
+         * Puts a board of a level on this worker's board, with the next piece
+         * of the level after it.
+         *
+         * @param theLevel the level
+         * @param theNode the board of the level
+         */
+        void load(final int theLevel, final int theNode) {
+            myBoard.restoreState(myBeam, theNode * myStateSize);
+            if (theLevel + 1 < myTypes.length) {
+                myBoard.setNextType(myTypes[theLevel + 1]);
+            }
+        }
+
+        /**
+         * Scores the children of a board of a level.
+         *
+         * @param theLevel the level
+         * @param theNode the board of the level
+         */
+        void expand(final int theLevel, final int theNode) {
+            load(theLevel, theNode);
+            final TranspositionTable table = myTable;
+            final int count = myGenerator.generate(myBoard);
+            final int base = theNode * myStride;
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    load(theLevel, theNode);
+                }
+                myChildMoves[base + i] = myGenerator.getMove(i);
+                myGenerator.place(myBoard, i);
+                double score = Double.NEGATIVE_INFINITY;
+                if (!myBoard.isGameOver()) {
+                    final BitBoard blocks = myBoard.getFrozenBits();
+                    final long board = StateHash.combine(blocks.getHash(), blocks.getWidth());
+                    final long key = StateHash.combine(board, mySettings);
+                    long entry = 0L;
+                    if (table != null) {
+                        entry = table.probe(key);
+                    }
+                    final float value;
+                    if (entry == 0L) {
+                        value = evaluate();
+                        if (table != null) {
+                            table.store(key, value, TranspositionTable.NO_MOVE, 0, myAge);
+                        }
+                    } else {
+                        value = TranspositionTable.score(entry);
+                    }
+                    myChildKeys[base + i] = key;
+                    score = value
+                            + myWeights[LINES] * (myBoard.getLinesCleared() - myRootLines);
+                }
+                myChildScores[base + i] = score;
+            }
+            myChildCounts[theNode] = count;
+        }
+
+        /**
+         * @return the weighted sum of the features of the board's frozen blocks
+         */
+        private float evaluate() {
+            myFeatures.extract(myBoard, myValues, 0);
+            double result = 0.0;
+            for (int feature = 0; feature < BoardFeatures.COUNT; feature++) {
+                result += myWeights[feature] * myValues[feature];
+            }
+            return (float) result;
+        }
+    }
+}
@@ -0,0 +1,639 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The frozen cells of a Tetris board stored as one occupancy mask per row
+ * plus a parallel array of block types.
+ *
+ * <p>Bit x of a row mask is set when column x of that row holds a frozen block,
+ * so collision and full-line tests are single mask operations. Row 0 is the floor.
+ *
+ * <p>Rows are kept in a ring: logical row y lives in physical slot
+ * (base + y) mod capacity. Clearing lines moves whichever side of the cleared
+ * rows is shorter, so removing rows near the floor of a tall stack only moves
+ * the rows beneath them and then advances the base. Each row also keeps a count
+ * of its filled cells, updated as blocks are frozen, and each column keeps
+ * its surface height so drop distances are found without walking the rows.
+ *
+ * <p>A {@link StateHash} of the frozen cells is kept up to date as blocks are
+ * frozen, from a content hash of each row. A line clear only rehashes the
+ * rows it moves; the rest of the hash is updated as a whole.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+final class BitBoard {
+
+    /** The widest board that fits in a row mask. */
+    static final int MAX_WIDTH = Long.SIZE;
+
+    /** The block types indexed by ordinal. */
+    private static final Block[] BLOCKS = Block.values();
+
+    /** The most rows a single piece can complete at once. */
+    private static final int MAX_CLEARED = PieceShapes.BOX;
+
+    /** The number of bits a cell takes in an encoding. */
+    private static final int CELL_BITS = 3;
+
+    /** The mask of one encoded cell. */
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    /** The number of cells packed into each long of an encoding. */
+    private static final int CELLS_PER_LONG = Long.SIZE / CELL_BITS;
+
+    /** The number of columns. */
+    private int myWidth;
+
+    /** The number of rows that can hold frozen blocks. */
+    private int myCapacity;
+
+    /** The physical slot of logical row 0. */
+    private int myBase;
+
+    /** The occupancy mask of each physical row. */
+    private long[] myRows;
+
+    /** The number of filled cells in each physical row. */
+    private int[] myFillCounts;
+
+    /** The block ordinal of each cell, physical row by row. */
+    private byte[] myCells;
+
+    /** The content hash of each physical row. */
+    private long[] myRowHashes;
+
+    /** The weight of each logical row in the hash. */
+    private long[] myWeights;
+
+    /** The hash of the frozen cells. */
+    private long myHash;
+
+    /**
+     * The number of rows in use; one more than the highest row
+     * a block has been frozen into since the last line clear.
+     */
+    private int myRowCount;
+
+    /** One more than the highest occupied row of each column, 0 for an empty column. */
+    private int[] myHeights;
+
+    /** Scratch list of the logical rows found full by the last clear. */
+    private final int[] myCleared;
+
+    /** The rows handed out by the list view, one array per row. */
+    private Block[][] myRowViews;
+
+    /** The list view of the frozen rows. */
+    private final List<Block[]> myView;
+
+    /**
+     * Creates an empty bitboard.
+     *
+     * @param theWidth the number of columns
+     * @param theCapacity the number of rows that can hold frozen blocks
+     */
+    BitBoard(final int theWidth, final int theCapacity) {
+        myView = new RowView();
+        myCleared = new int[MAX_CLEARED];
+        reset(theWidth, theCapacity);
+    }
+
+    /**
+     * Empties this bitboard and resizes it to the given dimensions.
+     * Storage is only reallocated when it is too small.
+     *
+     * @param theWidth the number of columns
+     * @param theCapacity the number of rows that can hold frozen blocks
+     */
+    void reset(final int theWidth, final int theCapacity) {
+        if (theWidth > MAX_WIDTH) {
+            throw new IllegalArgumentException();
+        }
+        myWidth = theWidth;
+        myCapacity = theCapacity;
+
+        if (myRows == null || myRows.length < theCapacity
+            || myCells.length < theCapacity * theWidth) {
+            myRows = new long[theCapacity];
+            myRowHashes = new long[theCapacity];
+            myFillCounts = new int[theCapacity];
+            myCells = new byte[theCapacity * theWidth];
+            myRowViews = new Block[theCapacity][];
+            myWeights = new long[theCapacity];
+            StateHash.weights(myWeights);
+        } else {
+            Arrays.fill(myRowViews, null);
+            Arrays.fill(myRows, 0L);
+            Arrays.fill(myRowHashes, 0L);
+            Arrays.fill(myFillCounts, 0);
+            Arrays.fill(myCells, (byte) 0);
+        }
+        if (myHeights == null || myHeights.length < theWidth) {
+            myHeights = new int[theWidth];
+        } else {
+            Arrays.fill(myHeights, 0);
+        }
+        myBase = 0;
+        myRowCount = 0;
+        myHash = 0L;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the number of rows that can hold frozen blocks
+     */
+    int getCapacity() {
+        return myCapacity;
+    }
+
+    /**
+     * @return the number of rows in use
+     */
+    int getRowCount() {
+        return myRowCount;
+    }
+
+    /**
+     * @return the hash of the frozen cells
+     */
+    long getHash() {
+        return myHash;
+    }
+
+    /**
+     * Maps a logical row to its physical slot.
+     *
+     * @param theY the logical row, 0 to capacity - 1
+     * @return the physical slot
+     */
+    private int slot(final int theY) {
+        int result = myBase + theY;
+        if (result >= myCapacity) {
+            result -= myCapacity;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the occupancy mask of a row. Rows above the storage are empty.
+     *
+     * @param theY the row
+     * @return the occupancy mask of the row
+     */
+    long getRow(final int theY) {
+        long result = 0L;
+        if (theY < myCapacity) {
+            result = myRows[slot(theY)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of filled cells in a row.
+     *
+     * @param theY the row
+     * @return the number of filled cells in the row
+     */
+    int getFillCount(final int theY) {
+        int result = 0;
+        if (theY < myCapacity) {
+            result = myFillCounts[slot(theY)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the surface height of a column.
+     *
+     * @param theX the column
+     * @return one more than the highest occupied row of the column, 0 if it is empty
+     */
+    int getColumnHeight(final int theX) {
+        return myHeights[theX];
+    }
+
+    /**
+     * Returns how many rows a shape can fall from the given position before it
+     * lands. When the shape is above the surface of every column it covers this
+     * is read from the column heights; a shape tucked under an overhang falls
+     * back to testing each row.
+     *
+     * @param theShape the shape
+     * @param theX The x-coordinate of the shape's origin
+     * @param theY The y-coordinate of the shape's origin
+     * @return the number of rows the shape can move down
+     */
+    int dropDistance(final int theShape, final int theX, final int theY) {
+        int landing = Integer.MIN_VALUE;
+        for (int column = PieceShapes.minX(theShape);
+                column <= PieceShapes.maxX(theShape); column++) {
+            landing = Math.max(landing, myHeights[theX + column]
+                                        - PieceShapes.bottom(theShape, column));
+        }
+
+        int result = theY - landing;
+        if (result < 0) {
+            result = 0;
+            while (fits(theShape, theX, theY - result - 1)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether a shape from {@link PieceShapes} can be placed with its
+     * origin at the given position without overlapping a wall, the floor or
+     * a frozen block.
+     *
+     * @param theShape the shape
+     * @param theX The x-coordinate of the shape's origin
+     * @param theY The y-coordinate of the shape's origin
+     * @return true if the shape fits
+     */
+    boolean fits(final int theShape, final int theX, final int theY) {
+        boolean result = theX + PieceShapes.minX(theShape) >= 0
+                         && theX + PieceShapes.maxX(theShape) < myWidth
+                         && theY + PieceShapes.minY(theShape) >= 0;
+
+        for (int row = PieceShapes.minY(theShape);
+                result && row <= PieceShapes.maxY(theShape); row++) {
+            result = (shift(PieceShapes.rowMask(theShape, row), theX)
+                      & getRow(theY + row)) == 0;
+        }
+        return result;
+    }
+
+    /**
+     * Shifts a shape row mask to a board column. A negative column is allowed
+     * as long as no block of the shape ends up left of the wall.
+     *
+     * @param theMask the shape row mask
+     * @param theX the column of the shape's origin
+     * @return the row mask in board columns
+     */
+    static long shift(final long theMask, final int theX) {
+        long result = theMask >>> -theX;
+        if (theX >= 0) {
+            result = theMask << theX;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the block at a position inside the board.
+     *
+     * @param theX The x-coordinate
+     * @param theY The y-coordinate
+     * @return the block at the position, EMPTY if there is none
+     */
+    Block getBlock(final int theX, final int theY) {
+        Block result = Block.EMPTY;
+        if (theY < myCapacity) {
+            result = BLOCKS[myCells[slot(theY) * myWidth + theX]];
+        }
+        return result;
+    }
+
+    /**
+     * Copies the Block ordinal of every cell into an array, row by row from
+     * the bottom, as {@code theCells[y * width + x]}.
+     *
+     * @param theCells the array to fill, with room for width times capacity cells
+     */
+    void copyCells(final byte[] theCells) {
+        final int bottom = myCapacity - myBase;
+        if (bottom >= myRowCount) {
+            System.arraycopy(myCells, myBase * myWidth, theCells, 0, myRowCount * myWidth);
+        } else {
+            // the occupied rows wrap around the end of the ring
+            System.arraycopy(myCells, myBase * myWidth, theCells, 0, bottom * myWidth);
+            System.arraycopy(myCells, 0, theCells, bottom * myWidth,
+                             (myRowCount - bottom) * myWidth);
+        }
+        Arrays.fill(theCells, myRowCount * myWidth, myCapacity * myWidth, (byte) 0);
+    }
+
+    /**
+     * Freezes a block into a cell of the board.
+     *
+     * @param theX The x-coordinate
+     * @param theY The y-coordinate
+     * @param theBlock the type of block
+     */
+    void set(final int theX, final int theY, final Block theBlock) {
+        final int slot = slot(theY);
+        final long bit = 1L << theX;
+        if ((myRows[slot] & bit) == 0) {
+            myRows[slot] |= bit;
+            myFillCounts[slot]++;
+        }
+        if (theY >= myHeights[theX]) {
+            myHeights[theX] = theY + 1;
+        }
+        final int cell = slot * myWidth + theX;
+        final long before = myRowHashes[slot];
+        long after = before ^ StateHash.cell(theX, theBlock.ordinal());
+        if (myCells[cell] != 0) {
+            after ^= StateHash.cell(theX, myCells[cell]);
+        }
+        myRowHashes[slot] = after;
+        myHash += (StateHash.row(after) - StateHash.row(before)) * myWeights[theY];
+        myCells[cell] = (byte) theBlock.ordinal();
+        if (theY >= myRowCount) {
+            myRowCount = theY + 1;
+        }
+    }
+
+    /**
+     * Removes the full rows within a range of rows and drops the rows above them.
+     * Only the given rows are tested, so the range should cover every row
+     * changed since the last clear.
+     *
+     * @param theLow the lowest row to test
+     * @param theHigh the highest row to test
+     * @return the number of rows removed
+     */
+    int clearFullRows(final int theLow, final int theHigh) {
+        int cleared = 0;
+        for (int y = Math.max(theLow, 0); y <= theHigh && y < myRowCount; y++) {
+            if (myFillCounts[slot(y)] == myWidth) {
+                myCleared[cleared] = y;
+                cleared++;
+            }
+        }
+        if (cleared > 0) {
+            final int lowest = myCleared[0];
+            final int highest = myCleared[cleared - 1];
+            if (highest + 1 < myRowCount - lowest) {
+                // the rows above the highest cleared row all drop by the same count
+                final long below = sumRows(0, highest, 0);
+                myHash = sumRows(0, highest, cleared)
+                         + StateHash.lower(myHash - below, cleared);
+                raiseRowsBelow(cleared);
+            } else {
+                myHash += sumRows(lowest, myRowCount - 1, cleared)
+                          - sumRows(lowest, myRowCount - 1, 0);
+                dropRowsAbove(cleared);
+            }
+            myRowCount -= cleared;
+            lowerHeights(cleared);
+        }
+        return cleared;
+    }
+
+    /**
+     * Sums the contributions to the hash of a range of rows, weighted by the
+     * rows they will be in once the first entries of myCleared are removed.
+     *
+     * @param theLow the lowest row, no higher than the lowest row removed
+     * @param theHigh the highest row
+     * @param theCleared the number of entries in myCleared to remove, 0 to
+     *        sum the rows where they are now
+     * @return the sum
+     */
+    private long sumRows(final int theLow, final int theHigh, final int theCleared) {
+        long result = 0L;
+        int below = 0;
+        for (int y = theLow; y <= theHigh; y++) {
+            if (below < theCleared && myCleared[below] == y) {
+                below++;
+            } else {
+                result += StateHash.row(myRowHashes[slot(y)]) * myWeights[y - below];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a row removed by the last call to {@link #clearFullRows(int, int)},
+     * numbered as it was before the removal.
+     *
+     * @param theIndex the index among the removed rows, lowest row first
+     * @return the row
+     */
+    int getClearedRow(final int theIndex) {
+        return myCleared[theIndex];
+    }
+
+    /**
+     * @return the number of longs {@link #encode} writes for the rows in use
+     */
+    int encodedSize() {
+        return (myRowCount * myWidth + CELLS_PER_LONG - 1) / CELLS_PER_LONG;
+    }
+
+    /**
+     * @return the most longs {@link #encode} can write, with every row in use
+     */
+    int maxEncodedSize() {
+        return (myCapacity * myWidth + CELLS_PER_LONG - 1) / CELLS_PER_LONG;
+    }
+
+    /**
+     * Packs the block types of the rows in use into longs, three bits per
+     * cell and 21 cells per long, row by row from the bottom.
+     *
+     * @param theState the array to write to
+     * @param theOffset the first index to write
+     * @return the number of longs written
+     */
+    int encode(final long[] theState, final int theOffset) {
+        int index = theOffset;
+        long word = 0L;
+        int count = 0;
+        for (int y = 0; y < myRowCount; y++) {
+            final int start = slot(y) * myWidth;
+            for (int x = 0; x < myWidth; x++) {
+                word |= (long) myCells[start + x] << count * CELL_BITS;
+                count++;
+                if (count == CELLS_PER_LONG) {
+                    theState[index++] = word;
+                    word = 0L;
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            theState[index++] = word;
+        }
+        return index - theOffset;
+    }
+
+    /**
+     * Empties this bitboard and fills it from cells packed by {@link #encode}.
+     *
+     * @param theState the array to read from
+     * @param theOffset the first index to read
+     * @param theWidth the number of columns
+     * @param theCapacity the number of rows that can hold frozen blocks
+     * @param theRows the number of rows encoded
+     */
+    void decode(final long[] theState, final int theOffset, final int theWidth,
+                final int theCapacity, final int theRows) {
+        reset(theWidth, theCapacity);
+        int index = theOffset;
+        int count = 0;
+        for (int y = 0; y < theRows; y++) {
+            for (int x = 0; x < theWidth; x++) {
+                final int type = (int) (theState[index] >>> count * CELL_BITS & CELL_MASK);
+                if (type != 0) {
+                    set(x, y, BLOCKS[type]);
+                }
+                count++;
+                if (count == CELLS_PER_LONG) {
+                    index++;
+                    count = 0;
+                }
+            }
+        }
+        myRowCount = theRows;
+    }
+
+    /**
+     * Updates the column heights after rows have been cleared. Each column
+     * drops by the number of cleared rows beneath its surface and then
+     * down past any empty cells now at its top.
+     *
+     * @param theCleared the number of entries in myCleared
+     */
+    private void lowerHeights(final int theCleared) {
+        for (int x = 0; x < myWidth; x++) {
+            int height = myHeights[x];
+            for (int i = 0; i < theCleared; i++) {
+                if (myCleared[i] < myHeights[x]) {
+                    height--;
+                }
+            }
+            final long bit = 1L << x;
+            while (height > 0 && (myRows[slot(height - 1)] & bit) == 0) {
+                height--;
+            }
+            myHeights[x] = height;
+        }
+    }
+
+    /**
+     * Compacts the rows above the lowest cleared row downward over the cleared rows,
+     * then empties the rows left vacant at the top.
+     *
+     * @param theCleared the number of entries in myCleared
+     */
+    private void dropRowsAbove(final int theCleared) {
+        int write = myCleared[0];
+        int next = 0;
+        for (int read = write; read < myRowCount; read++) {
+            if (next < theCleared && myCleared[next] == read) {
+                next++;
+            } else {
+                moveRow(read, write);
+                write++;
+            }
+        }
+        for (int y = write; y < myRowCount; y++) {
+            clearRow(slot(y));
+        }
+    }
+
+    /**
+     * Compacts the rows below the highest cleared row upward over the cleared rows,
+     * then empties the vacated bottom rows and advances the base past them.
+     *
+     * @param theCleared the number of entries in myCleared
+     */
+    private void raiseRowsBelow(final int theCleared) {
+        int write = myCleared[theCleared - 1];
+        int next = theCleared - 1;
+        for (int read = write; read >= 0; read--) {
+            if (next >= 0 && myCleared[next] == read) {
+                next--;
+            } else {
+                moveRow(read, write);
+                write--;
+            }
+        }
+        for (int y = 0; y < theCleared; y++) {
+            clearRow(slot(y));
+        }
+        myBase = slot(theCleared);
+    }
+
+    /**
+     * Copies one logical row over another.
+     *
+     * @param theFrom the row to copy
+     * @param theTo the row to overwrite
+     */
+    private void moveRow(final int theFrom, final int theTo) {
+        final int from = slot(theFrom);
+        final int to = slot(theTo);
+        myRows[to] = myRows[from];
+        myRowHashes[to] = myRowHashes[from];
+        myFillCounts[to] = myFillCounts[from];
+        System.arraycopy(myCells, from * myWidth, myCells, to * myWidth, myWidth);
+    }
+
+    /**
+     * Empties one physical row.
+     *
+     * @param theSlot the physical slot of the row
+     */
+    private void clearRow(final int theSlot) {
+        myRows[theSlot] = 0L;
+        myRowHashes[theSlot] = 0L;
+        myFillCounts[theSlot] = 0;
+        Arrays.fill(myCells, theSlot * myWidth, (theSlot + 1) * myWidth, (byte) 0);
+    }
+
+    /**
+     * Returns a live list view of the rows in use, bottom row first.
+     * The arrays returned by the view are reused and refreshed on each access.
+     *
+     * @return the rows in use
+     */
+    List<Block[]> asList() {
+        return myView;
+    }
+
+    /**
+     * A read-only List of Block rows backed by this bitboard.
+     */
+    private final class RowView extends AbstractList<Block[]> {
+
+        @Override
+        public Block[] get(final int theIndex) {
+            if (theIndex < 0 || theIndex >= myRowCount) {
+                throw new IndexOutOfBoundsException(Integer.toString(theIndex));
+            }
+            Block[] row = myRowViews[theIndex];
+            if (row == null || row.length != myWidth) {
+                row = new Block[myWidth];
+                myRowViews[theIndex] = row;
+            }
+            final int offset = slot(theIndex) * myWidth;
+            for (int x = 0; x < myWidth; x++) {
+                row[x] = BLOCKS[myCells[offset + x]];
+            }
+            return row;
+        }
+
+        @Override
+        public int size() {
+            return myRowCount;
+        }
+    }
+}
@@ -5,11 +5,10 @@
 package model;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Observable;
-import java.util.Random;
 
 /**
  * A representation of a Tetris game board.
@@ -17,7 +16,7 @@ import java.util.Random;
  * @author Alan Fowler
  * @version Autumn 2014
  */
-public final class Board extends Observable {
+public final class Board {
     // constants
 
     /** The width of a standard Tetris board. */
@@ -44,17 +43,38 @@ public final class Board extends Observable {
     /** The representation of the current piece's position in string output. */
     private static final String CURRENT_PIECE = "*";
 
-    /** The random number generator used for choosing new pieces. */
-    private static final Random RANDOM = new Random();
+    /** The number of piece types drawn from the randomizer at a time. */
+    private static final int TYPE_BUFFER = 64;
 
     /** The minimum size of a board. */
     private static final int MIN_SIZE = 5;
 
-    /** The number of rotations to return a piece to initial state. */
-    private static final int ROTATIONS = 4;
+    /** The number of longs in an encoded board before its frozen cells. */
+    private static final int STATE_HEADER = 5;
 
-    /** The number of extra rows above the board to display in String output. */
+    /** The number of longs in a saved state after the encoded board. */
+    private static final int TYPE_STATE = 1 + TYPE_BUFFER / Long.BYTES;
+
+    /** The number of bits of each small field of an encoded board. */
+    private static final int STATE_FIELD = 8;
+
+    /** The mask of a small field of an encoded board. */
+    private static final int STATE_MASK = (1 << STATE_FIELD) - 1;
+
+    /** The number of bits of the width, height and row count of an encoded board. */
+    private static final int SIZE_FIELD = 16;
+
+    /** The mask of a size field of an encoded board. */
+    private static final int SIZE_MASK = (1 << SIZE_FIELD) - 1;
+
+    /**
+     * The number of extra rows above the board to display in String output.
+     * This is also the number of rows above the board that can hold frozen blocks.
+     */
     private static final int EXTRA_ROWS = 4;
+
+    /** The maximum height of a board, so that its rows fit in a size field. */
+    private static final int MAX_HEIGHT = SIZE_MASK - EXTRA_ROWS;
     
     /** Represents the state when no current piece exists. */
     private static final Piece NO_PIECE = null;
@@ -74,7 +94,7 @@ public final class Board extends Observable {
     /**
      * The current frozen blocks on the board.
      */
-    private final List<Block[]> myFrozenBlocks;
+    private final BitBoard myFrozenBlocks;
 
     /**
      * The piece currently being moved on the board.
@@ -97,6 +117,94 @@ public final class Board extends Observable {
      */
     private boolean myGameOver;
 
+    /**
+     * The randomizer used for choosing new pieces.
+     */
+    private final Randomizer myRandomizer;
+
+    /**
+     * Piece types drawn from the randomizer ahead of use, as Block ordinals.
+     */
+    private final byte[] myTypes;
+
+    /**
+     * The index of the next unused piece type in myTypes.
+     */
+    private int myTypeIndex;
+
+    /**
+     * Two reusable pieces of each type, indexed by Block ordinal times two.
+     * The current and next pieces may be of the same type, but a piece is
+     * never dealt again while it is still the current piece.
+     */
+    private final AbstractPiece[] myPiecePool;
+
+    /**
+     * The listeners registered for each kind of event, indexed by BoardEvent ordinal.
+     * The arrays are replaced rather than modified when listeners change.
+     */
+    private final BoardListener[][] myListeners;
+
+    /**
+     * The kinds of events that have at least one listener, as BoardEvent masks.
+     */
+    private int mySubscribed;
+
+    /**
+     * The kinds of events waiting to be delivered, as BoardEvent masks.
+     */
+    private int myPending;
+
+    /**
+     * The number of ticks begun and not yet ended.
+     */
+    private int myTickDepth;
+
+    /**
+     * The shape of the last piece frozen.
+     */
+    private int myLockedShape;
+
+    /**
+     * The x-coordinate of the last piece frozen.
+     */
+    private int myLockedX;
+
+    /**
+     * The y-coordinate of the last piece frozen.
+     */
+    private int myLockedY;
+
+    /**
+     * The number of lines removed by the last clear.
+     */
+    private int myClearedCount;
+
+    /**
+     * The rows removed by the last clear, lowest first.
+     */
+    private final int[] myClearedRows;
+
+    /**
+     * The number of lines cleared since the game started.
+     */
+    private int myLinesCleared;
+
+    /**
+     * The number of pieces frozen since the game started.
+     */
+    private int myPiecesFrozen;
+
+    /**
+     * The points scored since the game started, by the rules in {@link Scoring}.
+     */
+    private long myScore;
+
+    /**
+     * Changes whenever the frozen blocks change, so snapshots can share them.
+     */
+    private int myFrozenVersion;
+
     /**
      * Constructs a Board using the specified dimensions and the specified sequence of pieces.
      * 
@@ -107,9 +215,47 @@ public final class Board extends Observable {
      */
     public Board(final int theWidth, final int theHeight,
                  final Deque<Piece> thePieces) {
+        this(theWidth, theHeight, thePieces, new UniformRandomizer());
+    }
+
+    /**
+     * Constructs a Board using the specified dimensions and pieces chosen
+     * by the specified randomizer.
+     * 
+     * @param theWidth the grid width to assign to this Tetris board
+     * @param theHeight the grid height to assign to this Tetris board
+     * @param theRandomizer the randomizer used to choose pieces
+     */
+    public Board(final int theWidth, final int theHeight, final Randomizer theRandomizer) {
+        this(theWidth, theHeight, null, theRandomizer);
+    }
+
+    /**
+     * Constructs a Board using the specified dimensions, sequence of pieces
+     * and randomizer.
+     * 
+     * @param theWidth the grid width to assign to this Tetris board
+     * @param theHeight the grid height to assign to this Tetris board
+     * @param thePieces the sequence of pieces to use;
+     * an empty list or null indicates a random game
+     * @param theRandomizer the randomizer used to choose pieces
+     */
+    private Board(final int theWidth, final int theHeight,
+                  final Deque<Piece> thePieces, final Randomizer theRandomizer) {
         super();
+        if (theRandomizer == null) {
+            throw new IllegalArgumentException();
+        }
+        myRandomizer = theRandomizer;
+        myTypes = new byte[TYPE_BUFFER];
+        myPiecePool = new AbstractPiece[Block.values().length * 2];
+        myListeners = new BoardListener[BoardEvent.values().length][];
+        for (int i = 0; i < myListeners.length; i++) {
+            myListeners[i] = new BoardListener[0];
+        }
+        myClearedRows = new int[PieceShapes.BOX];
         myPieces = new ArrayDeque<>();
-        myFrozenBlocks = new LinkedList<Block[]>();
+        myFrozenBlocks = new BitBoard(DEFAULT_WIDTH, DEFAULT_HEIGHT + EXTRA_ROWS);
         newGame(theWidth, theHeight, thePieces);
     }
     
@@ -120,14 +266,14 @@ public final class Board extends Observable {
      * @param theHeight the grid height to assign to this Tetris board
      */
     public Board(final int theWidth, final int theHeight) {
-        this(theWidth, theHeight, null);
+        this(theWidth, theHeight, new UniformRandomizer());
     }
 
     /**
      * Constructs a Board using default dimensions (10x20) and random pieces.
      */
     public Board() {
-        this(DEFAULT_WIDTH, DEFAULT_HEIGHT, null);
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
     }
 
     /**
@@ -142,9 +288,7 @@ public final class Board extends Observable {
                         final int theHeight,
                         final Deque<Piece> thePieces) {
         
-        if (theWidth < MIN_SIZE || theHeight < MIN_SIZE) {
-            throw new IllegalArgumentException();
-        }
+        checkDimensions(theWidth, theHeight);
         
         myWidth = theWidth;
         myHeight = theHeight;
@@ -156,12 +300,32 @@ public final class Board extends Observable {
         }
         
         myCurrentPiece = NO_PIECE;
-        myFrozenBlocks.clear();
+        myFrozenBlocks.reset(theWidth, theHeight + EXTRA_ROWS);
+        myFrozenVersion++;
         myGameOver = false;
+        myLinesCleared = 0;
+        myPiecesFrozen = 0;
+        myScore = 0;
+        myTypeIndex = myTypes.length; // draw fresh types, the randomizer may have been reset
         assignNextPiece();
         assignCurrentPiece();
-        setChanged();
-        notifyObservers();
+        post(BoardEvent.PIECE_SPAWNED);
+        publish();
+    }
+
+    /**
+     * Checks that a board of the given size can be played on.
+     * 
+     * @param theWidth The width of the board
+     * @param theHeight The height of the board
+     * @throws IllegalArgumentException if the board is narrower or shorter than 5,
+     *         wider than 64 or taller than 65531
+     */
+    static void checkDimensions(final int theWidth, final int theHeight) {
+        if (theWidth < MIN_SIZE || theHeight < MIN_SIZE || theWidth > BitBoard.MAX_WIDTH
+            || theHeight > MAX_HEIGHT) {
+            throw new IllegalArgumentException();
+        }
     }
 
     /**
@@ -180,13 +344,176 @@ public final class Board extends Observable {
 
     /**
      * Returns the current frozen blocks on the board.
+     * The list is a live read-only view; row 0 is the bottom of the board.
      * 
      * @return the current frozen blocks on the board.
      */
     public List<Block[]> getFrozenBlocks() {
+        return myFrozenBlocks.asList();
+    }
+
+    /**
+     * Returns the occupancy mask of a row of frozen blocks.
+     * 
+     * @param theY the row, 0 being the bottom of the board
+     * @return the mask of the row, bit x set when column x holds a frozen block
+     */
+    public long getRowMask(final int theY) {
+        return myFrozenBlocks.getRow(theY);
+    }
+
+    /**
+     * @return the frozen blocks, for searches that test many positions
+     */
+    BitBoard getFrozenBits() {
         return myFrozenBlocks;
     }
 
+    /**
+     * Takes an immutable snapshot of this board for drawing on another thread.
+     * 
+     * @param thePrevious an earlier snapshot of this board to share unchanged
+     *        frozen blocks with, or null
+     * @return the snapshot
+     */
+    public BoardSnapshot snapshot(final BoardSnapshot thePrevious) {
+        return new BoardSnapshot(this, myFrozenVersion, myFrozenBlocks, thePrevious);
+    }
+
+    /**
+     * @return the number of longs {@link #encode} writes for this board as it is now
+     */
+    int encodedSize() {
+        return STATE_HEADER + myFrozenBlocks.encodedSize();
+    }
+
+    /**
+     * Writes the state of the game into longs: the size, the current and
+     * next pieces, the counters, the score and the frozen cells, three bits each.
+     * Listeners, the randomizer and piece types drawn from it ahead of use
+     * are not included.
+     * 
+     * @param theState the array to write to
+     * @param theOffset the first index to write
+     * @return the number of longs written
+     */
+    int encode(final long[] theState, final int theOffset) {
+        final AbstractPiece current = (AbstractPiece) myCurrentPiece;
+        int flags = 0;
+        if (myGameOver) {
+            flags = 1;
+        }
+        theState[theOffset] = myWidth
+                              | (long) myHeight << SIZE_FIELD
+                              | (long) myFrozenBlocks.getRowCount() << 2 * SIZE_FIELD
+                              | (long) flags << 3 * SIZE_FIELD;
+        theState[theOffset + 1] = current.getBlock().ordinal()
+                                  | current.getRotationIndex() << STATE_FIELD
+                                  | ((AbstractPiece) myNextPiece).getBlock().ordinal()
+                                    << 2 * STATE_FIELD;
+        theState[theOffset + 2] = current.getX() & 0xFFFFFFFFL
+                                  | (long) current.getY() << Integer.SIZE;
+        theState[theOffset + 3] = myLinesCleared & 0xFFFFFFFFL
+                                  | (long) myPiecesFrozen << Integer.SIZE;
+        theState[theOffset + 4] = myScore;
+        return STATE_HEADER + myFrozenBlocks.encode(theState, theOffset + STATE_HEADER);
+    }
+
+    /**
+     * Restores a game written by {@link #encode}. Pieces dealt afterwards are
+     * drawn fresh from the randomizer, so the caller must put the randomizer
+     * where it was when the game was written. Listeners are told a piece spawned.
+     * 
+     * @param theState the array to read from
+     * @param theOffset the first index to read
+     */
+    void decode(final long[] theState, final int theOffset) {
+        final long sizes = theState[theOffset];
+        final long pieces = theState[theOffset + 1];
+        final long position = theState[theOffset + 2];
+        final long counts = theState[theOffset + 3];
+        myWidth = (int) sizes & SIZE_MASK;
+        myHeight = (int) (sizes >>> SIZE_FIELD) & SIZE_MASK;
+        myGameOver = (sizes >>> 3 * SIZE_FIELD & 1) != 0;
+        myFrozenBlocks.decode(theState, theOffset + STATE_HEADER, myWidth,
+                              myHeight + EXTRA_ROWS,
+                              (int) (sizes >>> 2 * SIZE_FIELD) & SIZE_MASK);
+        myFrozenVersion++;
+        myLinesCleared = (int) counts;
+        myPiecesFrozen = (int) (counts >>> Integer.SIZE);
+        myScore = theState[theOffset + 4];
+        myTypeIndex = myTypes.length;
+
+        myCurrentPiece = NO_PIECE;
+        final AbstractPiece current = pooledPiece((int) pieces & STATE_MASK,
+                                                  (int) position,
+                                                  (int) (position >>> Integer.SIZE));
+        for (int turn = (int) (pieces >>> STATE_FIELD) & STATE_MASK; turn > 0; turn--) {
+            current.rotateCW();
+        }
+        myCurrentPiece = current;
+        myNextPiece = pooledPiece((int) (pieces >>> 2 * STATE_FIELD) & STATE_MASK,
+                                  myWidth / 2 - 2, myHeight);
+        post(BoardEvent.PIECE_SPAWNED);
+        publish();
+    }
+
+    /**
+     * @return the most longs {@link #saveState} can write for a board of this size
+     */
+    public int stateSize() {
+        return STATE_HEADER + myFrozenBlocks.maxEncodedSize() + TYPE_STATE;
+    }
+
+    /**
+     * Saves the state of the game into longs, for {@link #restoreState} to
+     * put back later. The state is the game as {@link #encode} writes it
+     * followed by the piece types drawn from the randomizer ahead of use, so
+     * the same pieces are dealt after a restore for as long as those last.
+     * The randomizer itself and the position in a fixed sequence of pieces
+     * are not saved.
+     * 
+     * @param theState the array to write to, with room for {@link #stateSize()} longs
+     * @param theOffset the first index to write
+     * @return the number of longs written
+     */
+    public int saveState(final long[] theState, final int theOffset) {
+        final int size = encode(theState, theOffset);
+        int index = theOffset + size;
+        theState[index++] = myTypeIndex;
+        for (int i = 0; i < TYPE_BUFFER; i += Long.BYTES) {
+            long word = 0L;
+            for (int b = 0; b < Long.BYTES; b++) {
+                word |= (long) myTypes[i + b] << b * Byte.SIZE;
+            }
+            theState[index++] = word;
+        }
+        return size + TYPE_STATE;
+    }
+
+    /**
+     * Restores a game saved by {@link #saveState}, on this board or another.
+     * Listeners are told a piece spawned.
+     * 
+     * @param theState the array to read from
+     * @param theOffset the first index to read
+     * @return the number of longs read
+     */
+    public int restoreState(final long[] theState, final int theOffset) {
+        decode(theState, theOffset);
+        final int size = encodedSize();
+        int index = theOffset + size;
+        final int typeIndex = (int) theState[index++];
+        for (int i = 0; i < TYPE_BUFFER; i += Long.BYTES) {
+            final long word = theState[index++];
+            for (int b = 0; b < Long.BYTES; b++) {
+                myTypes[i + b] = (byte) (word >>> b * Byte.SIZE);
+            }
+        }
+        myTypeIndex = typeIndex;
+        return size + TYPE_STATE;
+    }
+
     /**
      * Returns the current Piece being moved.
      * 
@@ -215,26 +542,192 @@ public final class Board extends Observable {
     }
 
     /**
-     * Attempts to move the current piece to the left.
+     * Returns the number of lines cleared since the game started.
+     * 
+     * @return the number of lines cleared
      */
-    public void moveLeft() {
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
-        boolean canPass = true;
-
-        // perform bounds checking on each block
-        for (int i = 0; i < blocks.length; i++) {
-            if (blocks[i][0] == 0 || // block is already at the left wall
-                blockAt(blocks[i][0] - 1, blocks[i][1]) != Block.EMPTY) {
-                // block to left is occupied
-                canPass = false;
-                break; // can't move, no need to keep checking
+    public int getLinesCleared() {
+        return myLinesCleared;
+    }
+
+    /**
+     * Returns the points scored in the current game, by the rules in {@link Scoring}.
+     * 
+     * @return the score
+     */
+    public long getScore() {
+        return myScore;
+    }
+
+    /**
+     * Returns a hash of the state of the game: the frozen cells, the current
+     * piece's type, rotation and position, the next piece, the lines cleared,
+     * the score and whether the game is over. Two boards in the same state
+     * have the same hash on any machine, so comparing hashes is a cheap way
+     * to find where two runs of a game first differ. The hash of the frozen
+     * cells is kept up to date as they change, so this takes constant time.
+     * 
+     * @return the hash
+     */
+    public long getStateHash() {
+        final AbstractPiece current = (AbstractPiece) myCurrentPiece;
+        long result = StateHash.combine(myFrozenBlocks.getHash(), current.getShape());
+        result = StateHash.combine(result, current.getX() & 0xFFFFFFFFL
+                                           | (long) current.getY() << Integer.SIZE);
+        result = StateHash.combine(result, ((AbstractPiece) myNextPiece).getShape());
+        result = StateHash.combine(result, myLinesCleared);
+        result = StateHash.combine(result, myScore);
+        if (myGameOver) {
+            result = StateHash.mix(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of pieces frozen since the game started.
+     * 
+     * @return the number of pieces frozen
+     */
+    public int getPiecesFrozen() {
+        return myPiecesFrozen;
+    }
+
+    /**
+     * Registers a listener for some kinds of events. A board only records
+     * the kinds of events that have listeners, so unwanted kinds cost nothing.
+     * 
+     * @param theListener the listener
+     * @param theEvents the kinds of events to deliver to it; none means every kind
+     */
+    public void addBoardListener(final BoardListener theListener,
+                                 final BoardEvent... theEvents) {
+        if (theListener == null) {
+            throw new IllegalArgumentException();
+        }
+        final BoardEvent[] events;
+        if (theEvents.length == 0) {
+            events = BoardEvent.values();
+        } else {
+            events = theEvents;
+        }
+        for (final BoardEvent event : events) {
+            final BoardListener[] old = myListeners[event.ordinal()];
+            final BoardListener[] listeners = Arrays.copyOf(old, old.length + 1);
+            listeners[old.length] = theListener;
+            myListeners[event.ordinal()] = listeners;
+            mySubscribed |= event.mask();
+        }
+    }
+
+    /**
+     * Unregisters a listener from every kind of event.
+     * 
+     * @param theListener the listener
+     */
+    public void removeBoardListener(final BoardListener theListener) {
+        for (final BoardEvent event : BoardEvent.values()) {
+            final BoardListener[] old = myListeners[event.ordinal()];
+            final BoardListener[] listeners = new BoardListener[old.length];
+            int count = 0;
+            for (final BoardListener listener : old) {
+                if (listener != theListener) {
+                    listeners[count] = listener;
+                    count++;
+                }
+            }
+            myListeners[event.ordinal()] = Arrays.copyOf(listeners, count);
+            if (count == 0) {
+                mySubscribed &= ~event.mask();
+                myPending &= ~event.mask();
             }
         }
+    }
+
+    /**
+     * Starts a tick. Until the matching {@link #endTick()}, events are held
+     * back and repeated moves of the current piece are reported only once.
+     * Ticks may be nested; events are delivered when the outermost one ends.
+     */
+    public void beginTick() {
+        myTickDepth++;
+    }
+
+    /**
+     * Ends a tick and delivers the events held back during it.
+     */
+    public void endTick() {
+        if (myTickDepth == 0) {
+            throw new IllegalStateException();
+        }
+        myTickDepth--;
+        publish();
+    }
+
+    /**
+     * Records an event to be delivered, if it has any listeners.
+     * 
+     * @param theEvent the kind of event
+     */
+    private void post(final BoardEvent theEvent) {
+        myPending |= mySubscribed & theEvent.mask();
+    }
+
+    /**
+     * Delivers the recorded events, unless a tick is in progress.
+     */
+    private void publish() {
+        if (myTickDepth == 0 && myPending != 0) {
+            flush();
+        }
+    }
 
-        if (canPass) {
+    /**
+     * Delivers the recorded events in the order BoardEvent declares them.
+     */
+    private void flush() {
+        final int pending = myPending;
+        myPending = 0;
+        if ((pending & BoardEvent.PIECE_MOVED.mask()) != 0) {
+            for (final BoardListener listener : myListeners[BoardEvent.PIECE_MOVED.ordinal()]) {
+                listener.pieceMoved(myCurrentPiece);
+            }
+        }
+        if ((pending & BoardEvent.PIECE_LOCKED.mask()) != 0) {
+            for (final BoardListener listener
+                    : myListeners[BoardEvent.PIECE_LOCKED.ordinal()]) {
+                listener.pieceLocked(myLockedShape, myLockedX, myLockedY);
+            }
+        }
+        if ((pending & BoardEvent.LINES_CLEARED.mask()) != 0) {
+            for (final BoardListener listener
+                    : myListeners[BoardEvent.LINES_CLEARED.ordinal()]) {
+                listener.linesCleared(myClearedCount, myClearedRows);
+            }
+        }
+        if ((pending & BoardEvent.PIECE_SPAWNED.mask()) != 0) {
+            for (final BoardListener listener
+                    : myListeners[BoardEvent.PIECE_SPAWNED.ordinal()]) {
+                listener.pieceSpawned(myCurrentPiece, myNextPiece);
+            }
+        }
+        if ((pending & BoardEvent.GAME_OVER.mask()) != 0) {
+            for (final BoardListener listener : myListeners[BoardEvent.GAME_OVER.ordinal()]) {
+                listener.gameOver();
+            }
+        }
+    }
+
+    /**
+     * Attempts to move the current piece to the left.
+     */
+    public void moveLeft() {
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
+
+        // the piece must not hit the left wall or a frozen block
+        if (myFrozenBlocks.fits(piece.getShape(), piece.getX() - 1, piece.getY())) {
             myCurrentPiece.moveLeft();
-            setChanged();
-            notifyObservers();
+            post(BoardEvent.PIECE_MOVED);
+            publish();
         }
     }
 
@@ -242,23 +735,13 @@ public final class Board extends Observable {
      * Attempts to move the current piece to the right.
      */
     public void moveRight() {
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
-        boolean canPass = true;
-
-        // perform bounds checking on each block
-        for (int i = 0; i < blocks.length; i++) {
-            if (blocks[i][0] == myWidth - 1 || // block is already at the right wall
-                blockAt(blocks[i][0] + 1, blocks[i][1]) != Block.EMPTY) {
-                // block to right is occupied
-                canPass = false;
-                break; // can't move, no need to keep checking
-            }
-        }
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
 
-        if (canPass) {
+        // the piece must not hit the right wall or a frozen block
+        if (myFrozenBlocks.fits(piece.getShape(), piece.getX() + 1, piece.getY())) {
             myCurrentPiece.moveRight();
-            setChanged();
-            notifyObservers();
+            post(BoardEvent.PIECE_MOVED);
+            publish();
         }
     }
 
@@ -269,10 +752,10 @@ public final class Board extends Observable {
 
         if (isMoveDownLegal()) {
             myCurrentPiece.moveDown();
-            setChanged();
-            notifyObservers();
+            post(BoardEvent.PIECE_MOVED);
+            publish();
         } else {
-            freeze(); // this will notify observers
+            freeze(); // this will notify listeners
         }
     }
     
@@ -282,55 +765,98 @@ public final class Board extends Observable {
      * @return true if it possible to move this piece down; false otherwise
      */
     private boolean isMoveDownLegal() {
-        boolean canPass = true;
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
-        
-        // perform bounds checking on each block
-        for (int i = 0; i < blocks.length; i++) {
-            // Is this block at the bottom, or is there a piece below it?
-            if (blocks[i][1] == 0 || // block is at the bottom
-                blockAt(blocks[i][0], blocks[i][1] - 1) != Block.EMPTY) {
-                // block below is occupied
-                canPass = false;
-                break; // can't move, no need to keep checking
-            }
-        }
-        
-        return canPass;
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
+
+        // Is the piece at the bottom, or is there a frozen block below it?
+        return myFrozenBlocks.fits(piece.getShape(), piece.getX(), piece.getY() - 1);
     }
 
     /**
      * Drops the current Piece all the way down.
      */
     public void hardDrop() {
-        while (isMoveDownLegal()) {
-            myCurrentPiece.moveDown();
+        ((AbstractPiece) myCurrentPiece).moveDown(dropDistance());
+        freeze(); // this will notify listeners
+    }
+
+    /**
+     * Moves the current piece down several rows at once, as gravity faster
+     * than one row per step would. If the piece lands before it has moved
+     * them all it freezes, just as the same number of calls to
+     * {@link #moveDown()} would have frozen it; the rows left over are not
+     * applied to the next piece. Falling one row is the same as moveDown().
+     *
+     * @param theRows the number of rows to fall, at least 1
+     */
+    public void fall(final int theRows) {
+        if (theRows < 1) {
+            throw new IllegalArgumentException();
+        }
+        final int distance = dropDistance();
+        if (theRows <= distance) {
+            ((AbstractPiece) myCurrentPiece).moveDown(theRows);
+            post(BoardEvent.PIECE_MOVED);
+            publish();
+        } else {
+            ((AbstractPiece) myCurrentPiece).moveDown(distance);
+            freeze(); // this will notify listeners
         }
-        freeze(); // this will notify observers
     }
 
     /**
-     * Attempts to rotate the current piece clockwise.
+     * Returns how many rows the current piece can fall before it lands.
+     * The piece's landing row is its y-coordinate minus this distance.
+     * 
+     * @return the number of rows the current piece can move down
      */
-    public void rotateCW() {
-        myCurrentPiece.rotateCW();
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
-        boolean canPass = true;
+    public int dropDistance() {
+        return dropDistance(myCurrentPiece);
+    }
 
-        for (final int[] dimension : blocks) {
-            if (dimension[0] >= myWidth
-                    || blockAt(dimension[0], dimension[1]) != Block.EMPTY) {
+    /**
+     * Returns how many rows the given piece could fall on this board before it
+     * lands. The piece's landing row is its y-coordinate minus this distance.
+     * This takes constant time unless the piece is tucked under an overhang.
+     * 
+     * @param thePiece the piece to drop, in any rotation and position on this board
+     * @return the number of rows the piece can move down
+     */
+    public int dropDistance(final Piece thePiece) {
+        final AbstractPiece piece = (AbstractPiece) thePiece;
+        return myFrozenBlocks.dropDistance(piece.getShape(), piece.getX(), piece.getY());
+    }
 
-                for (int i = 1; i < ROTATIONS; i++) {
-                    myCurrentPiece.rotateCW();
-                }
-                canPass = false;
-                break;
-            }
+    /**
+     * Moves the current piece straight to a position and freezes it there,
+     * as the inputs that lead to the position followed by a hard drop would.
+     * The position must be one the piece can rest in.
+     * 
+     * @param theRotation the rotation index
+     * @param theX the x-coordinate
+     * @param theY the y-coordinate
+     */
+    void lock(final int theRotation, final int theX, final int theY) {
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
+        piece.reset(theX, theY);
+        for (int turn = theRotation; turn > 0; turn--) {
+            piece.rotateCW();
         }
-        if (canPass) {
-            setChanged();
-            notifyObservers();
+        freeze(); // this will notify listeners
+    }
+
+    /**
+     * Attempts to rotate the current piece clockwise.
+     */
+    public void rotateCW() {
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
+        final int type = piece.getBlock().ordinal();
+        final int rotated = PieceShapes.shape(type, PieceShapes.nextRotation(
+                                                  type, piece.getRotationIndex()));
+
+        if (myFrozenBlocks.fits(rotated, piece.getX(), piece.getY())) {
+            myCurrentPiece.rotateCW();
+            post(BoardEvent.PIECE_MOVED);
+            publish();
         }
     }
 
@@ -368,8 +894,61 @@ public final class Board extends Observable {
     }
 
     /**
-     * Creates a new piece randomly chosen from the possible pieces at the
-     * specified coordinates.
+     * Returns the type of a piece to be dealt after the next piece, drawing
+     * more types from the randomizer if needed. The pieces dealt are the same
+     * whether or not they were looked at first.
+     * 
+     * @param theAhead how many pieces after the next piece, from 0 for the
+     *        piece dealt after it to 63
+     * @return the Block ordinal of the piece
+     */
+    int getPreviewType(final int theAhead) {
+        if (theAhead < 0 || theAhead >= TYPE_BUFFER) {
+            throw new IllegalArgumentException();
+        }
+        final int result;
+        if (myPieces == null || myPieces.isEmpty()) {
+            if (myTypeIndex + theAhead >= myTypes.length) {
+                // keep the types not yet dealt and draw the ones after them
+                final int left = myTypes.length - myTypeIndex;
+                System.arraycopy(myTypes, myTypeIndex, myTypes, 0, left);
+                myRandomizer.fill(myTypes, left, myTypes.length - left);
+                myTypeIndex = 0;
+            }
+            result = myTypes[myTypeIndex + theAhead];
+        } else {
+            final Iterator<Piece> pieces = myPieces.iterator();
+            for (int i = theAhead % myPieces.size(); i > 0; i--) {
+                pieces.next();
+            }
+            result = ((AbstractPiece) pieces.next()).getBlock().ordinal();
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the next piece with one of another type, for searches that
+     * play on from a board with the pieces they expect.
+     * 
+     * @param theType the Block ordinal of the new next piece
+     */
+    void setNextType(final int theType) {
+        myNextPiece = pooledPiece(theType, myWidth / 2 - 2, myHeight);
+    }
+
+    /**
+     * Returns the randomizer used to choose pieces.
+     * 
+     * @return the randomizer
+     */
+    public Randomizer getRandomizer() {
+        return myRandomizer;
+    }
+
+    /**
+     * Deals the next piece chosen by the randomizer at the specified
+     * coordinates. Piece types are drawn from the randomizer in bulk and
+     * pieces are reused from a pool rather than created for every spawn.
      * 
      * @param theX The x-coordinate
      * @param theY The y-coordinate
@@ -377,10 +956,52 @@ public final class Board extends Observable {
      * @return A randomly chosen piece
      */
     private Piece randomPiece(final int theX, final int theY) {
-        final Block[] blocks = Block.values();
-        Piece result;
+        if (myTypeIndex == myTypes.length) {
+            myRandomizer.fill(myTypes, 0, myTypes.length);
+            myTypeIndex = 0;
+        }
+        final int type = myTypes[myTypeIndex];
+        myTypeIndex++;
+        return pooledPiece(type, theX, theY);
+    }
+
+    /**
+     * Takes a piece of the specified type from the pool, other than the
+     * current piece, and places it at the specified coordinates.
+     * 
+     * @param theType The Block ordinal of the piece
+     * @param theX The x-coordinate
+     * @param theY The y-coordinate
+     * 
+     * @return The piece, in its starting rotation
+     */
+    private AbstractPiece pooledPiece(final int theType, final int theX, final int theY) {
+        int slot = theType * 2;
+        if (myPiecePool[slot] == myCurrentPiece) {
+            slot++;
+        }
+        if (myPiecePool[slot] == null) {
+            myPiecePool[slot] = createPiece(Block.values()[theType], theX, theY);
+        } else {
+            myPiecePool[slot].reset(theX, theY);
+        }
+        return myPiecePool[slot];
+    }
 
-        switch (blocks[RANDOM.nextInt(blocks.length)]) {
+    /**
+     * Creates a new piece of the specified type at the specified coordinates.
+     * 
+     * @param theBlock The piece type
+     * @param theX The x-coordinate
+     * @param theY The y-coordinate
+     * 
+     * @return The new piece
+     */
+    private static AbstractPiece createPiece(final Block theBlock, final int theX,
+                                             final int theY) {
+        final AbstractPiece result;
+
+        switch (theBlock) {
             case I:
                 result = new IPiece(theX, theY);
                 break;
@@ -409,31 +1030,8 @@ public final class Board extends Observable {
                 result = new ZPiece(theX, theY);
                 break;
 
-            default: // If EMPTY, recursively try again
-                result = randomPiece(theX, theY);
-                break;
-        }
-        return result;
-    }
-
-    /**
-     * Retrieves the block at the specified coordinates.
-     * 
-     * @param theX The x-coordinate
-     * @param theY The y-coordinate
-     * 
-     * @return The block at the specified coordinates, EMPTY if there is no
-     *         block at the specified coordinates, null if the specified
-     *         coordinates are outside of the board
-     */
-    private Block blockAt(final int theX, final int theY) {
-        Block result = null; // outside the board coordinates
-        if (theX < myWidth && theX >= 0 && theY >= 0) {
-            // inside the board
-            result = Block.EMPTY; // blocks above the board are empty
-            if (theY < myFrozenBlocks.size()) {
-                result = myFrozenBlocks.get(theY)[theX];
-            }
+            default:
+                throw new IllegalArgumentException();
         }
         return result;
     }
@@ -447,10 +1045,10 @@ public final class Board extends Observable {
      */
     private boolean currentPieceAt(final int theX, final int theY) {
         boolean result = false;
-        final int[][] blocks = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
 
-        for (int block = 0; block < blocks.length; block++) {
-            if (blocks[block][1] == theY && blocks[block][0] == theX) {
+        for (int block = 0; block < PieceShapes.BLOCKS; block++) {
+            if (piece.getBoardY(block) == theY && piece.getBoardX(block) == theX) {
                 result = true;
             }
         }
@@ -461,66 +1059,58 @@ public final class Board extends Observable {
      * The current piece cannot move down so add its blocks to the board.
      */
     private void freeze() {
-        final int[][] coordinates = ((AbstractPiece) myCurrentPiece).getBoardCoordinates();
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
 
-        for (int block = 0; block < coordinates.length; block++) {
-            final int x = coordinates[block][0];
-            final int y = coordinates[block][1];
+        // deliver the events of an earlier piece held back in this tick first
+        if ((myPending & ~BoardEvent.PIECE_MOVED.mask()) != 0) {
+            flush();
+        }
 
-            // Add rows until this block can fit in one.
-            while (y >= myFrozenBlocks.size()) {
-                final Block[] newRow = new Block[myWidth];
-                for (int i = 0; i < myWidth; i++) {
-                    newRow[i] = Block.EMPTY;
-                }
-                myFrozenBlocks.add(newRow);
-            }
-            final Block[] row = myFrozenBlocks.get(y);
-            row[x] = ((AbstractPiece) myCurrentPiece).getBlock();
+        for (int block = 0; block < PieceShapes.BLOCKS; block++) {
+            myFrozenBlocks.set(piece.getBoardX(block), piece.getBoardY(block),
+                               piece.getBlock());
         }
+        myPiecesFrozen++;
+        myFrozenVersion++;
+        myLockedShape = piece.getShape();
+        myLockedX = piece.getX();
+        myLockedY = piece.getY();
+        post(BoardEvent.PIECE_LOCKED);
         
-        setChanged();
-        notifyObservers();
-        
-        clearLines(); // this may also notify observers
+        clearLines();
         
-        if (myFrozenBlocks.size() > myHeight) {
+        if (myFrozenBlocks.getRowCount() > myHeight) {
             myGameOver = true;
+            post(BoardEvent.GAME_OVER);
         } else {
             assignCurrentPiece();
+            post(BoardEvent.PIECE_SPAWNED);
         }
         
-        setChanged();
-        notifyObservers();
+        publish();
     }
 
     /**
      * Checks if there are any lines that need to be cleared
-     * and removes them from the board.
+     * and removes them from the board. Only the rows the current
+     * piece was frozen into can have been completed.
      */
     private void clearLines() {
-        for (int i = myFrozenBlocks.size() - 1; i >= 0; i--) {
-            boolean clear = true;
-            final Block[] blocks = myFrozenBlocks.get(i);
-
-            for (final Block block : blocks) {
-                if (block == Block.EMPTY) {
-                    clear = false;
-                    break;
-                }
-            }
-            if (clear) {
-                myFrozenBlocks.remove(i);
-//                setChanged();
-//                notifyObservers();
+        final AbstractPiece piece = (AbstractPiece) myCurrentPiece;
+        final int shape = piece.getShape();
+        final int cleared = myFrozenBlocks.clearFullRows(
+                                piece.getY() + PieceShapes.minY(shape),
+                                piece.getY() + PieceShapes.maxY(shape));
+        if (cleared > 0) {
+            myScore += Scoring.points(cleared, Scoring.level(myLinesCleared));
+            myLinesCleared += cleared;
+            myClearedCount = cleared;
+            for (int i = 0; i < cleared; i++) {
+                myClearedRows[i] = myFrozenBlocks.getClearedRow(i);
             }
+            //a single event is sent once all the rows have been examined.
+            post(BoardEvent.LINES_CLEARED);
         }
-        //moved these method calls here for simpler line clear tallying.
-        //Where they were previous updated each time a line cleared, even if there were more
-        //lines to left to be cleared. This changed only sends an update once all lines have 
-        //been examined by clearLines();.
-        setChanged();
-        notifyObservers();
     }
 
     /**
@@ -560,26 +1150,15 @@ public final class Board extends Observable {
      */
     private String getRowString(final int theRow) {
         final StringBuilder sb = new StringBuilder();
-
-        if (myFrozenBlocks.size() - 1 < theRow) {
-            for (int column = 0; column < myWidth; column++) {
-                if (currentPieceAt(column, theRow)) {
-                    sb.append(CURRENT_PIECE);
-                } else {
-                    sb.append(EMPTY);
-                }
-            }
-        } else {
-            final Block[] rowOfBlocks = myFrozenBlocks.get(theRow);
-
-            for (int column = 0; column < myWidth; column++) {
-                if (currentPieceAt(column, theRow)) {
-                    sb.append(CURRENT_PIECE);
-                } else if (rowOfBlocks[column] == Block.EMPTY) {
-                    sb.append(EMPTY);
-                } else {
-                    sb.append(FROZEN);
-                }
+        final long row = myFrozenBlocks.getRow(theRow);
+
+        for (int column = 0; column < myWidth; column++) {
+            if (currentPieceAt(column, theRow)) {
+                sb.append(CURRENT_PIECE);
+            } else if ((row & (1L << column)) == 0) {
+                sb.append(EMPTY);
+            } else {
+                sb.append(FROZEN);
             }
         }
         return sb.toString();
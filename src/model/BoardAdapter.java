@@ -0,0 +1,55 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * A BoardListener that ignores every event, to be extended by listeners
+ * that only handle some of them.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public abstract class BoardAdapter implements BoardListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pieceMoved(final Piece thePiece) {
+        // does nothing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pieceLocked(final int theShape, final int theX, final int theY) {
+        // does nothing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void linesCleared(final int theCount, final int[] theRows) {
+        // does nothing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pieceSpawned(final Piece theCurrent, final Piece theNext) {
+        // does nothing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void gameOver() {
+        // does nothing
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The kinds of changes a Board reports to its {@link BoardListener}s.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public enum BoardEvent {
+
+    /** The current piece moved or rotated. */
+    PIECE_MOVED,
+
+    /** The current piece was frozen into the board. */
+    PIECE_LOCKED,
+
+    /** Full lines were removed from the board. */
+    LINES_CLEARED,
+
+    /** A new current piece and next piece were dealt. */
+    PIECE_SPAWNED,
+
+    /** The frozen blocks reached above the top of the board. */
+    GAME_OVER;
+
+    /**
+     * @return the bit for this kind of event in a set of event kinds
+     */
+    int mask() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * Measures the frozen blocks of a board for bots that score boards by their shape.
+ *
+ * <p>Every feature is found from the row masks of the board's bitboard, a
+ * whole row at a time: holes and transitions are the bit counts of a few
+ * masks combined with shifts, and the column heights come from the surface
+ * the bitboard already keeps. Wells are followed down the rows as one mask
+ * per depth, each holding the columns whose well reaches that deep, so a
+ * row costs as many mask operations as its deepest well. Results are written
+ * into an int array the caller reuses, indexed by the feature constants of
+ * this class.
+ *
+ * <p>An extractor keeps only scratch masks, so it allocates nothing after the
+ * first board. It is not safe for use by several threads.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BoardFeatures {
+
+    /** The sum of the column heights. */
+    public static final int HEIGHT = 0;
+
+    /** The height of the tallest column. */
+    public static final int MAX_HEIGHT = 1;
+
+    /** The number of empty cells with a block somewhere above them. */
+    public static final int HOLES = 2;
+
+    /** The number of rows with at least one hole. */
+    public static final int HOLE_ROWS = 3;
+
+    /** The sum of the height differences between neighbouring columns. */
+    public static final int BUMPINESS = 4;
+
+    /**
+     * The number of changes between filled and empty cells along the rows
+     * in use, the walls counting as filled.
+     */
+    public static final int ROW_TRANSITIONS = 5;
+
+    /**
+     * The number of changes between filled and empty cells up the columns,
+     * the floor counting as filled.
+     */
+    public static final int COLUMN_TRANSITIONS = 6;
+
+    /**
+     * The sum over open cells with both neighbours filled of how many such
+     * cells are stacked from the top of the well down to it, so a well of
+     * depth d counts 1 + 2 + ... + d.
+     */
+    public static final int WELL_SUMS = 7;
+
+    /** The number of features. */
+    public static final int COUNT = 8;
+
+    /**
+     * For each depth from 1, the columns whose well reaches that deep at the
+     * row above, up to the first empty mask.
+     */
+    private long[] myDepths;
+
+    /**
+     * Creates an extractor.
+     */
+    public BoardFeatures() {
+        myDepths = new long[0];
+    }
+
+    /**
+     * Measures the frozen blocks of a board.
+     *
+     * @param theBoard the board
+     * @param theFeatures the array to write to, with room for {@link #COUNT} features
+     * @param theOffset the index of the first feature
+     */
+    public void extract(final Board theBoard, final int[] theFeatures, final int theOffset) {
+        final BitBoard blocks = theBoard.getFrozenBits();
+        final int width = blocks.getWidth();
+        final long full = -1L >>> Long.SIZE - width;
+        final long rightWall = 1L << width - 1;
+        final int rows = blocks.getRowCount();
+        if (myDepths.length < rows + 1) {
+            myDepths = new long[rows + 1];
+        }
+        myDepths[0] = 0L;
+
+        int holes = 0;
+        int holeRows = 0;
+        int rowTransitions = 0;
+        int columnTransitions = 0;
+        int wells = 0;
+        long above = 0L;
+        long upper = 0L;
+        for (int y = rows - 1; y >= 0; y--) {
+            final long row = blocks.getRow(y);
+            final long empty = ~row & full;
+            final long covered = empty & above;
+            holes += Long.bitCount(covered);
+            if (covered != 0L) {
+                holeRows++;
+            }
+            rowTransitions += Long.bitCount((row ^ (row << 1 | 1L)) & full)
+                              + (int) (~row >>> width - 1 & 1L);
+            columnTransitions += Long.bitCount(row ^ upper);
+
+            // wells going on down to this row get one deeper, the rest end
+            final long well = empty & ~above & (row << 1 | 1L) & (row >>> 1 | rightWall);
+            long deeper = well;
+            int level = 0;
+            while (deeper != 0L) {
+                final long next = myDepths[level] & well;
+                myDepths[level] = deeper;
+                wells += Long.bitCount(deeper);
+                deeper = next;
+                level++;
+            }
+            myDepths[level] = 0L;
+            above |= row;
+            upper = row;
+        }
+        columnTransitions += Long.bitCount(~upper & full);
+
+        int height = 0;
+        int maxHeight = 0;
+        int bumpiness = 0;
+        for (int x = 0; x < width; x++) {
+            final int column = blocks.getColumnHeight(x);
+            height += column;
+            maxHeight = Math.max(maxHeight, column);
+            if (x > 0) {
+                bumpiness += Math.abs(column - blocks.getColumnHeight(x - 1));
+            }
+        }
+
+        theFeatures[theOffset + HEIGHT] = height;
+        theFeatures[theOffset + MAX_HEIGHT] = maxHeight;
+        theFeatures[theOffset + HOLES] = holes;
+        theFeatures[theOffset + HOLE_ROWS] = holeRows;
+        theFeatures[theOffset + BUMPINESS] = bumpiness;
+        theFeatures[theOffset + ROW_TRANSITIONS] = rowTransitions;
+        theFeatures[theOffset + COLUMN_TRANSITIONS] = columnTransitions;
+        theFeatures[theOffset + WELL_SUMS] = wells;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * Receives the changes made to a Board. Each method is called only for the
+ * kinds of events the listener was registered for, at most once per batch of
+ * changes, in the order the methods are declared here.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public interface BoardListener {
+
+    /**
+     * Called when the current piece has moved or rotated. Several moves made
+     * in one tick are reported once.
+     *
+     * @param thePiece the current piece
+     */
+    void pieceMoved(Piece thePiece);
+
+    /**
+     * Called when a piece has been frozen into the board.
+     *
+     * @param theShape the shape of the piece, as defined by {@link PieceShapes}
+     * @param theX the x-coordinate the piece was frozen at
+     * @param theY the y-coordinate the piece was frozen at
+     */
+    void pieceLocked(int theShape, int theX, int theY);
+
+    /**
+     * Called when full lines have been removed from the board.
+     *
+     * @param theCount the number of lines removed
+     * @param theRows the rows removed, lowest first, numbered as they were
+     *        before the removal; only the first theCount entries are valid and
+     *        the array is reused, so it must not be kept
+     */
+    void linesCleared(int theCount, int[] theRows);
+
+    /**
+     * Called when new pieces have been dealt, including at the start of a game.
+     *
+     * @param theCurrent the new current piece
+     * @param theNext the new next piece
+     */
+    void pieceSpawned(Piece theCurrent, Piece theNext);
+
+    /**
+     * Called when the game has ended.
+     */
+    void gameOver();
+}
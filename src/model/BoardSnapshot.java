@@ -0,0 +1,195 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * An immutable copy of everything needed to draw a Board at one moment.
+ *
+ * <p>Snapshots can be handed from the thread that runs the game to threads
+ * that draw it without any locking. A snapshot taken while the frozen blocks
+ * are unchanged shares their copy with the previous snapshot, so taking one
+ * per move is cheap.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BoardSnapshot {
+
+    /** The kinds of blocks, indexed by ordinal. */
+    private static final Block[] BLOCKS = Block.values();
+
+    /** The width of the board. */
+    private final int myWidth;
+
+    /** The height of the board. */
+    private final int myHeight;
+
+    /** The number of rows that can hold frozen blocks. */
+    private final int myRows;
+
+    /** The Block ordinal of every cell, row by row from the bottom. Never modified. */
+    private final byte[] myCells;
+
+    /** Changes whenever the frozen blocks change. */
+    private final int myFrozenVersion;
+
+    /** The shape of the current piece, or -1 if there is none. */
+    private final int myShape;
+
+    /** The x-coordinate of the current piece. */
+    private final int myX;
+
+    /** The y-coordinate of the current piece. */
+    private final int myY;
+
+    /** The number of rows the current piece can fall. */
+    private final int myDropDistance;
+
+    /** The shape of the next piece, or -1 if there is none. */
+    private final int myNextShape;
+
+    /** Whether the game is over. */
+    private final boolean myGameOver;
+
+    /** The number of lines cleared since the game started. */
+    private final int myLinesCleared;
+
+    /**
+     * Takes a snapshot of a board.
+     *
+     * @param theBoard the board
+     * @param theFrozenVersion the version of the board's frozen blocks
+     * @param theBlocks the board's frozen blocks
+     * @param thePrevious an earlier snapshot of the same board whose copy of the
+     *        frozen blocks may be shared, or null
+     */
+    BoardSnapshot(final Board theBoard, final int theFrozenVersion, final BitBoard theBlocks,
+                  final BoardSnapshot thePrevious) {
+        myWidth = theBoard.getWidth();
+        myHeight = theBoard.getHeight();
+        myRows = theBlocks.getCapacity();
+        myFrozenVersion = theFrozenVersion;
+        if (thePrevious != null && thePrevious.myFrozenVersion == theFrozenVersion
+            && thePrevious.myCells.length == myWidth * myRows) {
+            myCells = thePrevious.myCells;
+        } else {
+            myCells = new byte[myWidth * myRows];
+            theBlocks.copyCells(myCells);
+        }
+
+        final AbstractPiece piece = (AbstractPiece) theBoard.getCurrentPiece();
+        if (piece == null) {
+            myShape = -1;
+            myX = 0;
+            myY = 0;
+            myDropDistance = 0;
+        } else {
+            myShape = piece.getShape();
+            myX = piece.getX();
+            myY = piece.getY();
+            myDropDistance = theBoard.dropDistance();
+        }
+        final AbstractPiece next = (AbstractPiece) theBoard.getNextPiece();
+        if (next == null) {
+            myNextShape = -1;
+        } else {
+            myNextShape = PieceShapes.shape(next.getBlock().ordinal(), 0);
+        }
+        myGameOver = theBoard.isGameOver();
+        myLinesCleared = theBoard.getLinesCleared();
+    }
+
+    /**
+     * @return the width of the board
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the height of the board
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the number of rows that can hold frozen blocks, including those above the board
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the frozen block in a cell.
+     *
+     * @param theX the column
+     * @param theY the row, 0 being the bottom of the board
+     * @return the block, EMPTY if the cell is empty
+     */
+    public Block getBlock(final int theX, final int theY) {
+        return BLOCKS[myCells[theY * myWidth + theX]];
+    }
+
+    /**
+     * Returns a number that differs between two snapshots of the same board
+     * whenever their frozen blocks differ.
+     *
+     * @return the version of the frozen blocks
+     */
+    public int getFrozenVersion() {
+        return myFrozenVersion;
+    }
+
+    /**
+     * @return the shape of the current piece, as defined by {@link PieceShapes},
+     *         or -1 if there is no current piece
+     */
+    public int getShape() {
+        return myShape;
+    }
+
+    /**
+     * @return the x-coordinate of the current piece
+     */
+    public int getX() {
+        return myX;
+    }
+
+    /**
+     * @return the y-coordinate of the current piece
+     */
+    public int getY() {
+        return myY;
+    }
+
+    /**
+     * @return the number of rows the current piece can fall before it lands
+     */
+    public int getDropDistance() {
+        return myDropDistance;
+    }
+
+    /**
+     * @return the shape of the next piece in its first rotation, or -1 if there is none
+     */
+    public int getNextShape() {
+        return myNextShape;
+    }
+
+    /**
+     * @return whether the game is over
+     */
+    public boolean isGameOver() {
+        return myGameOver;
+    }
+
+    /**
+     * @return the number of lines cleared since the game started
+     */
+    public int getLinesCleared() {
+        return myLinesCleared;
+    }
+}
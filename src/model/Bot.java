@@ -0,0 +1,46 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.List;
+
+/**
+ * This interface defines the operations of an automated player.
+ * 
+ * <p>A bot decides where the current piece of a board goes, either as the
+ * inputs a player would give or by locking the piece there directly. A bot
+ * searches one board at a time, but may use several threads to do it.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public interface Bot {
+
+    /**
+     * Chooses where the current piece of a board goes.
+     * 
+     * @param theBoard the board, which is left unchanged apart from drawing
+     *        preview pieces from its randomizer early
+     * @return the inputs that take the current piece there and lock it, or no
+     *         inputs if the game is over
+     */
+    List<Action> chooseInputs(Board theBoard);
+
+    /**
+     * Chooses where the current piece of a board goes and locks it there
+     * without applying the inputs one by one.
+     * 
+     * @param theBoard the board
+     * @return false if the game was already over, true otherwise
+     */
+    boolean playPiece(Board theBoard);
+
+    /**
+     * Limits the time spent choosing each move.
+     * 
+     * @param theNanos the most time in nanoseconds, at least 1
+     */
+    void setTimeBudget(long theNanos);
+}
@@ -0,0 +1,184 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * Runs Tetris games without a display, for simulations and automated players.
+ *
+ * <p>The engine drives a {@link Board} that has no listeners, so no events are
+ * recorded, and chooses pieces with its own seeded {@link Randomizer}. The
+ * board keeps score with the same rules as the game window. Nothing it touches loads the
+ * windowing toolkit.
+ * An engine can be reset and reused for any number of games.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class GameEngine {
+
+    /** The width of a standard Tetris board. */
+    private static final int DEFAULT_WIDTH = 10;
+
+    /** The height of a standard Tetris board. */
+    private static final int DEFAULT_HEIGHT = 20;
+
+    /** The board the game is played on. */
+    private final Board myBoard;
+
+    /** The randomizer the board chooses pieces with. */
+    private final Randomizer myRandomizer;
+
+    /** The width of the board. */
+    private final int myWidth;
+
+    /** The height of the board. */
+    private final int myHeight;
+
+    /** The number of clears of each size, indexed by lines cleared at once. */
+    private final int[] myClears;
+
+    /** The seed the current game was started with. */
+    private long mySeed;
+
+    /** The number of gravity steps taken in the current game. */
+    private long myTicks;
+
+    /**
+     * Creates an engine for standard 10x20 games.
+     */
+    public GameEngine() {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    /**
+     * Creates an engine for games on a board of the given size.
+     *
+     * @param theWidth the board width
+     * @param theHeight the board height
+     */
+    public GameEngine(final int theWidth, final int theHeight) {
+        this(theWidth, theHeight, new UniformRandomizer());
+    }
+
+    /**
+     * Creates an engine for games on a board of the given size with pieces
+     * chosen by the given randomizer. The engine reseeds the randomizer at
+     * the start of every game.
+     *
+     * @param theWidth the board width
+     * @param theHeight the board height
+     * @param theRandomizer the randomizer used to choose pieces
+     */
+    public GameEngine(final int theWidth, final int theHeight,
+                      final Randomizer theRandomizer) {
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myRandomizer = theRandomizer;
+        myClears = new int[Scoring.MAX_LINES + 1];
+        myBoard = new Board(theWidth, theHeight, theRandomizer);
+        reset(0L);
+    }
+
+    /**
+     * Starts a new game. Games started with the same seed receive the same pieces.
+     *
+     * @param theSeed the seed for choosing pieces
+     */
+    public void reset(final long theSeed) {
+        mySeed = theSeed;
+        myRandomizer.reset(theSeed);
+        myBoard.newGame(myWidth, myHeight, null);
+        myTicks = 0;
+        for (int i = 0; i < myClears.length; i++) {
+            myClears[i] = 0;
+        }
+    }
+
+    /**
+     * Applies a player input to the current piece. Inputs are ignored once the game is over.
+     *
+     * @param theAction the input
+     */
+    public void apply(final Action theAction) {
+        if (!myBoard.isGameOver()) {
+            final int lines = myBoard.getLinesCleared();
+            theAction.applyTo(myBoard);
+            tally(lines);
+        }
+    }
+
+    /**
+     * Advances the game by one gravity step. Does nothing once the game is over.
+     */
+    public void step() {
+        if (!myBoard.isGameOver()) {
+            final int lines = myBoard.getLinesCleared();
+            myTicks++;
+            myBoard.step();
+            tally(lines);
+        }
+    }
+
+    /**
+     * Counts the clear made by the last move, if any.
+     *
+     * @param theLinesBefore the number of lines cleared before the move
+     */
+    private void tally(final int theLinesBefore) {
+        final int cleared = myBoard.getLinesCleared() - theLinesBefore;
+        if (cleared > 0) {
+            myClears[cleared]++;
+        }
+    }
+
+    /**
+     * Returns the board the game is played on. Callers should only read it;
+     * moves made on it directly are not scored.
+     *
+     * @return the board
+     */
+    public Board getBoard() {
+        return myBoard;
+    }
+
+    /**
+     * @return whether the current game is over
+     */
+    public boolean isGameOver() {
+        return myBoard.isGameOver();
+    }
+
+    /**
+     * @return the number of gravity steps taken in the current game
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * @return the score of the current game
+     */
+    public long getScore() {
+        return myBoard.getScore();
+    }
+
+    /**
+     * @return the hash of the current game's state, see {@link Board#getStateHash()}
+     */
+    public long getStateHash() {
+        return myBoard.getStateHash();
+    }
+
+    /**
+     * Returns a summary of the current game.
+     *
+     * @return the summary
+     */
+    public GameResult getResult() {
+        return new GameResult(mySeed, myTicks, myBoard.getPiecesFrozen(),
+                              myBoard.getLinesCleared(), myBoard.getScore(), myClears,
+                              myBoard.isGameOver());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * An immutable summary of a game run by a {@link GameEngine}.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class GameResult {
+
+    /** The seed the game was started with. */
+    private final long mySeed;
+
+    /** The number of gravity steps taken. */
+    private final long myTicks;
+
+    /** The number of pieces frozen. */
+    private final int myPieces;
+
+    /** The number of lines cleared. */
+    private final int myLines;
+
+    /** The final score. */
+    private final long myScore;
+
+    /** The number of clears of each size, indexed by lines cleared at once. */
+    private final int[] myClears;
+
+    /** Whether the game had ended. */
+    private final boolean myGameOver;
+
+    /**
+     * Creates a game summary.
+     * 
+     * @param theSeed the seed the game was started with
+     * @param theTicks the number of gravity steps taken
+     * @param thePieces the number of pieces frozen
+     * @param theLines the number of lines cleared
+     * @param theScore the final score
+     * @param theClears the number of clears of each size, indexed by lines cleared at once
+     * @param theGameOver whether the game had ended
+     */
+    public GameResult(final long theSeed, final long theTicks, final int thePieces,
+                      final int theLines, final long theScore, final int[] theClears,
+                      final boolean theGameOver) {
+        mySeed = theSeed;
+        myTicks = theTicks;
+        myPieces = thePieces;
+        myLines = theLines;
+        myScore = theScore;
+        myClears = theClears.clone();
+        myGameOver = theGameOver;
+    }
+
+    /**
+     * @return the seed the game was started with
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * @return the number of gravity steps taken
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * @return the number of pieces frozen
+     */
+    public int getPieces() {
+        return myPieces;
+    }
+
+    /**
+     * @return the number of lines cleared
+     */
+    public int getLines() {
+        return myLines;
+    }
+
+    /**
+     * @return the final score
+     */
+    public long getScore() {
+        return myScore;
+    }
+
+    /**
+     * Returns how many times the given number of lines were cleared at once.
+     * 
+     * @param theSize the number of lines cleared at once, 1 to 4
+     * @return the number of clears of that size
+     */
+    public int getClears(final int theSize) {
+        return myClears[theSize];
+    }
+
+    /**
+     * @return whether the game had ended
+     */
+    public boolean isGameOver() {
+        return myGameOver;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("seed=").append(mySeed);
+        sb.append(" ticks=").append(myTicks);
+        sb.append(" pieces=").append(myPieces);
+        sb.append(" lines=").append(myLines);
+        sb.append(" score=").append(myScore);
+        sb.append(" clears=");
+        for (int size = 1; size < myClears.length; size++) {
+            if (size > 1) {
+                sb.append('/');
+            }
+            sb.append(myClears[size]);
+        }
+        sb.append(" over=").append(myGameOver);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game on its own thread, so that nothing the display does can delay
+ * or drop the player's inputs or the gravity frames.
+ *
+ * <p>The engine thread is the only thread that touches the Board once the
+ * engine has started. Other threads send it inputs through an
+ * {@link InputQueue} and control it through this class's methods. After each
+ * change the engine builds a new {@link BoardSnapshot} while the previous one
+ * stays published, then swaps it in with a single volatile write, so readers
+ * always see a complete frame. Board listeners are called on the engine thread.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class GameThread implements Runnable {
+
+    /** The length of a frame, in nanoseconds. */
+    private static final long FRAME = 1_000_000_000L / Gravity.FRAME_RATE;
+
+    /**
+     * The most frames run at once to catch up after the engine falls behind.
+     * After a longer stall the game resumes where it stopped rather than
+     * racing through the missed frames.
+     */
+    private static final int MAX_CATCH_UP = 8;
+
+    /** The number of frames between state hashes in a recording, one second. */
+    private static final int CHECKSUM_INTERVAL = Gravity.FRAME_RATE;
+
+    /** The board the game is played on. */
+    private final Board myBoard;
+
+    /** The inputs waiting to be applied. */
+    private final InputQueue myInputs;
+
+    /** Called on the engine thread after each new snapshot is published, or null. */
+    private final Runnable myFrameListener;
+
+    /** Measures the frames. */
+    private final RateMeter myTicks;
+
+    /** The gravity applied each frame, used only on the engine thread. */
+    private final Gravity myGravity;
+
+    /** Set when a new game has been asked for. */
+    private final AtomicBoolean myNewGame;
+
+    /** The number of games started, written only on the engine thread. */
+    private volatile int myGames;
+
+    /** Whether gravity and inputs are suspended. */
+    private volatile boolean myPaused;
+
+    /** The gravity rate asked for, in rows per frame with 16 fractional bits. */
+    private volatile int myGravityRate;
+
+    /** Records the games played, or null. Used only on the engine thread. */
+    private final ReplayWriter myRecorder;
+
+    /** Chooses the seed of each game. */
+    private final SplittableRandom mySeeds;
+
+    /** The number of gravity frames run in the current game. */
+    private long myFrame;
+
+    /** The gravity rate last recorded. */
+    private int myRecordedRate;
+
+    /** Whether a game is being recorded and has not yet ended. */
+    private boolean myRecording;
+
+    /** Plays the game in place of the player, or null. */
+    private volatile Bot myBot;
+
+    /** The pieces frozen when the bot last played, or -1 if it has not played this game. */
+    private int myBotPiece;
+
+    /** The published snapshot. */
+    private volatile BoardSnapshot mySnapshot;
+
+    /** The engine thread, or null when the engine is stopped. */
+    private volatile Thread myThread;
+
+    /**
+     * Creates an engine for a board. Listeners should be added to the board
+     * before the engine starts.
+     *
+     * @param theBoard the board
+     * @param theGravityRate the gravity in rows per frame, see {@link Gravity}
+     * @param theFrameListener called on the engine thread after each new snapshot
+     *        is published, or null
+     */
+    public GameThread(final Board theBoard, final int theGravityRate,
+                      final Runnable theFrameListener) {
+        this(theBoard, theGravityRate, theFrameListener, null);
+    }
+
+    /**
+     * Creates an engine for a board that records every game it plays. The
+     * engine starts a freshly seeded game when it starts. Listeners should
+     * be added to the board before the engine starts.
+     *
+     * @param theBoard the board
+     * @param theGravityRate the gravity in rows per frame, see {@link Gravity}
+     * @param theFrameListener called on the engine thread after each new snapshot
+     *        is published, or null
+     * @param theRecorder records the games, or null; the caller closes it after
+     *        stopping the engine
+     */
+    public GameThread(final Board theBoard, final int theGravityRate,
+                      final Runnable theFrameListener, final ReplayWriter theRecorder) {
+        myBoard = theBoard;
+        myRecorder = theRecorder;
+        mySeeds = new SplittableRandom();
+        myInputs = new InputQueue();
+        myFrameListener = theFrameListener;
+        myTicks = new RateMeter();
+        myNewGame = new AtomicBoolean();
+        myGravity = new Gravity(theGravityRate);
+        myGravityRate = theGravityRate;
+        myBotPiece = -1;
+        mySnapshot = theBoard.snapshot(null);
+        if (theRecorder != null) {
+            theBoard.addBoardListener(new BoardAdapter() {
+                @Override
+                public void pieceSpawned(final Piece theCurrent, final Piece theNext) {
+                    // the first pair is recorded when the game starts
+                    if (theBoard.getPiecesFrozen() > 0) {
+                        recordPiece(theNext);
+                    }
+                }
+            }, BoardEvent.PIECE_SPAWNED);
+            myNewGame.set(true);
+        }
+    }
+
+    /**
+     * Starts the engine thread.
+     */
+    public void start() {
+        if (myThread != null) {
+            throw new IllegalStateException();
+        }
+        final Thread thread = new Thread(this, "Tetris engine");
+        thread.setDaemon(true);
+        myThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the engine thread and waits for it to finish. A game being
+     * recorded is written out, ending where it stopped.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if the recording could not be written
+     */
+    public void stop() throws InterruptedException, IOException {
+        final Thread thread = myThread;
+        myThread = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+        }
+        if (myRecorder != null) {
+            myRecorder.flush();
+        }
+    }
+
+    /**
+     * Sends an input to the game. Must always be called from the same thread.
+     *
+     * @param theAction the input
+     * @return true if it was queued, false if the queue was full
+     */
+    public boolean offer(final Action theAction) {
+        final boolean result = myInputs.offer(theAction);
+        wake();
+        return result;
+    }
+
+    /**
+     * Asks for a new game on a board of the same size.
+     */
+    public void newGame() {
+        myNewGame.set(true);
+        wake();
+    }
+
+    /**
+     * Suspends or resumes the game. Inputs sent while paused are discarded.
+     *
+     * @param thePaused true to pause
+     */
+    public void setPaused(final boolean thePaused) {
+        myPaused = thePaused;
+        wake();
+    }
+
+    /**
+     * Sets the gravity. Takes effect from the next frame.
+     *
+     * @param theRate the rate in rows per frame with 16 fractional bits,
+     *        see {@link Gravity}
+     */
+    public void setGravity(final int theRate) {
+        if (theRate < 1) {
+            throw new IllegalArgumentException();
+        }
+        myGravityRate = theRate;
+    }
+
+    /**
+     * Lets a bot play the game, or hands it back to the player. The bot
+     * chooses where each new piece goes on the engine thread, with half a
+     * frame to search, and its inputs are applied and recorded like the
+     * player's. The bot should not be used elsewhere while it plays.
+     *
+     * @param theBot the bot, or null for the player to play
+     */
+    public void setBot(final Bot theBot) {
+        if (theBot != null) {
+            theBot.setTimeBudget(FRAME / 2);
+        }
+        myBot = theBot;
+        wake();
+    }
+
+    /**
+     * @return the most recently published snapshot of the board
+     */
+    public BoardSnapshot getSnapshot() {
+        return mySnapshot;
+    }
+
+    /**
+     * Returns the number of games the engine has started, which is also the
+     * number of the game in progress; a game the board held before the
+     * engine started one is game 0. Board listeners called on the engine
+     * thread can read it to tell which game an event belongs to.
+     *
+     * @return the number of games started
+     */
+    public int getGames() {
+        return myGames;
+    }
+
+    /**
+     * @return the meter measuring the frames
+     */
+    public RateMeter getTickMeter() {
+        return myTicks;
+    }
+
+    /**
+     * Wakes the engine thread to handle a change promptly.
+     */
+    private void wake() {
+        final Thread thread = myThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Applies inputs and gravity until the engine is stopped.
+     *
+     * <p>Gravity advances in fixed frames of 1/60 second. When the thread
+     * wakes late, the frames it missed are run one after another, so the
+     * board goes through the same frames however fast the machine is. Inputs
+     * are applied as soon as they arrive, before the gravity of the frame
+     * in progress.
+     */
+    @Override
+    public void run() {
+        long next = System.nanoTime() + FRAME;
+        while (myThread == Thread.currentThread()) {
+            boolean changed = false;
+            myBoard.beginTick();
+            if (myNewGame.getAndSet(false)) {
+                startGame();
+                next = System.nanoTime() + FRAME;
+                changed = true;
+            }
+            for (Action action = myInputs.poll(); action != null; action = myInputs.poll()) {
+                if (!myPaused && !myBoard.isGameOver()) {
+                    if (myRecording) {
+                        myRecorder.action(myFrame, action);
+                    }
+                    action.applyTo(myBoard);
+                    changed = true;
+                }
+            }
+            changed |= playBot();
+
+            final long now = System.nanoTime();
+            if (myPaused || myBoard.isGameOver()) {
+                next = now + FRAME;
+            } else {
+                myGravity.setRate(myGravityRate);
+                if (myRecording && myRecordedRate != myGravity.getRate()) {
+                    myRecordedRate = myGravity.getRate();
+                    myRecorder.gravity(myFrame, myRecordedRate);
+                }
+                int frames = 0;
+                while (now - next >= 0 && frames < MAX_CATCH_UP
+                       && !myBoard.isGameOver()) {
+                    myTicks.record();
+                    myGravity.apply(myBoard);
+                    myFrame++;
+                    if (myRecording && myFrame % CHECKSUM_INTERVAL == 0) {
+                        myRecorder.checksum(myFrame, myBoard.getStateHash());
+                    }
+                    changed = true;
+                    frames++;
+                    next += FRAME;
+                }
+                if (now - next >= 0) {
+                    // stalled too long to catch up; carry on from here
+                    next = now + FRAME;
+                }
+            }
+            myBoard.endTick();
+            if (myRecording && myBoard.isGameOver()) {
+                myRecorder.endGame(myFrame);
+                myRecording = false;
+            }
+
+            if (changed) {
+                mySnapshot = myBoard.snapshot(mySnapshot);
+                if (myFrameListener != null) {
+                    myFrameListener.run();
+                }
+            }
+            LockSupport.parkNanos(this, next - System.nanoTime());
+        }
+    }
+
+    /**
+     * Starts a new game on the board with a fresh seed, ending the recording
+     * of the game before it.
+     */
+    private void startGame() {
+        final long seed = mySeeds.nextLong();
+        if (myRecording) {
+            myRecorder.endGame(myFrame);
+        }
+        myBoard.getRandomizer().reset(seed);
+        myGravity.reset();
+        myGravity.setRate(myGravityRate);
+        myFrame = 0;
+        myBotPiece = -1;
+        myGames++;
+        if (myRecorder != null) {
+            myRecordedRate = myGravity.getRate();
+            myRecorder.beginGame(myBoard.getWidth(), myBoard.getHeight(), seed,
+                                 myRecordedRate);
+            myRecording = true;
+        }
+        myBoard.newGame(myBoard.getWidth(), myBoard.getHeight(), null);
+        if (myRecording) {
+            recordPiece(myBoard.getCurrentPiece());
+            recordPiece(myBoard.getNextPiece());
+            myRecorder.checksum(myFrame, myBoard.getStateHash());
+        }
+    }
+
+    /**
+     * Lets the bot, if there is one, place the current piece once it has
+     * not yet placed it.
+     *
+     * @return true if the board changed
+     */
+    private boolean playBot() {
+        final Bot bot = myBot;
+        boolean result = false;
+        if (bot != null && !myPaused && !myBoard.isGameOver()
+            && myBotPiece != myBoard.getPiecesFrozen()) {
+            myBotPiece = myBoard.getPiecesFrozen();
+            for (final Action action : bot.chooseInputs(myBoard)) {
+                if (myRecording) {
+                    myRecorder.action(myFrame, action);
+                }
+                action.applyTo(myBoard);
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a piece the board dealt.
+     *
+     * @param thePiece the piece
+     */
+    private void recordPiece(final Piece thePiece) {
+        if (myRecording) {
+            myRecorder.piece(myFrame, ((AbstractPiece) thePiece).getBlock().ordinal());
+        }
+    }
+}
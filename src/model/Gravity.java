@@ -0,0 +1,140 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * Gravity measured in frames rather than timer delays, so a game plays the
+ * same on any machine.
+ *
+ * <p>The rate is a fixed-point number of rows per frame with 16 fractional
+ * bits: {@link #ONE} is one row every frame ("1G"). Each frame the rate is
+ * added to a running total, and the piece falls by the whole rows in it.
+ * At {@link #TWENTY_G} and above the piece drops straight to its landing
+ * row on every frame, and locks on the next frame if it is still there.
+ * Only integer arithmetic is used, so the rows fallen after any number of
+ * frames never depend on rounding.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class Gravity {
+
+    /** The number of frames in a second. */
+    public static final int FRAME_RATE = 60;
+
+    /** The number of fractional bits in a rate. */
+    private static final int FRACTION_BITS = 16;
+
+    /** A rate of one row per frame. */
+    public static final int ONE = 1 << FRACTION_BITS;
+
+    /** The rate at which pieces fall to their landing row at once. */
+    public static final int TWENTY_G = 20 * ONE;
+
+    /**
+     * The rate for each level from 1, following the familiar curve where a
+     * row takes (0.8 - (level - 1) * 0.007) ^ (level - 1) seconds. Levels
+     * past the end of the table are 20G.
+     */
+    private static final int[] CURVE = {
+        1092, 1377, 1768, 2311, 3075, 4169, 5759, 8107, 11634,
+        17026, 25416, 38709, 60169, 95483, 154742, 256187, 433425, 749597,
+    };
+
+    /** The current rate, in rows per frame. */
+    private int myRate;
+
+    /** The fraction of a row fallen but not yet applied. */
+    private int myProgress;
+
+    /**
+     * Creates gravity at the given rate.
+     *
+     * @param theRate the rate in rows per frame, with 16 fractional bits
+     */
+    public Gravity(final int theRate) {
+        setRate(theRate);
+    }
+
+    /**
+     * Returns the rate for a level.
+     *
+     * @param theLevel the level, starting at 1
+     * @return the rate in rows per frame, with 16 fractional bits
+     */
+    public static int forLevel(final int theLevel) {
+        if (theLevel < 1) {
+            throw new IllegalArgumentException();
+        }
+        final int result;
+        if (theLevel > CURVE.length) {
+            result = TWENTY_G;
+        } else {
+            result = CURVE[theLevel - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Changes the rate. Rows already partly fallen are kept.
+     *
+     * @param theRate the rate in rows per frame, with 16 fractional bits
+     */
+    public void setRate(final int theRate) {
+        if (theRate < 1) {
+            throw new IllegalArgumentException();
+        }
+        myRate = theRate;
+    }
+
+    /**
+     * @return the rate in rows per frame, with 16 fractional bits
+     */
+    public int getRate() {
+        return myRate;
+    }
+
+    /**
+     * Forgets any fraction of a row partly fallen, as at the start of a game.
+     */
+    public void reset() {
+        myProgress = 0;
+    }
+
+    /**
+     * @return the fraction of a row partly fallen, with 16 fractional bits
+     */
+    int getProgress() {
+        return myProgress;
+    }
+
+    /**
+     * Puts back a fraction of a row partly fallen, as returned by {@link #getProgress()}.
+     *
+     * @param theProgress the fraction, with 16 fractional bits
+     */
+    void setProgress(final int theProgress) {
+        myProgress = theProgress;
+    }
+
+    /**
+     * Applies one frame of gravity to the current piece of a board.
+     *
+     * @param theBoard the board, which must not be over
+     */
+    public void apply(final Board theBoard) {
+        if (myRate >= TWENTY_G) {
+            myProgress = 0;
+            theBoard.fall(Math.max(theBoard.dropDistance(), 1));
+        } else {
+            myProgress += myRate;
+            final int rows = myProgress >>> FRACTION_BITS;
+            if (rows > 0) {
+                myProgress &= ONE - 1;
+                theBoard.fall(rows);
+            }
+        }
+    }
+}
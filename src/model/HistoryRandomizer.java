@@ -0,0 +1,125 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Avoids repeating recent piece types by rerolling a few times when the drawn
+ * type is among the last four dealt, in the style of the arcade Tetris: The
+ * Grand Master. The first piece is never an S, Z or O.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class HistoryRandomizer extends AbstractRandomizer {
+
+    /** The default number of draws per piece. */
+    public static final int DEFAULT_ROLLS = 4;
+
+    /** The number of recent piece types remembered. */
+    private static final int HISTORY = 4;
+
+    /** The piece types the first piece is chosen from: I, J, L and T. */
+    private static final byte[] FIRST = {1, 2, 3, 6};
+
+    /** The number of draws per piece. */
+    private final int myRolls;
+
+    /** The most recent piece types, oldest first. */
+    private final byte[] myHistory;
+
+    /** Whether the next piece is the first of the sequence. */
+    private boolean myFirst;
+
+    /**
+     * Creates a randomizer with an arbitrary seed and the default number of draws.
+     */
+    public HistoryRandomizer() {
+        this(new SplittableRandom(), DEFAULT_ROLLS);
+    }
+
+    /**
+     * Creates a randomizer with the given seed and number of draws.
+     * 
+     * @param theSeed the seed
+     * @param theRolls the most draws made for each piece, at least 1
+     */
+    public HistoryRandomizer(final long theSeed, final int theRolls) {
+        this(new SplittableRandom(theSeed), theRolls);
+    }
+
+    /**
+     * Creates a randomizer drawing from the given source.
+     * 
+     * @param theRandom the source of random numbers
+     * @param theRolls the most draws made for each piece, at least 1
+     */
+    private HistoryRandomizer(final SplittableRandom theRandom, final int theRolls) {
+        super(theRandom);
+        if (theRolls < 1) {
+            throw new IllegalArgumentException();
+        }
+        myRolls = theRolls;
+        myHistory = new byte[HISTORY];
+        restart();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() {
+        int result;
+        if (myFirst) {
+            result = FIRST[nextInt(FIRST.length)];
+            myFirst = false;
+        } else {
+            result = 1 + nextInt(TYPES);
+            for (int roll = 1; roll < myRolls && inHistory(result); roll++) {
+                result = 1 + nextInt(TYPES);
+            }
+        }
+        System.arraycopy(myHistory, 1, myHistory, 0, HISTORY - 1);
+        myHistory[HISTORY - 1] = (byte) result;
+        return result;
+    }
+
+    /**
+     * Tests whether a piece type was dealt recently.
+     * 
+     * @param theType the Block ordinal
+     * @return true if it is in the history
+     */
+    private boolean inHistory(final int theType) {
+        boolean result = false;
+        for (final byte type : myHistory) {
+            if (type == theType) {
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void restart() {
+        // the history starts full of S and Z pieces
+        for (int i = 0; i < HISTORY; i++) {
+            myHistory[i] = (byte) ((i % 2 == 0) ? Block.Z.ordinal() : Block.S.ordinal());
+        }
+        myFirst = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Randomizer create(final SplittableRandom theRandom) {
+        return new HistoryRandomizer(theRandom, myRolls);
+    }
+}
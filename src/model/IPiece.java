@@ -28,6 +28,15 @@ public final class IPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public IPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.I);
+        super(theX, theY, Block.I);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a IPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A bounded, lock-free queue of player inputs from one producing thread to
+ * one consuming thread.
+ *
+ * <p>The producer owns the tail and the consumer owns the head; each only
+ * reads the other's index, with acquire and release ordering, so neither
+ * ever waits for the other. Inputs are stored as Action ordinals in a ring.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class InputQueue {
+
+    /** The default number of inputs the queue can hold. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** The inputs, indexed by ordinal. */
+    private static final Action[] ACTIONS = Action.values();
+
+    /** Ordered access to the head. */
+    private static final VarHandle HEAD;
+
+    /** Ordered access to the tail. */
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(InputQueue.class, "myHead", long.class);
+            TAIL = lookup.findVarHandle(InputQueue.class, "myTail", long.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** The ring of Action ordinals. */
+    private final byte[] myInputs;
+
+    /** The capacity minus one; the capacity is a power of two. */
+    private final int myMask;
+
+    /** The number of inputs ever taken. Written only by the consumer. */
+    private long myHead;
+
+    /** The number of inputs ever added. Written only by the producer. */
+    private long myTail;
+
+    /**
+     * Creates a queue with the default capacity.
+     */
+    public InputQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a queue.
+     *
+     * @param theCapacity the number of inputs the queue can hold, a power of two
+     */
+    public InputQueue(final int theCapacity) {
+        if (theCapacity <= 0 || Integer.bitCount(theCapacity) != 1) {
+            throw new IllegalArgumentException();
+        }
+        myInputs = new byte[theCapacity];
+        myMask = theCapacity - 1;
+    }
+
+    /**
+     * Adds an input. Called only by the producing thread.
+     *
+     * @param theAction the input
+     * @return true if it was added, false if the queue is full
+     */
+    public boolean offer(final Action theAction) {
+        final long tail = myTail;
+        boolean result = false;
+        if (tail - (long) HEAD.getAcquire(this) < myInputs.length) {
+            myInputs[(int) tail & myMask] = (byte) theAction.ordinal();
+            TAIL.setRelease(this, tail + 1);
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Takes the oldest input. Called only by the consuming thread.
+     *
+     * @return the input, or null if the queue is empty
+     */
+    public Action poll() {
+        final long head = myHead;
+        Action result = null;
+        if (head != (long) TAIL.getAcquire(this)) {
+            result = ACTIONS[myInputs[(int) head & myMask]];
+            HEAD.setRelease(this, head + 1);
+        }
+        return result;
+    }
+}
@@ -28,6 +28,15 @@ public final class JPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public JPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.J);
+        super(theX, theY, Block.J);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a JPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
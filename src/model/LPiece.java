@@ -28,6 +28,15 @@ public final class LPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public LPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.L);
+        super(theX, theY, Block.L);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a LPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
@@ -0,0 +1,669 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plays Tetris by Monte Carlo tree search over the placements of the pieces
+ * it can see.
+ *
+ * <p>A node of the tree is a board reached by placing the current piece, the
+ * next piece and so on. Each iteration walks down from the root choosing the
+ * child with the best upper confidence bound, expands the first node it
+ * reaches that has no children yet, and plays a rollout from there: a few
+ * more pieces, dealt at random, each placed where {@link BoardFeatures} and
+ * the default weights of {@link BeamBot} like best, or now and then
+ * anywhere. The board the rollout ends on is scored against the root, mapped
+ * to between 0 and 1, and added to every node on the way down. The current
+ * piece goes to the root's most visited child.
+ *
+ * <p>Nodes live in parallel primitive arrays of a fixed capacity, so the tree
+ * takes the same memory however many iterations it runs and its nodes are
+ * never collected. Children are allocated side by side and hold only their
+ * placement, packed; the board at a node is rebuilt from the root's saved
+ * state by locking the placements on the way down, which costs less than
+ * keeping a board per node. Once the arrays are full the tree stops growing
+ * and iterations end in rollouts from its leaves.
+ *
+ * <p>Iterations run at the same time on the threads of a fork/join pool, all
+ * on one tree. Visits and rewards are atomic, and a thread counts its visit
+ * to each node as it walks down and adds the reward only when its rollout is
+ * done, so until then the node looks as if the rollout was lost. This
+ * virtual loss sends other threads down other paths. A node is expanded by
+ * whichever thread claims it first; its children are written before it is
+ * marked expanded, so no thread sees them half written.
+ *
+ * <p>A search stops after a budget of rollouts or of time, whichever comes
+ * first. A bot searches one board at a time.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class MctsBot implements Bot {
+
+    /** The default number of nodes the tree can hold. */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /** The default number of rollouts in a search. */
+    public static final long DEFAULT_ROLLOUTS = 2_000;
+
+    /** The bytes each node of the tree takes. */
+    public static final int NODE_BYTES = 5 * Integer.BYTES + Long.BYTES;
+
+    /** The fewest nodes a tree can hold, enough for the children of any root. */
+    private static final int MIN_CAPACITY = 1 << 10;
+
+    /** The default number of pieces placed in a rollout. */
+    private static final int DEFAULT_ROLLOUT_PIECES = 3;
+
+    /** The weight of the exploration term of the upper confidence bound. */
+    private static final double EXPLORATION = 0.5;
+
+    /** The chance that a rollout places a piece at random. */
+    private static final double EPSILON = 0.1;
+
+    /** The difference from the root's score that maps to a reward of about 0.73. */
+    private static final double REWARD_SCALE = 10.0;
+
+    /** The number of rewards' fractions held in a node's total, as a power of two. */
+    private static final int REWARD_BITS = 20;
+
+    /** The state of a node with no children yet. */
+    private static final int LEAF = 0;
+
+    /** The state of a node a thread is expanding. */
+    private static final int EXPANDING = 1;
+
+    /** The state of a node whose children can be read. */
+    private static final int EXPANDED = 2;
+
+    /** The state of a node that is never expanded, as the tree is full or it ends the game. */
+    private static final int FINAL = 3;
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS = 1e9;
+
+    /** The weights rollouts and rewards score boards with. */
+    private final double[] myWeights;
+
+    /** The pool iterations run on, or null to use the calling thread. */
+    private final ForkJoinPool myPool;
+
+    /** The scratch space of each thread that runs iterations. */
+    private final ThreadLocal<Worker> myWorkers;
+
+    /** Finds the inputs for the chosen placement. */
+    private final PlacementGenerator myChooser;
+
+    /** The packed placement that leads to each node. */
+    private final int[] myMoves;
+
+    /** The index of each node's first child. */
+    private final int[] myFirstChild;
+
+    /** The number of children of each node. */
+    private final int[] myChildCounts;
+
+    /** The number of visits to each node, counting rollouts not yet done. */
+    private final AtomicIntegerArray myVisits;
+
+    /** The total reward of each node, in units of 2^-20. */
+    private final AtomicLongArray myRewards;
+
+    /** Whether each node is a leaf, being expanded, expanded or final. */
+    private final AtomicIntegerArray myStates;
+
+    /** The number of nodes in use. */
+    private final AtomicInteger myNodeCount;
+
+    /** The number of rollouts started in the current search. */
+    private final AtomicLong myStarted;
+
+    /** The most rollouts in one search. */
+    private long myRolloutBudget;
+
+    /** The most time spent in one search, in nanoseconds. */
+    private long myTimeBudget;
+
+    /** The number of pieces placed in each rollout. */
+    private int myRolloutPieces;
+
+    /** The piece type at each depth of the tree, as Block ordinals. */
+    private final int[] myTypes;
+
+    /** The board searched, saved. */
+    private long[] myRoot;
+
+    /** The lines cleared on the board searched. */
+    private int myRootLines;
+
+    /** The score of the board searched. */
+    private double myRootScore;
+
+    /** The time the current search started, in System.nanoTime() terms. */
+    private long mySearchStart;
+
+    /** The number of rollouts played by the last search. */
+    private long myRollouts;
+
+    /** The time the last search took, in nanoseconds. */
+    private long myElapsed;
+
+    /**
+     * Creates a bot with the default weights, tree capacity and rollout
+     * budget that takes in the current and next pieces and searches on the
+     * common fork/join pool.
+     */
+    public MctsBot() {
+        this(BeamBot.defaultWeights(), DEFAULT_CAPACITY, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a bot.
+     *
+     * @param theWeights the weights boards are scored with, as for {@link BeamBot}
+     * @param theCapacity the most nodes the tree holds, at least 1024
+     * @param thePreview the number of pieces after the next piece the tree takes
+     *        in, from 0 to 63
+     * @param thePool the pool to run iterations on, or null to search on the
+     *        calling thread
+     */
+    public MctsBot(final double[] theWeights, final int theCapacity, final int thePreview,
+                   final ForkJoinPool thePool) {
+        if (theWeights.length != BeamBot.WEIGHTS || theCapacity < MIN_CAPACITY
+            || thePreview < 0) {
+            throw new IllegalArgumentException();
+        }
+        myWeights = theWeights.clone();
+        myPool = thePool;
+        myWorkers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker();
+            }
+        };
+        myChooser = new PlacementGenerator();
+        myMoves = new int[theCapacity];
+        myFirstChild = new int[theCapacity];
+        myChildCounts = new int[theCapacity];
+        myVisits = new AtomicIntegerArray(theCapacity);
+        myRewards = new AtomicLongArray(theCapacity);
+        myStates = new AtomicIntegerArray(theCapacity);
+        myNodeCount = new AtomicInteger();
+        myStarted = new AtomicLong();
+        myRolloutBudget = DEFAULT_ROLLOUTS;
+        myTimeBudget = Long.MAX_VALUE;
+        myRolloutPieces = DEFAULT_ROLLOUT_PIECES;
+        myTypes = new int[2 + thePreview];
+        myRoot = new long[0];
+    }
+
+    /**
+     * Limits the number of rollouts in each search, though each placement
+     * of the current piece gets a rollout whatever the limit.
+     *
+     * @param theRollouts the most rollouts, at least 1
+     */
+    public void setRolloutBudget(final long theRollouts) {
+        if (theRollouts < 1) {
+            throw new IllegalArgumentException();
+        }
+        myRolloutBudget = theRollouts;
+    }
+
+    /**
+     * Limits the time spent in each search. Each placement of the current
+     * piece gets a rollout whatever the limit.
+     *
+     * @param theNanos the most time in nanoseconds, at least 1
+     */
+    @Override
+    public void setTimeBudget(final long theNanos) {
+        if (theNanos < 1) {
+            throw new IllegalArgumentException();
+        }
+        myTimeBudget = theNanos;
+    }
+
+    /**
+     * Sets the number of pieces placed in each rollout.
+     *
+     * @param thePieces the number of pieces, at least 0
+     */
+    public void setRolloutPieces(final int thePieces) {
+        if (thePieces < 0) {
+            throw new IllegalArgumentException();
+        }
+        myRolloutPieces = thePieces;
+    }
+
+    /**
+     * @return the number of rollouts played by the last search
+     */
+    public long getRollouts() {
+        return myRollouts;
+    }
+
+    /**
+     * @return the rollouts played per second by the last search
+     */
+    public double getRolloutRate() {
+        double result = 0.0;
+        if (myElapsed > 0) {
+            result = myRollouts * NANOS / myElapsed;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of nodes in the tree of the last search
+     */
+    public int getNodes() {
+        return Math.min(myNodeCount.get(), myMoves.length);
+    }
+
+    /**
+     * @return the most nodes the tree can hold
+     */
+    public int getCapacity() {
+        return myMoves.length;
+    }
+
+    /**
+     * @return the bytes the tree takes, whether or not its nodes are in use
+     */
+    public long getTreeBytes() {
+        return (long) myMoves.length * NODE_BYTES;
+    }
+
+    /**
+     * Chooses where the current piece of a board goes.
+     *
+     * @param theBoard the board, which is left unchanged apart from drawing
+     *        preview pieces from its randomizer early
+     * @return the inputs that take the current piece there and lock it, or no
+     *         inputs if the game is over
+     */
+    @Override
+    public List<Action> chooseInputs(final Board theBoard) {
+        List<Action> result = Collections.emptyList();
+        final int placement = search(theBoard);
+        if (placement >= 0) {
+            myChooser.generate(theBoard);
+            result = myChooser.getInputs(placement);
+        }
+        return result;
+    }
+
+    /**
+     * Chooses where the current piece of a board goes and locks it there
+     * without applying the inputs one by one.
+     *
+     * @param theBoard the board
+     * @return false if the game was already over, true otherwise
+     */
+    @Override
+    public boolean playPiece(final Board theBoard) {
+        final int placement = search(theBoard);
+        if (placement >= 0) {
+            myChooser.generate(theBoard);
+            myChooser.place(theBoard, placement);
+        }
+        return placement >= 0;
+    }
+
+    /**
+     * Searches from a board.
+     *
+     * @param theBoard the board
+     * @return the index of the chosen placement among those a
+     *         {@link PlacementGenerator} finds on the board, or -1 if the game
+     *         is already over
+     */
+    private int search(final Board theBoard) {
+        myRollouts = 0;
+        myElapsed = 0;
+        int result = -1;
+        if (!theBoard.isGameOver()) {
+            mySearchStart = System.nanoTime();
+            myTypes[0] = ((AbstractPiece) theBoard.getCurrentPiece()).getBlock().ordinal();
+            myTypes[1] = ((AbstractPiece) theBoard.getNextPiece()).getBlock().ordinal();
+            for (int i = 2; i < myTypes.length; i++) {
+                myTypes[i] = theBoard.getPreviewType(i - 2);
+            }
+            if (myRoot.length < theBoard.stateSize()) {
+                myRoot = new long[theBoard.stateSize()];
+            }
+            theBoard.saveState(myRoot, 0);
+            myRootLines = theBoard.getLinesCleared();
+            myRootScore = myWorkers.get().evaluate(theBoard);
+            clear();
+
+            final Iterations task = new Iterations(0, 1);
+            if (myPool == null || myPool.getParallelism() < 2) {
+                task.compute();
+            } else {
+                myPool.invoke(new Iterations(0, myPool.getParallelism()));
+            }
+            myRollouts = myVisits.get(0);
+            myElapsed = System.nanoTime() - mySearchStart;
+
+            // the most visited child, then the best rewarded, then the first
+            result = 0;
+            final int first = myFirstChild[0];
+            for (int i = 1; i < myChildCounts[0]; i++) {
+                final int visits = myVisits.get(first + i);
+                final int most = myVisits.get(first + result);
+                if (visits > most || visits == most
+                    && myRewards.get(first + i) > myRewards.get(first + result)) {
+                    result = i;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Empties the tree, leaving only the root.
+     */
+    private void clear() {
+        final int used = getNodes();
+        for (int node = 0; node < used; node++) {
+            myVisits.set(node, 0);
+            myRewards.set(node, 0L);
+            myStates.set(node, LEAF);
+        }
+        myChildCounts[0] = 0;
+        myNodeCount.set(1);
+        myStarted.set(0);
+    }
+
+    /**
+     * Claims the next rollout of the search, unless the budget is spent.
+     * Enough rollouts to visit every child of the root once are always
+     * played, so no placement goes untried.
+     *
+     * @return true if a rollout may be played
+     */
+    private boolean claim() {
+        final long started = myStarted.getAndIncrement();
+        int minimum = 0;
+        if (myStates.get(0) == EXPANDED) {
+            minimum = myChildCounts[0];
+        }
+        return started <= minimum
+               || started < myRolloutBudget
+                  && System.nanoTime() - mySearchStart < myTimeBudget;
+    }
+
+    /**
+     * Allocates the children of a node.
+     *
+     * @param theCount the number of children
+     * @return the index of the first child, or -1 if the tree is too full
+     */
+    private int allocate(final int theCount) {
+        int result;
+        int used;
+        do {
+            used = myNodeCount.get();
+            result = used;
+            if (used + theCount > myMoves.length) {
+                result = -1;
+            }
+        } while (result >= 0 && !myNodeCount.compareAndSet(used, used + theCount));
+        return result;
+    }
+
+    /**
+     * Chooses the child of a node to visit, the unvisited children first,
+     * then by upper confidence bound.
+     *
+     * @param theNode the node, expanded
+     * @return the child
+     */
+    private int select(final int theNode) {
+        final int first = myFirstChild[theNode];
+        final double log = Math.log(Math.max(1, myVisits.get(theNode)));
+        int result = first;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + myChildCounts[theNode]; child++) {
+            final int visits = myVisits.get(child);
+            double bound = Double.POSITIVE_INFINITY;
+            if (visits > 0) {
+                bound = myRewards.get(child) / (double) (1L << REWARD_BITS) / visits
+                        + EXPLORATION * Math.sqrt(log / visits);
+            }
+            if (bound > best) {
+                best = bound;
+                result = child;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs iterations of a search until its budget is spent, with as many
+     * tasks as threads.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Iterations extends RecursiveAction {
+
+        /** The class's serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The first thread of the task. */
+        private final int myLow;
+
+        /** One past the last thread of the task. */
+        private final int myHigh;
+
+        /**
+         * Creates a task.
+         *
+         * @param theLow the first thread of the task
+         * @param theHigh one past the last thread of the task
+         */
+        Iterations(final int theLow, final int theHigh) {
+            super();
+            myLow = theLow;
+            myHigh = theHigh;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (myHigh - myLow == 1) {
+                final Worker worker = myWorkers.get();
+                while (claim()) {
+                    worker.iterate();
+                }
+            } else {
+                final int middle = (myLow + myHigh) >>> 1;
+                invokeAll(new Iterations(myLow, middle), new Iterations(middle, myHigh));
+            }
+        }
+    }
+
+    /**
+     * The board and tools one thread runs iterations with.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Worker {
+
+        /** The board iterations are played on. */
+        private final Board myBoard;
+
+        /** Finds the children of nodes and the placements of rollouts. */
+        private final PlacementGenerator myGenerator;
+
+        /** Measures boards. */
+        private final BoardFeatures myFeatures;
+
+        /** The features of the last board measured. */
+        private final int[] myValues;
+
+        /** The nodes visited by the current iteration, from the root down. */
+        private final int[] myPath;
+
+        /** The board before each placement of a rollout, saved. */
+        private long[] myState;
+
+        /**
+         * Creates a worker.
+         */
+        Worker() {
+            myBoard = new Board();
+            myGenerator = new PlacementGenerator();
+            myFeatures = new BoardFeatures();
+            myValues = new int[BoardFeatures.COUNT];
+            myPath = new int[myTypes.length + 1];
+            myState = new long[0];
+        }
+
+        /**
+         * Walks down the tree, expands a node and plays a rollout from it.
+         */
+        void iterate() {
+            myBoard.restoreState(myRoot, 0);
+            int node = 0;
+            int depth = 0;
+            myPath[0] = 0;
+            myVisits.getAndIncrement(0);
+            while (myStates.get(node) == EXPANDED && !myBoard.isGameOver()) {
+                node = select(node);
+                myVisits.getAndIncrement(node);
+                play(depth, myMoves[node]);
+                depth++;
+                myPath[depth] = node;
+            }
+            if (!myBoard.isGameOver() && myStates.compareAndSet(node, LEAF, EXPANDING)) {
+                expand(node, depth);
+            }
+
+            double reward = 0.0;
+            if (!myBoard.isGameOver()) {
+                reward = rollout();
+            }
+            final long units = Math.round(reward * (1L << REWARD_BITS));
+            for (int i = 0; i <= depth; i++) {
+                myRewards.getAndAdd(myPath[i], units);
+            }
+        }
+
+        /**
+         * Locks the current piece at a placement, with the piece after it
+         * the one the tree expects.
+         *
+         * @param theDepth the depth of the placement's parent
+         * @param theMove the placement, packed
+         */
+        private void play(final int theDepth, final int theMove) {
+            if (theDepth + 1 < myTypes.length) {
+                myBoard.setNextType(myTypes[theDepth + 1]);
+            }
+            PlacementGenerator.lock(myBoard, theMove);
+        }
+
+        /**
+         * Gives a node a child for each placement of the current piece.
+         *
+         * @param theNode the node, claimed for expanding
+         * @param theDepth the node's depth
+         */
+        private void expand(final int theNode, final int theDepth) {
+            int state = FINAL;
+            if (theDepth < myTypes.length) {
+                if (theDepth + 1 < myTypes.length) {
+                    myBoard.setNextType(myTypes[theDepth + 1]);
+                }
+                final int count = myGenerator.generate(myBoard);
+                final int first = allocate(count);
+                if (first >= 0) {
+                    for (int i = 0; i < count; i++) {
+                        myMoves[first + i] = myGenerator.getMove(i);
+                        myFirstChild[first + i] = 0;
+                        myChildCounts[first + i] = 0;
+                    }
+                    myFirstChild[theNode] = first;
+                    myChildCounts[theNode] = count;
+                    state = EXPANDED;
+                }
+            }
+            myStates.set(theNode, state);
+        }
+
+        /**
+         * Places pieces from the board as the default policy does and scores
+         * the board it ends on.
+         *
+         * @return the reward, from 0 to 1
+         */
+        private double rollout() {
+            if (myState.length < myBoard.stateSize()) {
+                myState = new long[myBoard.stateSize()];
+            }
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int piece = 0; piece < myRolloutPieces && !myBoard.isGameOver(); piece++) {
+                final int count = myGenerator.generate(myBoard);
+                int chosen = 0;
+                if (random.nextDouble() < EPSILON) {
+                    chosen = random.nextInt(count);
+                } else {
+                    myBoard.saveState(myState, 0);
+                    double best = Double.NEGATIVE_INFINITY;
+                    for (int i = 0; i < count; i++) {
+                        myGenerator.place(myBoard, i);
+                        if (!myBoard.isGameOver()) {
+                            final double score = evaluate(myBoard);
+                            if (score > best) {
+                                best = score;
+                                chosen = i;
+                            }
+                        }
+                        myBoard.restoreState(myState, 0);
+                    }
+                }
+                myGenerator.place(myBoard, chosen);
+            }
+            double result = 0.0;
+            if (!myBoard.isGameOver()) {
+                result = 1.0 / (1.0 + Math.exp((myRootScore - evaluate(myBoard))
+                                               / REWARD_SCALE));
+            }
+            return result;
+        }
+
+        /**
+         * @param theBoard a board
+         * @return the weighted sum of the features of its frozen blocks and the
+         *         lines cleared since the board searched
+         */
+        double evaluate(final Board theBoard) {
+            myFeatures.extract(theBoard, myValues, 0);
+            double result = myWeights[BeamBot.LINES]
+                            * (theBoard.getLinesCleared() - myRootLines);
+            for (int feature = 0; feature < BoardFeatures.COUNT; feature++) {
+                result += myWeights[feature] * myValues[feature];
+            }
+            return result;
+        }
+    }
+}
@@ -25,6 +25,15 @@ public final class OPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public OPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.O);
+        super(theX, theY, Block.O);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of an OPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
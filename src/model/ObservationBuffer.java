@@ -0,0 +1,433 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-layout buffer of board observations that another process can read
+ * in place, either from a memory-mapped file or from a direct ByteBuffer.
+ *
+ * <p>All values are little-endian. The buffer starts with a 64 byte header of
+ * ints: magic, version, slot count, board width, rows per slot and slot size,
+ * then zeros. Slot i starts at 64 + i * slot size and holds:
+ * <pre>
+ *  0  long  sequence number, odd while the slot is being written
+ *  8  int   current piece Block ordinal (0 when there is none)
+ * 12  int   current piece rotation index
+ * 16  int   current piece x-coordinate
+ * 20  int   current piece y-coordinate
+ * 24  int   next piece Block ordinal
+ * 28  int   1 if the game is over, otherwise 0
+ * 32  long  score
+ * 40  int   lines cleared
+ * 44  int   reserved
+ * 48  long  occupancy mask of row 0, bit x set when column x is occupied,
+ *           followed by one long per row up to height + 3
+ * </pre>
+ * The header and slots are padded to multiples of 64 bytes so that every slot
+ * starts on a cache line and boards written from different threads do not
+ * share one.
+ *
+ * <p>Each slot is guarded by its sequence number. A reader calls
+ * {@link #beginRead(int)}, reads the fields it needs and then calls
+ * {@link #endRead(int, long)}; if the slot changed in between, the values read
+ * may be torn and should be read again.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class ObservationBuffer {
+
+    /** Identifies an observation buffer: "TETR". */
+    public static final int MAGIC = 0x52544554;
+
+    /** The layout version. */
+    public static final int VERSION = 2;
+
+    /** The size of the header in bytes, one cache line. */
+    public static final int HEADER_SIZE = 64;
+
+    /** The offset of the sequence number within a slot. */
+    public static final int SEQUENCE = 0;
+
+    /** The offset of the current piece's Block ordinal within a slot. */
+    public static final int CURRENT_TYPE = 8;
+
+    /** The offset of the current piece's rotation index within a slot. */
+    public static final int ROTATION = 12;
+
+    /** The offset of the current piece's x-coordinate within a slot. */
+    public static final int X = 16;
+
+    /** The offset of the current piece's y-coordinate within a slot. */
+    public static final int Y = 20;
+
+    /** The offset of the next piece's Block ordinal within a slot. */
+    public static final int NEXT_TYPE = 24;
+
+    /** The offset of the game over flag within a slot. */
+    public static final int GAME_OVER = 28;
+
+    /** The offset of the score within a slot. */
+    public static final int SCORE = 32;
+
+    /** The offset of the lines cleared within a slot. */
+    public static final int LINES = 40;
+
+    /** The offset of the first row mask within a slot. */
+    public static final int ROWS = 48;
+
+    /** The number of rows above the board stored in each slot. */
+    private static final int EXTRA_ROWS = 4;
+
+    /** Slots are padded to a multiple of this many bytes. */
+    private static final int ALIGNMENT = 64;
+
+    /** The offset of the magic number in the header. */
+    private static final int H_MAGIC = 0;
+
+    /** The offset of the layout version in the header. */
+    private static final int H_VERSION = 4;
+
+    /** The offset of the slot count in the header. */
+    private static final int H_SLOTS = 8;
+
+    /** The offset of the board width in the header. */
+    private static final int H_WIDTH = 12;
+
+    /** The offset of the number of rows per slot in the header. */
+    private static final int H_ROWS = 16;
+
+    /** The offset of the slot size in the header. */
+    private static final int H_SLOT_SIZE = 20;
+
+    /** Ordered access to the longs of the buffer, for the sequence numbers. */
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** The underlying buffer. */
+    private final ByteBuffer myBuffer;
+
+    /** The number of slots. */
+    private final int mySlots;
+
+    /** The width of the boards observed. */
+    private final int myWidth;
+
+    /** The number of row masks in each slot. */
+    private final int myRows;
+
+    /** The size of each slot in bytes. */
+    private final int mySlotSize;
+
+    /**
+     * Wraps a buffer laid out for the given dimensions.
+     *
+     * @param theBuffer the buffer, large enough for the layout
+     * @param theSlots the number of slots
+     * @param theWidth the width of the boards observed
+     * @param theRows the number of row masks in each slot
+     */
+    private ObservationBuffer(final ByteBuffer theBuffer, final int theSlots,
+                              final int theWidth, final int theRows) {
+        myBuffer = theBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        mySlots = theSlots;
+        myWidth = theWidth;
+        myRows = theRows;
+        mySlotSize = slotSize(theRows - EXTRA_ROWS);
+    }
+
+    /**
+     * Writes the header describing this buffer's layout.
+     *
+     * @return this buffer
+     */
+    private ObservationBuffer writeHeader() {
+        myBuffer.putInt(H_MAGIC, MAGIC);
+        myBuffer.putInt(H_VERSION, VERSION);
+        myBuffer.putInt(H_SLOTS, mySlots);
+        myBuffer.putInt(H_WIDTH, myWidth);
+        myBuffer.putInt(H_ROWS, myRows);
+        myBuffer.putInt(H_SLOT_SIZE, mySlotSize);
+        for (int i = H_SLOT_SIZE + Integer.BYTES; i < HEADER_SIZE; i += Integer.BYTES) {
+            myBuffer.putInt(i, 0);
+        }
+        return this;
+    }
+
+    /**
+     * Creates an observation buffer in direct memory.
+     *
+     * @param theSlots the number of slots
+     * @param theWidth the width of the boards observed
+     * @param theHeight the height of the boards observed
+     * @return the buffer
+     */
+    public static ObservationBuffer allocate(final int theSlots, final int theWidth,
+                                             final int theHeight) {
+        Board.checkDimensions(theWidth, theHeight);
+        // allocate a line more so the slots can start on cache lines
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(size(theSlots, theHeight)
+                                                            + ALIGNMENT);
+        return new ObservationBuffer(
+            buffer.alignedSlice(ALIGNMENT).limit(size(theSlots, theHeight)),
+            theSlots, theWidth, theHeight + EXTRA_ROWS).writeHeader();
+    }
+
+    /**
+     * Creates an observation buffer mapped onto a file, creating or resizing the file.
+     * The mapping stays valid after this method returns.
+     *
+     * @param theFile the file to map
+     * @param theSlots the number of slots
+     * @param theWidth the width of the boards observed
+     * @param theHeight the height of the boards observed
+     * @return the buffer
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static ObservationBuffer map(final Path theFile, final int theSlots,
+                                        final int theWidth, final int theHeight)
+        throws IOException {
+        Board.checkDimensions(theWidth, theHeight);
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(theFile, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 size(theSlots, theHeight));
+        }
+        return new ObservationBuffer(buffer, theSlots, theWidth, theHeight + EXTRA_ROWS)
+            .writeHeader();
+    }
+
+    /**
+     * Maps an existing observation file for reading, taking the layout from its header.
+     *
+     * @param theFile the file written by another process
+     * @return the buffer, read-only
+     * @throws IOException if the file cannot be mapped or is not an observation file
+     */
+    public static ObservationBuffer open(final Path theFile) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(H_MAGIC) != MAGIC
+            || buffer.getInt(H_VERSION) != VERSION) {
+            throw new IOException("Not an observation file: " + theFile);
+        }
+        return new ObservationBuffer(buffer, buffer.getInt(H_SLOTS), buffer.getInt(H_WIDTH),
+                                     buffer.getInt(H_ROWS));
+    }
+
+    /**
+     * Returns the size of one slot.
+     *
+     * @param theHeight the height of the boards observed
+     * @return the slot size in bytes
+     */
+    private static int slotSize(final int theHeight) {
+        final int bytes = ROWS + (theHeight + EXTRA_ROWS) * Long.BYTES;
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns the size of a whole buffer.
+     *
+     * @param theSlots the number of slots
+     * @param theHeight the height of the boards observed
+     * @return the buffer size in bytes
+     */
+    private static int size(final int theSlots, final int theHeight) {
+        if (theSlots < 1) {
+            throw new IllegalArgumentException();
+        }
+        return HEADER_SIZE + theSlots * slotSize(theHeight);
+    }
+
+    /**
+     * @return the underlying buffer, little-endian
+     */
+    public ByteBuffer getBuffer() {
+        return myBuffer;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int getSlots() {
+        return mySlots;
+    }
+
+    /**
+     * @return the width of the boards observed
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the number of row masks in each slot
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the byte offset of a slot in the buffer.
+     *
+     * @param theSlot the slot
+     * @return the offset of the slot
+     */
+    public int offset(final int theSlot) {
+        return HEADER_SIZE + theSlot * mySlotSize;
+    }
+
+    /**
+     * Writes one board of a batch into a slot.
+     *
+     * @param theSlot the slot
+     * @param theBatch the batch
+     * @param theBoard the board number within the batch
+     */
+    public void write(final int theSlot, final BatchEnvironment theBatch, final int theBoard) {
+        final int base = begin(theSlot);
+        myBuffer.putInt(base + CURRENT_TYPE, theBatch.getCurrentType(theBoard).ordinal());
+        myBuffer.putInt(base + ROTATION, theBatch.getRotation(theBoard));
+        myBuffer.putInt(base + X, theBatch.getX(theBoard));
+        myBuffer.putInt(base + Y, theBatch.getY(theBoard));
+        myBuffer.putInt(base + NEXT_TYPE, theBatch.getNextType(theBoard).ordinal());
+        myBuffer.putInt(base + GAME_OVER, theBatch.isGameOver(theBoard) ? 1 : 0);
+        myBuffer.putLong(base + SCORE, theBatch.getScore(theBoard));
+        myBuffer.putInt(base + LINES, theBatch.getLines(theBoard));
+        for (int y = 0; y < myRows; y++) {
+            myBuffer.putLong(base + ROWS + y * Long.BYTES, theBatch.getRow(theBoard, y));
+        }
+        end(theSlot);
+    }
+
+    /**
+     * Writes the state of an engine's game into a slot.
+     *
+     * @param theSlot the slot
+     * @param theEngine the engine, playing on a board of the dimensions
+     *        this buffer was laid out for
+     */
+    public void write(final int theSlot, final GameEngine theEngine) {
+        final Board board = theEngine.getBoard();
+        if (board.getWidth() != myWidth || board.getHeight() + EXTRA_ROWS != myRows) {
+            throw new IllegalArgumentException();
+        }
+        final AbstractPiece current = (AbstractPiece) board.getCurrentPiece();
+        final AbstractPiece next = (AbstractPiece) board.getNextPiece();
+        final int base = begin(theSlot);
+        myBuffer.putInt(base + CURRENT_TYPE, current == null ? 0 : current.getBlock().ordinal());
+        myBuffer.putInt(base + ROTATION, current == null ? 0 : current.getRotationIndex());
+        myBuffer.putInt(base + X, current == null ? 0 : current.getX());
+        myBuffer.putInt(base + Y, current == null ? 0 : current.getY());
+        myBuffer.putInt(base + NEXT_TYPE, next == null ? 0 : next.getBlock().ordinal());
+        myBuffer.putInt(base + GAME_OVER, board.isGameOver() ? 1 : 0);
+        myBuffer.putLong(base + SCORE, theEngine.getScore());
+        myBuffer.putInt(base + LINES, board.getLinesCleared());
+        for (int y = 0; y < myRows; y++) {
+            myBuffer.putLong(base + ROWS + y * Long.BYTES, board.getRowMask(y));
+        }
+        end(theSlot);
+    }
+
+    /**
+     * Marks a slot as being written.
+     *
+     * @param theSlot the slot
+     * @return the offset of the slot
+     */
+    private int begin(final int theSlot) {
+        final int base = offset(theSlot);
+        final long sequence = (long) LONGS.get(myBuffer, base + SEQUENCE);
+        LONGS.set(myBuffer, base + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+        return base;
+    }
+
+    /**
+     * Marks a slot as written, publishing its new contents.
+     *
+     * @param theSlot the slot
+     */
+    private void end(final int theSlot) {
+        final int base = offset(theSlot);
+        final long sequence = (long) LONGS.get(myBuffer, base + SEQUENCE);
+        LONGS.setRelease(myBuffer, base + SEQUENCE, sequence + 1);
+    }
+
+    /**
+     * Starts reading a slot.
+     *
+     * @param theSlot the slot
+     * @return the slot's sequence number, or -1 if it is being written
+     */
+    public long beginRead(final int theSlot) {
+        long result = (long) LONGS.getAcquire(myBuffer, offset(theSlot) + SEQUENCE);
+        if ((result & 1) != 0) {
+            result = -1;
+        }
+        return result;
+    }
+
+    /**
+     * Finishes reading a slot.
+     *
+     * @param theSlot the slot
+     * @param theSequence the sequence number returned by {@link #beginRead(int)}
+     * @return true if the values read since beginRead are consistent
+     */
+    public boolean endRead(final int theSlot, final long theSequence) {
+        VarHandle.loadLoadFence();
+        return theSequence >= 0
+               && (long) LONGS.get(myBuffer, offset(theSlot) + SEQUENCE) == theSequence;
+    }
+
+    /**
+     * Reads an int field of a slot.
+     *
+     * @param theSlot the slot
+     * @param theField the field offset, such as {@link #CURRENT_TYPE}
+     * @return the value of the field
+     */
+    public int getInt(final int theSlot, final int theField) {
+        return myBuffer.getInt(offset(theSlot) + theField);
+    }
+
+    /**
+     * Reads the score of a slot.
+     *
+     * @param theSlot the slot
+     * @return the score
+     */
+    public long getScore(final int theSlot) {
+        return myBuffer.getLong(offset(theSlot) + SCORE);
+    }
+
+    /**
+     * Reads a row mask of a slot.
+     *
+     * @param theSlot the slot
+     * @param theY the row
+     * @return the occupancy mask of the row
+     */
+    public long getRow(final int theSlot, final int theY) {
+        return myBuffer.getLong(offset(theSlot) + ROWS + theY * Long.BYTES);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Shared, precomputed geometry for every rotation of every Tetris piece.
+ *
+ * <p>A shape is one rotation of one piece type and is identified by the int
+ * returned from {@link #shape(int, int)}. For each shape the tables hold the
+ * offsets of its blocks, one occupancy mask per row of its 4x4 box and its
+ * bounding box. The tables are built once and never modified, so pieces only
+ * need to remember their type, rotation and position.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class PieceShapes {
+
+    /** The number of blocks in a piece. */
+    public static final int BLOCKS = 4;
+
+    /** The number of rotational states kept for each piece type. */
+    public static final int ROTATIONS = 4;
+
+    /** The size of the box every shape fits in. */
+    public static final int BOX = 4;
+
+    /** The number of piece types, including the unused EMPTY slot. */
+    private static final int TYPES = Block.values().length;
+
+    /** The x offset of each block of each shape. */
+    private static final int[] CELL_X = new int[TYPES * ROTATIONS * BLOCKS];
+
+    /** The y offset of each block of each shape. */
+    private static final int[] CELL_Y = new int[TYPES * ROTATIONS * BLOCKS];
+
+    /** The occupancy mask of each row of each shape, bit x set for x offset x. */
+    private static final long[] ROW_MASKS = new long[TYPES * ROTATIONS * BOX];
+
+    /**
+     * The smallest y offset in each column of each shape's box,
+     * or {@link #BOX} for columns the shape does not cover.
+     */
+    private static final int[] BOTTOMS = new int[TYPES * ROTATIONS * BOX];
+
+    /** The smallest x offset of each shape. */
+    private static final int[] MIN_X = new int[TYPES * ROTATIONS];
+
+    /** The largest x offset of each shape. */
+    private static final int[] MAX_X = new int[TYPES * ROTATIONS];
+
+    /** The smallest y offset of each shape. */
+    private static final int[] MIN_Y = new int[TYPES * ROTATIONS];
+
+    /** The largest y offset of each shape. */
+    private static final int[] MAX_Y = new int[TYPES * ROTATIONS];
+
+    /** The number of distinct rotations of each piece type. */
+    private static final int[] ROTATION_COUNT = new int[TYPES];
+
+    static {
+        register(Block.I, IPiece.getRotations());
+        register(Block.J, JPiece.getRotations());
+        register(Block.L, LPiece.getRotations());
+        register(Block.O, OPiece.getRotations());
+        register(Block.S, SPiece.getRotations());
+        register(Block.T, TPiece.getRotations());
+        register(Block.Z, ZPiece.getRotations());
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PieceShapes() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Fills the tables for one piece type.
+     *
+     * @param theBlock the piece type
+     * @param theRotations the x and y-coordinates for all rotations of the piece
+     */
+    private static void register(final Block theBlock, final int[][][] theRotations) {
+        final int type = theBlock.ordinal();
+        ROTATION_COUNT[type] = theRotations.length;
+
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            // pieces with fewer rotations repeat their states
+            final int[][] blocks = theRotations[rotation % theRotations.length];
+            final int shape = shape(type, rotation);
+            Arrays.fill(BOTTOMS, shape * BOX, (shape + 1) * BOX, BOX);
+            int minX = BOX;
+            int maxX = -1;
+            int minY = BOX;
+            int maxY = -1;
+
+            for (int i = 0; i < BLOCKS; i++) {
+                final int x = blocks[i][0];
+                final int y = blocks[i][1];
+                CELL_X[shape * BLOCKS + i] = x;
+                CELL_Y[shape * BLOCKS + i] = y;
+                ROW_MASKS[shape * BOX + y] |= 1L << x;
+                BOTTOMS[shape * BOX + x] = Math.min(BOTTOMS[shape * BOX + x], y);
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            MIN_X[shape] = minX;
+            MAX_X[shape] = maxX;
+            MIN_Y[shape] = minY;
+            MAX_Y[shape] = maxY;
+        }
+    }
+
+    /**
+     * Tells whether a table of rotations is the one registered for a piece
+     * type.
+     *
+     * @param theType the ordinal of the piece's Block
+     * @param theRotations the x and y-coordinates for all rotations of a piece
+     * @return true if the rotations and their blocks match, in order
+     */
+    static boolean hasRotations(final int theType, final int[][][] theRotations) {
+        boolean result = ROTATION_COUNT[theType] > 0
+                         && theRotations.length == ROTATION_COUNT[theType];
+        for (int rotation = 0; result && rotation < theRotations.length; rotation++) {
+            final int[][] blocks = theRotations[rotation];
+            final int shape = shape(theType, rotation);
+            result = blocks.length == BLOCKS;
+            for (int i = 0; result && i < BLOCKS; i++) {
+                result = blocks[i].length == 2
+                         && blocks[i][0] == CELL_X[shape * BLOCKS + i]
+                         && blocks[i][1] == CELL_Y[shape * BLOCKS + i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shape for a rotation of a piece type.
+     *
+     * @param theType the ordinal of the piece's Block
+     * @param theRotation the rotation index
+     * @return the shape
+     */
+    public static int shape(final int theType, final int theRotation) {
+        return theType * ROTATIONS + theRotation;
+    }
+
+    /**
+     * @param theShape the shape
+     * @return the ordinal of the Block of the shape's piece type
+     */
+    public static int type(final int theShape) {
+        return theShape / ROTATIONS;
+    }
+
+    /**
+     * Returns the rotation index reached by rotating a piece type once clockwise.
+     *
+     * @param theType the ordinal of the piece's Block
+     * @param theRotation the current rotation index
+     * @return the next rotation index
+     */
+    public static int nextRotation(final int theType, final int theRotation) {
+        return (theRotation + 1) % ROTATION_COUNT[theType];
+    }
+
+    /**
+     * @param theType the ordinal of the piece's Block
+     * @return the number of distinct rotations of the piece type
+     */
+    public static int rotations(final int theType) {
+        return ROTATION_COUNT[theType];
+    }
+
+    /**
+     * @param theShape the shape
+     * @param theBlock the block index, 0 to 3
+     * @return the x offset of the block
+     */
+    public static int cellX(final int theShape, final int theBlock) {
+        return CELL_X[theShape * BLOCKS + theBlock];
+    }
+
+    /**
+     * @param theShape the shape
+     * @param theBlock the block index, 0 to 3
+     * @return the y offset of the block
+     */
+    public static int cellY(final int theShape, final int theBlock) {
+        return CELL_Y[theShape * BLOCKS + theBlock];
+    }
+
+    /**
+     * @param theShape the shape
+     * @param theRow the row offset, 0 to 3
+     * @return the occupancy mask of the row, bit x set for x offset x
+     */
+    public static long rowMask(final int theShape, final int theRow) {
+        return ROW_MASKS[theShape * BOX + theRow];
+    }
+
+    /**
+     * @param theShape the shape
+     * @param theColumn the column offset, 0 to 3
+     * @return the smallest y offset of the shape in the column,
+     *         or {@link #BOX} if the shape has no block in it
+     */
+    public static int bottom(final int theShape, final int theColumn) {
+        return BOTTOMS[theShape * BOX + theColumn];
+    }
+
+    /**
+     * @param theShape the shape
+     * @return the smallest x offset of the shape
+     */
+    public static int minX(final int theShape) {
+        return MIN_X[theShape];
+    }
+
+    /**
+     * @param theShape the shape
+     * @return the largest x offset of the shape
+     */
+    public static int maxX(final int theShape) {
+        return MAX_X[theShape];
+    }
+
+    /**
+     * @param theShape the shape
+     * @return the smallest y offset of the shape
+     */
+    public static int minY(final int theShape) {
+        return MIN_Y[theShape];
+    }
+
+    /**
+     * @param theShape the shape
+     * @return the largest y offset of the shape
+     */
+    public static int maxY(final int theShape) {
+        return MAX_Y[theShape];
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds every place the current piece of a board can come to rest, with the
+ * inputs that take it there.
+ *
+ * <p>The generator searches breadth first over the positions of the piece,
+ * a position being a rotation and a pair of coordinates, starting where the
+ * piece is now and moving it left, right, down and clockwise exactly as the
+ * board would. Each position is tested against the frozen blocks with the
+ * row masks of its shape and marked in a visited bitset, so every reachable
+ * position is examined once, including those only reached by sliding or
+ * rotating under an overhang. Above the highest frozen block every row allows
+ * the same moves, so moving down there goes straight to the lowest such row
+ * rather than one row at a time. A position the piece cannot move down from
+ * is a placement. Different rotations of the same piece can cover the same
+ * cells, so placements are also marked by the cells they cover and only the
+ * first found, with the fewest moves, is kept.
+ *
+ * <p>The search reuses its arrays from one board to the next, so generating
+ * allocates nothing. A generator is not safe for use by several threads.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class PlacementGenerator {
+
+    /** The most columns or rows a shape's origin can be outside the board. */
+    private static final int MARGIN = PieceShapes.BOX - 1;
+
+    /** The number of piece types, including the unused EMPTY slot. */
+    private static final int TYPES = Block.values().length;
+
+    /** The inputs, indexed by ordinal. */
+    private static final Action[] ACTIONS = Action.values();
+
+    /** The number of bits of a packed move's rotation. */
+    private static final int ROTATION_BITS = 2;
+
+    /** The number of bits of a packed move's x-coordinate. */
+    private static final int X_BITS = 10;
+
+    /** The number of bits in a word of a bitset. */
+    private static final int WORD_BITS = 6;
+
+    /**
+     * The first rotation of each shape's piece type that covers the same
+     * cells as the shape, up to position, indexed by shape.
+     */
+    private static final int[] FORMS = new int[TYPES * PieceShapes.ROTATIONS];
+
+    static {
+        for (int type = 1; type < TYPES; type++) {
+            for (int rotation = 0; rotation < PieceShapes.ROTATIONS; rotation++) {
+                int form = rotation;
+                for (int earlier = rotation - 1; earlier >= 0; earlier--) {
+                    if (sameCells(PieceShapes.shape(type, earlier),
+                                  PieceShapes.shape(type, rotation))) {
+                        form = earlier;
+                    }
+                }
+                FORMS[PieceShapes.shape(type, rotation)] = form;
+            }
+        }
+    }
+
+    /** The number of origin columns a position can have. */
+    private int myColumns;
+
+    /** The number of origin rows a position can have. */
+    private int myRows;
+
+    /** The piece type of the last search, as a Block ordinal. */
+    private int myType;
+
+    /** The positions visited, one bit per position index. */
+    private long[] myVisited;
+
+    /** The cells covered by placements found, one bit per form and position. */
+    private long[] myCovered;
+
+    /** The positions waiting to be searched from, then every position reached. */
+    private int[] myQueue;
+
+    /** The position each position was first reached from, or -1 for the start. */
+    private int[] myParents;
+
+    /** The Action ordinal that first reached each position. */
+    private byte[] myMoves;
+
+    /** The position index of each placement found. */
+    private int[] myPlacements;
+
+    /** The number of placements found. */
+    private int myCount;
+
+    /**
+     * Creates a generator. Its arrays are sized by the first board searched.
+     */
+    public PlacementGenerator() {
+        myVisited = new long[0];
+        myCovered = myVisited;
+        myQueue = new int[0];
+        myParents = myQueue;
+        myPlacements = myQueue;
+        myMoves = new byte[0];
+    }
+
+    /**
+     * Finds the placements of a board's current piece, replacing those found before.
+     *
+     * @param theBoard the board, which is left unchanged
+     * @return the number of placements, 0 if the game is over
+     */
+    public int generate(final Board theBoard) {
+        myCount = 0;
+        if (!theBoard.isGameOver()) {
+            final BitBoard blocks = theBoard.getFrozenBits();
+            final AbstractPiece piece = (AbstractPiece) theBoard.getCurrentPiece();
+            resize(blocks.getWidth(), blocks.getCapacity());
+            myType = piece.getBlock().ordinal();
+            Arrays.fill(myVisited, 0L);
+            Arrays.fill(myCovered, 0L);
+
+            // the lowest row the piece can be in, in any rotation, clear of every block
+            final int rowCount = blocks.getRowCount();
+            int clear = rowCount;
+            for (int rotation = 0; rotation < PieceShapes.rotations(myType); rotation++) {
+                final int shape = PieceShapes.shape(myType, rotation);
+                clear = Math.max(clear, rowCount - PieceShapes.minY(shape));
+            }
+
+            int tail = visit(index(piece.getRotationIndex(), piece.getX(), piece.getY()),
+                             -1, Action.NONE, 0);
+            for (int head = 0; head < tail; head++) {
+                final int position = myQueue[head];
+                final int rotation = rotation(position);
+                final int x = x(position);
+                final int y = y(position);
+                final int shape = PieceShapes.shape(myType, rotation);
+                if (y > clear) {
+                    tail = visit(index(rotation, x, clear), position, Action.DOWN, tail);
+                } else if (blocks.fits(shape, x, y - 1)) {
+                    tail = visit(position - 1, position, Action.DOWN, tail);
+                } else {
+                    place(position, shape, x, y);
+                }
+                if (blocks.fits(shape, x - 1, y)) {
+                    tail = visit(position - myRows, position, Action.LEFT, tail);
+                }
+                if (blocks.fits(shape, x + 1, y)) {
+                    tail = visit(position + myRows, position, Action.RIGHT, tail);
+                }
+                final int turned = PieceShapes.nextRotation(myType, rotation);
+                if (blocks.fits(PieceShapes.shape(myType, turned), x, y)) {
+                    tail = visit(index(turned, x, y), position, Action.ROTATE_CW, tail);
+                }
+            }
+        }
+        return myCount;
+    }
+
+    /**
+     * @return the number of placements found by the last search
+     */
+    public int getCount() {
+        return myCount;
+    }
+
+    /**
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the rotation index of the piece at the placement
+     */
+    public int getRotation(final int thePlacement) {
+        return rotation(placement(thePlacement));
+    }
+
+    /**
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the x-coordinate of the piece at the placement
+     */
+    public int getX(final int thePlacement) {
+        return x(placement(thePlacement));
+    }
+
+    /**
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the y-coordinate of the piece at the placement
+     */
+    public int getY(final int thePlacement) {
+        return y(placement(thePlacement));
+    }
+
+    /**
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the shape of the piece at the placement, see {@link PieceShapes}
+     */
+    public int getShape(final int thePlacement) {
+        return PieceShapes.shape(myType, getRotation(thePlacement));
+    }
+
+    /**
+     * Returns the inputs that take the piece from where it was to a placement
+     * and lock it there. The inputs end with a hard drop, which stands for
+     * any moves straight down at the end.
+     *
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the inputs
+     */
+    public List<Action> getInputs(final int thePlacement) {
+        final List<Action> result = new ArrayList<>();
+        int position = placement(thePlacement);
+        while (myParents[position] >= 0 && myMoves[position] == Action.DOWN.ordinal()) {
+            position = myParents[position];
+        }
+        while (myParents[position] >= 0) {
+            final int parent = myParents[position];
+            int repeats = 1;
+            if (myMoves[position] == Action.DOWN.ordinal()) {
+                repeats = y(parent) - y(position);
+            }
+            for (int i = 0; i < repeats; i++) {
+                result.add(ACTIONS[myMoves[position]]);
+            }
+            position = parent;
+        }
+        Collections.reverse(result);
+        result.add(Action.HARD_DROP);
+        return result;
+    }
+
+    /**
+     * Locks the current piece of a board at a placement, as its inputs would
+     * but without applying them one by one. The board must be the one last
+     * searched, unchanged since.
+     *
+     * @param theBoard the board
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     */
+    public void place(final Board theBoard, final int thePlacement) {
+        final int position = placement(thePlacement);
+        theBoard.lock(rotation(position), x(position), y(position));
+    }
+
+    /**
+     * Packs a placement into an int, so searches can keep many of them and
+     * lock a piece there later without searching the board again.
+     *
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the packed rotation and position of the piece at the placement
+     */
+    int getMove(final int thePlacement) {
+        final int position = placement(thePlacement);
+        return rotation(position) | x(position) + MARGIN << ROTATION_BITS
+               | y(position) + MARGIN << ROTATION_BITS + X_BITS;
+    }
+
+    /**
+     * Locks the current piece of a board at a packed placement found on a
+     * board with the same piece and frozen blocks.
+     *
+     * @param theBoard the board
+     * @param theMove the placement, packed by {@link #getMove(int)}
+     */
+    static void lock(final Board theBoard, final int theMove) {
+        theBoard.lock(theMove & (1 << ROTATION_BITS) - 1,
+                      (theMove >>> ROTATION_BITS & (1 << X_BITS) - 1) - MARGIN,
+                      (theMove >>> ROTATION_BITS + X_BITS) - MARGIN);
+    }
+
+    /**
+     * Marks a position as reached and queues it, unless it was reached before.
+     *
+     * @param thePosition the position index
+     * @param theParent the position it was reached from, or -1
+     * @param theMove the input that reached it
+     * @param theTail the number of positions queued so far
+     * @return the number of positions queued now
+     */
+    private int visit(final int thePosition, final int theParent, final Action theMove,
+                      final int theTail) {
+        int result = theTail;
+        final long bit = 1L << thePosition;
+        if ((myVisited[thePosition >>> WORD_BITS] & bit) == 0) {
+            myVisited[thePosition >>> WORD_BITS] |= bit;
+            myParents[thePosition] = theParent;
+            myMoves[thePosition] = (byte) theMove.ordinal();
+            myQueue[result++] = thePosition;
+        }
+        return result;
+    }
+
+    /**
+     * Records a position the piece rests in, unless a placement covering the
+     * same cells was found first.
+     *
+     * @param thePosition the position index
+     * @param theShape the shape at the position
+     * @param theX the x-coordinate of the position
+     * @param theY the y-coordinate of the position
+     */
+    private void place(final int thePosition, final int theShape, final int theX,
+                       final int theY) {
+        final int cells = index(FORMS[theShape], theX + PieceShapes.minX(theShape),
+                                theY + PieceShapes.minY(theShape));
+        final long bit = 1L << cells;
+        if ((myCovered[cells >>> WORD_BITS] & bit) == 0) {
+            myCovered[cells >>> WORD_BITS] |= bit;
+            myPlacements[myCount++] = thePosition;
+        }
+    }
+
+    /**
+     * Returns the number of positions a piece can be in on a board, which
+     * is more than the number of placements it can have.
+     *
+     * @param theBoard the board
+     * @return the number of positions
+     */
+    static int positions(final Board theBoard) {
+        final BitBoard blocks = theBoard.getFrozenBits();
+        return PieceShapes.ROTATIONS * (blocks.getWidth() + MARGIN)
+               * (blocks.getCapacity() + MARGIN + 1);
+    }
+
+    /**
+     * Makes the arrays big enough for every position on a board.
+     *
+     * @param theWidth the number of columns
+     * @param theCapacity the number of rows that can hold frozen blocks
+     */
+    private void resize(final int theWidth, final int theCapacity) {
+        myColumns = theWidth + MARGIN;
+        myRows = theCapacity + MARGIN + 1;
+        final int positions = PieceShapes.ROTATIONS * myColumns * myRows;
+        if (myQueue.length < positions) {
+            final int words = (positions >>> WORD_BITS) + 1;
+            myVisited = new long[words];
+            myCovered = new long[words];
+            myQueue = new int[positions];
+            myParents = new int[positions];
+            myMoves = new byte[positions];
+            myPlacements = new int[positions];
+        }
+    }
+
+    /**
+     * Returns the position index of a placement.
+     *
+     * @param thePlacement the placement, from 0 to {@link #getCount()} - 1
+     * @return the position index
+     */
+    private int placement(final int thePlacement) {
+        if (thePlacement < 0 || thePlacement >= myCount) {
+            throw new IllegalArgumentException();
+        }
+        return myPlacements[thePlacement];
+    }
+
+    /**
+     * Returns the index of a position. Rows are adjacent, so moving down
+     * subtracts one and moving sideways adds or subtracts the number of rows.
+     *
+     * @param theRotation the rotation index
+     * @param theX the x-coordinate of the shape's origin
+     * @param theY the y-coordinate of the shape's origin
+     * @return the index
+     */
+    private int index(final int theRotation, final int theX, final int theY) {
+        return (theRotation * myColumns + theX + MARGIN) * myRows + theY + MARGIN;
+    }
+
+    /**
+     * @param thePosition a position index
+     * @return the rotation index of the position
+     */
+    private int rotation(final int thePosition) {
+        return thePosition / (myColumns * myRows);
+    }
+
+    /**
+     * @param thePosition a position index
+     * @return the x-coordinate of the position
+     */
+    private int x(final int thePosition) {
+        return thePosition / myRows % myColumns - MARGIN;
+    }
+
+    /**
+     * @param thePosition a position index
+     * @return the y-coordinate of the position
+     */
+    private int y(final int thePosition) {
+        return thePosition % myRows - MARGIN;
+    }
+
+    /**
+     * Tests whether two shapes cover the same cells once moved to the same corner.
+     *
+     * @param theFirst a shape
+     * @param theSecond another shape
+     * @return true if they cover the same cells
+     */
+    private static boolean sameCells(final int theFirst, final int theSecond) {
+        boolean result = PieceShapes.maxY(theFirst) - PieceShapes.minY(theFirst)
+                         == PieceShapes.maxY(theSecond) - PieceShapes.minY(theSecond);
+        for (int row = 0; result && row <= PieceShapes.maxY(theFirst)
+                                               - PieceShapes.minY(theFirst); row++) {
+            result = PieceShapes.rowMask(theFirst, PieceShapes.minY(theFirst) + row)
+                     >>> PieceShapes.minX(theFirst)
+                     == PieceShapes.rowMask(theSecond, PieceShapes.minY(theSecond) + row)
+                        >>> PieceShapes.minX(theSecond);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * This interface defines the operations of a generator of Tetris piece types.
+ * 
+ * <p>Piece types are Block ordinals from 1 (I) to 7 (Z). A randomizer started
+ * from a given seed always produces the same sequence, and {@link #split()}
+ * produces an independent randomizer for another game without sharing state.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public interface Randomizer {
+
+    /**
+     * Restarts the sequence from a seed.
+     * 
+     * @param theSeed the seed
+     */
+    void reset(long theSeed);
+
+    /** @return the Block ordinal of the next piece type, 1 to 7. */
+    int next();
+
+    /**
+     * Writes the next piece types into a buffer. The types written are the same
+     * as those that repeated calls to {@link #next()} would return.
+     * 
+     * @param theBuffer the buffer to fill with Block ordinals
+     * @param theOffset the first index to write
+     * @param theLength the number of piece types to write
+     */
+    void fill(byte[] theBuffer, int theOffset, int theLength);
+
+    /**
+     * Creates a randomizer of the same kind with its own sequence, seeded from
+     * this randomizer. Splitting the same randomizer the same way always gives
+     * the same results, so parallel games stay reproducible.
+     * 
+     * @return the new randomizer
+     */
+    Randomizer split();
+}
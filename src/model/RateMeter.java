@@ -0,0 +1,76 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * Measures how often something happens, such as game ticks or drawn frames.
+ *
+ * <p>One thread records events; any thread may read the rate, which is
+ * the number of events per second over the last completed interval.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class RateMeter {
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS = 1e9;
+
+    /** The default length of an interval, in nanoseconds. */
+    private static final long DEFAULT_INTERVAL = 500_000_000L;
+
+    /** The length of an interval, in nanoseconds. */
+    private final long myInterval;
+
+    /** The time the current interval started. */
+    private long myStart;
+
+    /** The number of events in the current interval. */
+    private long myCount;
+
+    /** The rate over the last completed interval, in events per second. */
+    private volatile double myRate;
+
+    /**
+     * Creates a meter measuring over half-second intervals.
+     */
+    public RateMeter() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a meter.
+     *
+     * @param theInterval the length of an interval in nanoseconds
+     */
+    public RateMeter(final long theInterval) {
+        if (theInterval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        myInterval = theInterval;
+        myStart = System.nanoTime();
+    }
+
+    /**
+     * Records an event.
+     */
+    public void record() {
+        myCount++;
+        final long now = System.nanoTime();
+        final long elapsed = now - myStart;
+        if (elapsed >= myInterval) {
+            myRate = myCount * NANOS / elapsed;
+            myCount = 0;
+            myStart = now;
+        }
+    }
+
+    /**
+     * @return the number of events per second over the last completed interval
+     */
+    public double getRate() {
+        return myRate;
+    }
+}
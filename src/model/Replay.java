@@ -0,0 +1,212 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * One recorded game, as read by a {@link ReplayReader}.
+ *
+ * <p>A replay holds the inputs and gravity changes of a game with the frame
+ * each came before, every piece the board dealt, and the board's state hash
+ * at regular frames. Playing it back with a {@link ReplayPlayer} deals the
+ * recorded pieces to a new board and repeats the frames the way
+ * {@link GameThread} ran them, so the board ends exactly as it did when the
+ * game was recorded, and the hashes show if it ever strays.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class Replay {
+
+    /** The board width. */
+    private final int myWidth;
+
+    /** The board height. */
+    private final int myHeight;
+
+    /** The seed the pieces were chosen with. */
+    private final long mySeed;
+
+    /** The gravity rate the game started with. */
+    private final int myGravity;
+
+    /** The frame the game ended in, or the last frame recorded. */
+    private final int myLastFrame;
+
+    /** Whether the end of the game was recorded. */
+    private final boolean myComplete;
+
+    /** The frame of each record. */
+    private final int[] myFrames;
+
+    /** The code of each record, an Action ordinal or a gravity change. */
+    private final byte[] myCodes;
+
+    /** The rate of each gravity change. */
+    private final int[] myValues;
+
+    /** The Block ordinals of the pieces dealt, in order. */
+    private final byte[] myPieces;
+
+    /** The frame each state hash was taken at the start of. */
+    private final int[] myCheckFrames;
+
+    /** The state hashes. */
+    private final long[] myChecks;
+
+    /**
+     * Creates a replay. The arrays are not copied.
+     *
+     * @param theWidth the board width
+     * @param theHeight the board height
+     * @param theSeed the seed the pieces were chosen with
+     * @param theGravity the starting gravity rate
+     * @param theLastFrame the frame the game ended in
+     * @param theComplete whether the end of the game was recorded
+     * @param theFrames the frame of each record
+     * @param theCodes the code of each record
+     * @param theValues the rate of each gravity change
+     * @param thePieces the pieces dealt
+     * @param theCheckFrames the frame each state hash was taken at the start of
+     * @param theChecks the state hashes
+     */
+    Replay(final int theWidth, final int theHeight, final long theSeed, final int theGravity,
+           final int theLastFrame, final boolean theComplete, final int[] theFrames,
+           final byte[] theCodes, final int[] theValues, final byte[] thePieces,
+           final int[] theCheckFrames, final long[] theChecks) {
+        myWidth = theWidth;
+        myHeight = theHeight;
+        mySeed = theSeed;
+        myGravity = theGravity;
+        myLastFrame = theLastFrame;
+        myComplete = theComplete;
+        myFrames = theFrames;
+        myCodes = theCodes;
+        myValues = theValues;
+        myPieces = thePieces;
+        myCheckFrames = theCheckFrames;
+        myChecks = theChecks;
+    }
+
+    /**
+     * @return the board width
+     */
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * @return the board height
+     */
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * @return the seed the pieces were chosen with
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * @return the frame the game ended in, or the last frame recorded
+     */
+    public int getLastFrame() {
+        return myLastFrame;
+    }
+
+    /**
+     * @return whether the end of the game was recorded
+     */
+    public boolean isComplete() {
+        return myComplete;
+    }
+
+    /**
+     * @return the number of inputs and gravity changes recorded
+     */
+    public int getRecordCount() {
+        return myFrames.length;
+    }
+
+    /**
+     * @return the number of state hashes recorded
+     */
+    public int getChecksumCount() {
+        return myChecks.length;
+    }
+
+    /**
+     * @return the number of pieces dealt
+     */
+    public int getPieceCount() {
+        return myPieces.length;
+    }
+
+    /**
+     * @return the gravity rate the game started with
+     */
+    public int getGravity() {
+        return myGravity;
+    }
+
+    /**
+     * @param theIndex the index of a record
+     * @return the frame the record came before
+     */
+    int getRecordFrame(final int theIndex) {
+        return myFrames[theIndex];
+    }
+
+    /**
+     * @param theIndex the index of a record
+     * @return the record's code, an Action ordinal or a gravity change
+     */
+    int getRecordCode(final int theIndex) {
+        return myCodes[theIndex];
+    }
+
+    /**
+     * @param theIndex the index of a record
+     * @return the rate of a gravity change
+     */
+    int getRecordValue(final int theIndex) {
+        return myValues[theIndex];
+    }
+
+    /**
+     * @param theIndex the index of a state hash
+     * @return the frame the hash was taken at the start of
+     */
+    int getChecksumFrame(final int theIndex) {
+        return myCheckFrames[theIndex];
+    }
+
+    /**
+     * @param theIndex the index of a state hash
+     * @return the hash
+     */
+    long getChecksum(final int theIndex) {
+        return myChecks[theIndex];
+    }
+
+    /**
+     * @return the Block ordinals of the pieces dealt, in order; not a copy
+     */
+    byte[] getPieces() {
+        return myPieces;
+    }
+
+    /**
+     * Plays the game back to its last frame.
+     *
+     * @return the board as it was at the end of the game
+     */
+    public Board play() {
+        final ReplayPlayer player = new ReplayPlayer(this);
+        player.playToEnd();
+        return player.getBoard();
+    }
+}
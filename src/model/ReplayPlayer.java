@@ -0,0 +1,417 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Plays a {@link Replay} back as fast as the board can go, with no timer and
+ * no display.
+ *
+ * <p>Every {@link #getInterval()} frames the player writes a keyframe into an
+ * index: the board encoded as a few longs, with the player's own position,
+ * gravity and clear counts. Seeking to a frame restores the nearest keyframe at or
+ * before it and plays forward from there, so any frame of a long game is
+ * reached after at most one interval of play. Keyframes are written the
+ * first time play passes them.
+ *
+ * <p>Wherever the replay holds a state hash, the player compares it with the
+ * board's and remembers the first frame where they differ, so a replay that
+ * no longer plays back the way it was recorded is caught where it goes wrong.
+ *
+ * <p>A position is the start of a frame, before the frame's inputs.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class ReplayPlayer {
+
+    /** The default number of frames between keyframes, ten seconds of play. */
+    public static final int DEFAULT_INTERVAL = 10 * Gravity.FRAME_RATE;
+
+    /** The inputs, indexed by ordinal. */
+    private static final Action[] ACTIONS = Action.values();
+
+    /** The index of a keyframe's frame. */
+    private static final int KEY_FRAME = 0;
+
+    /** The index of a keyframe's next record. */
+    private static final int KEY_RECORD = 1;
+
+    /** The index of a keyframe's gravity rate. */
+    private static final int KEY_RATE = 2;
+
+    /** The index of a keyframe's fraction of a row fallen. */
+    private static final int KEY_PROGRESS = 3;
+
+    /** The index of a keyframe's next state hash. */
+    private static final int KEY_CHECK = 4;
+
+    /** The index of a keyframe's clear counts, by lines cleared at once from 1. */
+    private static final int KEY_CLEARS = 5;
+
+    /** The number of longs in a keyframe before the encoded board. */
+    private static final int KEY_HEADER = KEY_CLEARS + Scoring.MAX_LINES;
+
+    /** The number of keyframes room is made for at first. */
+    private static final int INITIAL_KEYFRAMES = 16;
+
+    /** The replay being played. */
+    private final Replay myReplay;
+
+    /** The number of frames between keyframes. */
+    private final int myInterval;
+
+    /** Deals the recorded pieces. */
+    private final Dealer myDealer;
+
+    /** The board the replay is played on. */
+    private final Board myBoard;
+
+    /** The gravity applied each frame. */
+    private final Gravity myGravity;
+
+    /** The number of clears of each size, indexed by lines cleared at once. */
+    private final int[] myClears;
+
+    /** The current position. */
+    private int myFrame;
+
+    /** The index of the next record to apply. */
+    private int myRecord;
+
+    /** The index of the next state hash to compare. */
+    private int myCheck;
+
+    /** The first frame whose state hash differed from the replay's, or -1. */
+    private int myDesync;
+
+    /** The keyframes, one after another. */
+    private long[] myKeys;
+
+    /** The number of longs of myKeys in use. */
+    private int myKeysUsed;
+
+    /** The index in myKeys of each keyframe. */
+    private int[] myKeyOffsets;
+
+    /** The number of keyframes written. */
+    private int myKeyCount;
+
+    /**
+     * Creates a player with keyframes every ten seconds of play, at the start of the game.
+     *
+     * @param theReplay the replay to play
+     */
+    public ReplayPlayer(final Replay theReplay) {
+        this(theReplay, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a player at the start of the game.
+     *
+     * @param theReplay the replay to play
+     * @param theInterval the number of frames between keyframes, at least 1
+     */
+    public ReplayPlayer(final Replay theReplay, final int theInterval) {
+        if (theInterval < 1) {
+            throw new IllegalArgumentException();
+        }
+        myReplay = theReplay;
+        myInterval = theInterval;
+        myDealer = new Dealer(theReplay.getPieces());
+        myBoard = new Board(theReplay.getWidth(), theReplay.getHeight(), myDealer);
+        myGravity = new Gravity(theReplay.getGravity());
+        myClears = new int[Scoring.MAX_LINES + 1];
+        myKeys = new long[INITIAL_KEYFRAMES * (KEY_HEADER + myBoard.encodedSize())];
+        myKeyOffsets = new int[INITIAL_KEYFRAMES];
+        myDesync = -1;
+
+        myDealer.seek(0);
+        myBoard.newGame(theReplay.getWidth(), theReplay.getHeight(), null);
+        verify();
+        writeKeyframe();
+    }
+
+    /**
+     * Plays one frame: its inputs and gravity changes, then its gravity.
+     *
+     * @return false if the game had already ended, true otherwise
+     */
+    public boolean step() {
+        final boolean result = !isFinished();
+        if (result) {
+            while (myRecord < myReplay.getRecordCount()
+                   && myReplay.getRecordFrame(myRecord) == myFrame) {
+                final int code = myReplay.getRecordCode(myRecord);
+                if (code == ReplayWriter.GRAVITY) {
+                    myGravity.setRate(myReplay.getRecordValue(myRecord));
+                } else if (!myBoard.isGameOver()) {
+                    final int before = myBoard.getLinesCleared();
+                    ACTIONS[code].applyTo(myBoard);
+                    tally(before);
+                }
+                myRecord++;
+            }
+            if (myFrame < myReplay.getLastFrame() && !myBoard.isGameOver()) {
+                final int before = myBoard.getLinesCleared();
+                myGravity.apply(myBoard);
+                tally(before);
+            }
+            myFrame++;
+            verify();
+            if (myFrame % myInterval == 0 && myFrame / myInterval == myKeyCount) {
+                writeKeyframe();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Plays to the end of the game.
+     */
+    public void playToEnd() {
+        while (step()) {
+            // keep playing
+        }
+    }
+
+    /**
+     * Moves to the start of a frame, restoring a keyframe if that is quicker
+     * than playing on from the current position. Seeking past the end of the
+     * game stops at the end.
+     *
+     * @param theFrame the frame, at least 0
+     */
+    public void seek(final int theFrame) {
+        if (theFrame < 0) {
+            throw new IllegalArgumentException();
+        }
+        final int key = Math.min(theFrame / myInterval, myKeyCount - 1);
+        if (theFrame < myFrame || key * myInterval > myFrame) {
+            readKeyframe(key);
+        }
+        while (myFrame < theFrame && step()) {
+            // keep playing
+        }
+    }
+
+    /**
+     * @return whether the game has been played to its end
+     */
+    public boolean isFinished() {
+        return myFrame > myReplay.getLastFrame() || myBoard.isGameOver();
+    }
+
+    /**
+     * @return the current position
+     */
+    public int getFrame() {
+        return myFrame;
+    }
+
+    /**
+     * Returns the board at the current position. Callers should only read it.
+     *
+     * @return the board
+     */
+    public Board getBoard() {
+        return myBoard;
+    }
+
+    /**
+     * @return the score at the current position
+     */
+    public long getScore() {
+        return myBoard.getScore();
+    }
+
+    /**
+     * Returns the first frame at whose start the board's state hash differed
+     * from the one recorded, among the frames played so far.
+     *
+     * @return the frame, or -1 if every hash so far has matched
+     */
+    public int getDesyncFrame() {
+        return myDesync;
+    }
+
+    /**
+     * @return the number of frames between keyframes
+     */
+    public int getInterval() {
+        return myInterval;
+    }
+
+    /**
+     * @return the number of keyframes written so far
+     */
+    public int getKeyframeCount() {
+        return myKeyCount;
+    }
+
+    /**
+     * Returns a summary of the game at the current position. Its tick count is
+     * the number of frames played.
+     *
+     * @return the summary
+     */
+    public GameResult getResult() {
+        return new GameResult(myReplay.getSeed(), myFrame, myBoard.getPiecesFrozen(),
+                              myBoard.getLinesCleared(), myBoard.getScore(), myClears,
+                              myBoard.isGameOver());
+    }
+
+    /**
+     * Counts the clear made by the last move, if any.
+     *
+     * @param theLinesBefore the number of lines cleared before the move
+     */
+    private void tally(final int theLinesBefore) {
+        final int cleared = myBoard.getLinesCleared() - theLinesBefore;
+        if (cleared > 0) {
+            myClears[cleared]++;
+        }
+    }
+
+    /**
+     * Compares the board with the state hashes recorded for the current position.
+     */
+    private void verify() {
+        while (myCheck < myReplay.getChecksumCount()
+               && myReplay.getChecksumFrame(myCheck) <= myFrame) {
+            if (myReplay.getChecksumFrame(myCheck) == myFrame && myDesync < 0
+                && myReplay.getChecksum(myCheck) != myBoard.getStateHash()) {
+                myDesync = myFrame;
+            }
+            myCheck++;
+        }
+    }
+
+    /**
+     * Adds a keyframe for the current position to the index.
+     */
+    private void writeKeyframe() {
+        final int size = KEY_HEADER + myBoard.encodedSize();
+        if (myKeysUsed + size > myKeys.length) {
+            myKeys = Arrays.copyOf(myKeys, Math.max(myKeys.length * 2, myKeysUsed + size));
+        }
+        if (myKeyCount == myKeyOffsets.length) {
+            myKeyOffsets = Arrays.copyOf(myKeyOffsets, myKeyCount * 2);
+        }
+        final int offset = myKeysUsed;
+        myKeys[offset + KEY_FRAME] = myFrame;
+        myKeys[offset + KEY_RECORD] = myRecord;
+        myKeys[offset + KEY_RATE] = myGravity.getRate();
+        myKeys[offset + KEY_PROGRESS] = myGravity.getProgress();
+        myKeys[offset + KEY_CHECK] = myCheck;
+        for (int lines = 1; lines <= Scoring.MAX_LINES; lines++) {
+            myKeys[offset + KEY_CLEARS + lines - 1] = myClears[lines];
+        }
+        myKeysUsed += KEY_HEADER + myBoard.encode(myKeys, offset + KEY_HEADER);
+        myKeyOffsets[myKeyCount] = offset;
+        myKeyCount++;
+    }
+
+    /**
+     * Moves to the position of a keyframe.
+     *
+     * @param theKey the index of the keyframe
+     */
+    private void readKeyframe(final int theKey) {
+        final int offset = myKeyOffsets[theKey];
+        myFrame = (int) myKeys[offset + KEY_FRAME];
+        myRecord = (int) myKeys[offset + KEY_RECORD];
+        myGravity.setRate((int) myKeys[offset + KEY_RATE]);
+        myGravity.setProgress((int) myKeys[offset + KEY_PROGRESS]);
+        myCheck = (int) myKeys[offset + KEY_CHECK];
+        for (int lines = 1; lines <= Scoring.MAX_LINES; lines++) {
+            myClears[lines] = (int) myKeys[offset + KEY_CLEARS + lines - 1];
+        }
+        myBoard.decode(myKeys, offset + KEY_HEADER);
+
+        // the board had dealt the current and next pieces, and one more per
+        // piece frozen unless the last one ended the game
+        int dealt = myBoard.getPiecesFrozen() + 2;
+        if (myBoard.isGameOver()) {
+            dealt--;
+        }
+        myDealer.seek(dealt);
+    }
+
+    /**
+     * Deals the recorded pieces, then I pieces if more are asked for.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private static final class Dealer implements Randomizer {
+
+        /** The pieces to deal. */
+        private final byte[] myTypes;
+
+        /** The index of the next piece to deal. */
+        private int myNext;
+
+        /**
+         * Creates a dealer.
+         *
+         * @param theTypes the pieces to deal
+         */
+        Dealer(final byte[] theTypes) {
+            myTypes = theTypes;
+        }
+
+        /**
+         * Moves to a piece in the sequence.
+         *
+         * @param theNext the index of the next piece to deal
+         */
+        void seek(final int theNext) {
+            myNext = theNext;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset(final long theSeed) {
+            myNext = 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int next() {
+            int result = Block.I.ordinal();
+            if (myNext < myTypes.length) {
+                result = myTypes[myNext];
+            }
+            myNext++;
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void fill(final byte[] theBuffer, final int theOffset, final int theLength) {
+            for (int i = 0; i < theLength; i++) {
+                theBuffer[theOffset + i] = (byte) next();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Randomizer split() {
+            final Dealer result = new Dealer(myTypes);
+            result.seek(myNext);
+            return result;
+        }
+    }
+}
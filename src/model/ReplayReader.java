@@ -0,0 +1,217 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the games recorded by a {@link ReplayWriter}, one at a time.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class ReplayReader implements Closeable {
+
+    /** The size of the buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The most bytes one record can take. */
+    private static final int MAX_RECORD = 48;
+
+    /** The number of records and pieces room is made for at first. */
+    private static final int INITIAL_RECORDS = 256;
+
+    /** The number of bits in a byte of a variable-length integer. */
+    private static final int VARINT_BITS = 7;
+
+    /** The bits of a variable-length integer byte that hold data. */
+    private static final int VARINT_MASK = 0x7F;
+
+    /** The bit of a variable-length integer byte set when more bytes follow. */
+    private static final int VARINT_MORE = 0x80;
+
+    /** The most bits a variable-length integer can hold. */
+    private static final int VARINT_LIMIT = 64;
+
+    /** The mask of a record's code. */
+    private static final int CODE_MASK = (1 << ReplayWriter.CODE_BITS) - 1;
+
+    /** The file being read. */
+    private final FileChannel myChannel;
+
+    /** The bytes read from the file but not yet decoded. */
+    private final ByteBuffer myBuffer;
+
+    /** Whether the whole file has been read into the buffer. */
+    private boolean myEnd;
+
+    /**
+     * Opens a replay file.
+     *
+     * @param thePath the file
+     * @throws IOException if the file can't be read or isn't a replay file
+     */
+    public ReplayReader(final Path thePath) throws IOException {
+        this(FileChannel.open(thePath, StandardOpenOption.READ));
+    }
+
+    /**
+     * Creates a reader of an open channel, starting at its position.
+     * The reader closes the channel when it is closed.
+     *
+     * @param theChannel the channel
+     * @throws IOException if the channel can't be read or isn't a replay file
+     */
+    public ReplayReader(final FileChannel theChannel) throws IOException {
+        myChannel = theChannel;
+        myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        myBuffer.flip();
+        fill();
+        if (myBuffer.remaining() < Integer.BYTES + 1
+            || myBuffer.getInt() != ReplayWriter.MAGIC) {
+            throw new IOException("not a replay file");
+        }
+        if (myBuffer.get() != ReplayWriter.VERSION) {
+            throw new IOException("unsupported replay version");
+        }
+    }
+
+    /**
+     * Reads the next game. A game the recording stopped in the middle of
+     * is returned without an end, and is always the last.
+     *
+     * @return the game, or null if there are no more
+     * @throws IOException if the file can't be read or is damaged
+     */
+    public Replay next() throws IOException {
+        fill();
+        Replay result = null;
+        if (myBuffer.hasRemaining()) {
+            if (getVarint() != ReplayWriter.GAME) {
+                throw new IOException("damaged replay file");
+            }
+            final int width = (int) getVarint();
+            final int height = (int) getVarint();
+            final int gravity = (int) getVarint();
+            if (myBuffer.remaining() < Long.BYTES) {
+                throw new EOFException("damaged replay file");
+            }
+            final long seed = myBuffer.getLong();
+
+            int[] frames = new int[INITIAL_RECORDS];
+            byte[] codes = new byte[INITIAL_RECORDS];
+            int[] values = new int[INITIAL_RECORDS];
+            byte[] pieces = new byte[INITIAL_RECORDS];
+            int[] checkFrames = new int[INITIAL_RECORDS];
+            long[] checks = new long[INITIAL_RECORDS];
+            int records = 0;
+            int dealt = 0;
+            int checked = 0;
+            long frame = 0;
+            boolean ended = false;
+            while (!ended && fill()) {
+                final long record = getVarint();
+                final int code = (int) (record & CODE_MASK);
+                frame += record >>> ReplayWriter.CODE_BITS;
+                if (code == ReplayWriter.END) {
+                    ended = true;
+                } else if (code == ReplayWriter.CHECKSUM) {
+                    if (myBuffer.remaining() < Long.BYTES) {
+                        throw new EOFException("damaged replay file");
+                    }
+                    if (checked == checks.length) {
+                        checkFrames = Arrays.copyOf(checkFrames, checked * 2);
+                        checks = Arrays.copyOf(checks, checked * 2);
+                    }
+                    checkFrames[checked] = (int) frame;
+                    checks[checked] = myBuffer.getLong();
+                    checked++;
+                } else if (code > ReplayWriter.PIECE) {
+                    if (dealt == pieces.length) {
+                        pieces = Arrays.copyOf(pieces, dealt * 2);
+                    }
+                    pieces[dealt++] = (byte) (code - ReplayWriter.PIECE);
+                } else if (code < ReplayWriter.END) {
+                    if (records == frames.length) {
+                        frames = Arrays.copyOf(frames, records * 2);
+                        codes = Arrays.copyOf(codes, records * 2);
+                        values = Arrays.copyOf(values, records * 2);
+                    }
+                    frames[records] = (int) frame;
+                    codes[records] = (byte) code;
+                    if (code == ReplayWriter.GRAVITY) {
+                        values[records] = (int) getVarint();
+                    }
+                    records++;
+                } else {
+                    throw new IOException("damaged replay file");
+                }
+            }
+            result = new Replay(width, height, seed, gravity, (int) frame, ended,
+                                Arrays.copyOf(frames, records),
+                                Arrays.copyOf(codes, records),
+                                Arrays.copyOf(values, records),
+                                Arrays.copyOf(pieces, dealt),
+                                Arrays.copyOf(checkFrames, checked),
+                                Arrays.copyOf(checks, checked));
+        }
+        return result;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if closing failed
+     */
+    @Override
+    public void close() throws IOException {
+        myChannel.close();
+    }
+
+    /**
+     * Reads more of the file if the buffer might not hold a whole record.
+     *
+     * @return whether any bytes remain to be decoded
+     * @throws IOException if the file can't be read
+     */
+    private boolean fill() throws IOException {
+        if (!myEnd && myBuffer.remaining() < MAX_RECORD) {
+            myBuffer.compact();
+            while (!myEnd && myBuffer.hasRemaining()) {
+                myEnd = myChannel.read(myBuffer) < 0;
+            }
+            myBuffer.flip();
+        }
+        return myBuffer.hasRemaining();
+    }
+
+    /**
+     * Decodes an unsigned variable-length integer.
+     *
+     * @return the value
+     * @throws IOException if the file ends in the middle of the value
+     */
+    private long getVarint() throws IOException {
+        long result = 0;
+        int shift = 0;
+        int next;
+        do {
+            if (!myBuffer.hasRemaining() || shift >= VARINT_LIMIT) {
+                throw new EOFException("damaged replay file");
+            }
+            next = myBuffer.get();
+            result |= (long) (next & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+        } while ((next & VARINT_MORE) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records games to a file in a compact binary format, for replaying them later
+ * with {@link ReplayReader}.
+ *
+ * <p>A file starts with the bytes "TRPL" and a format version, followed by
+ * any number of games. Every record is one unsigned variable-length integer
+ * (seven bits per byte, low bits first) holding the number of frames since the
+ * previous record shifted left four bits, with a record code in the low four
+ * bits, so an input a few frames after the last one takes a single byte:
+ * <ul>
+ * <li>{@value #CHECKSUM}: the board's {@link Board#getStateHash() state hash}
+ *     at the start of the frame, followed by the eight-byte hash.
+ * <li>1 to 5: an {@link Action}, by ordinal, applied before the frame's gravity.
+ * <li>{@value #GRAVITY}: a change of gravity rate, followed by the rate.
+ * <li>{@value #END}: the end of the game.
+ * <li>{@value #GAME}: the start of a game, followed by the width, height and
+ *     gravity rate and then the eight-byte seed. Its frame delta is zero and
+ *     frames count from zero again.
+ * <li>{@value #PIECE} + 1 to {@value #PIECE} + 7: a piece dealt by the board,
+ *     by Block ordinal, in the order the board dealt them.
+ * </ul>
+ *
+ * <p>Records are encoded into a direct buffer that is written to the file when
+ * it fills and at the end of each game, so recording an input allocates
+ * nothing. Recording methods don't throw; the first I/O error stops recording
+ * and is thrown from the next {@link #flush()} or {@link #close()}.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class ReplayWriter implements Closeable {
+
+    /** The bytes every replay file starts with. */
+    static final int MAGIC = 0x5452504C;
+
+    /** The version of the format. */
+    static final int VERSION = 3;
+
+    /** The number of bits in a record's code. */
+    static final int CODE_BITS = 4;
+
+    /** The code of a state hash. */
+    static final int CHECKSUM = 0;
+
+    /** The code of a gravity change. */
+    static final int GRAVITY = 6;
+
+    /** The code of the end of a game. */
+    static final int END = 7;
+
+    /** The code of the start of a game. */
+    static final int GAME = 8;
+
+    /** The code of a piece, before the piece's Block ordinal is added. */
+    static final int PIECE = 8;
+
+    /** The size of the buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The most bytes one record can take. */
+    private static final int MAX_RECORD = 48;
+
+    /** The number of bits in a byte of a variable-length integer. */
+    private static final int VARINT_BITS = 7;
+
+    /** The bits of a variable-length integer byte that hold data. */
+    private static final int VARINT_MASK = 0x7F;
+
+    /** The bit of a variable-length integer byte set when more bytes follow. */
+    private static final int VARINT_MORE = 0x80;
+
+    /** The file being written. */
+    private final FileChannel myChannel;
+
+    /** The records not yet written to the file. */
+    private final ByteBuffer myBuffer;
+
+    /** The frame of the last record. */
+    private long myFrame;
+
+    /** The first error writing the file, or null. */
+    private IOException myError;
+
+    /**
+     * Creates a replay file, replacing any file already there.
+     *
+     * @param thePath the file
+     * @throws IOException if the file can't be created
+     */
+    public ReplayWriter(final Path thePath) throws IOException {
+        this(FileChannel.open(thePath, StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING,
+                              StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Creates a writer that records to an open channel, starting at its position.
+     * The writer closes the channel when it is closed.
+     *
+     * @param theChannel the channel
+     */
+    public ReplayWriter(final FileChannel theChannel) {
+        myChannel = theChannel;
+        myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        myBuffer.putInt(MAGIC);
+        myBuffer.put((byte) VERSION);
+    }
+
+    /**
+     * Records the start of a game.
+     *
+     * @param theWidth the board width
+     * @param theHeight the board height
+     * @param theSeed the seed the pieces were chosen with
+     * @param theGravity the gravity rate, see {@link Gravity}
+     */
+    public void beginGame(final int theWidth, final int theHeight, final long theSeed,
+                          final int theGravity) {
+        if (myError == null) {
+            reserve();
+            putVarint(GAME);
+            putVarint(theWidth);
+            putVarint(theHeight);
+            putVarint(theGravity);
+            myBuffer.putLong(theSeed);
+            myFrame = 0;
+        }
+    }
+
+    /**
+     * Records an input. {@link Action#NONE} changes nothing and is not recorded.
+     *
+     * @param theFrame the frame whose gravity follows the input
+     * @param theAction the input
+     */
+    public void action(final long theFrame, final Action theAction) {
+        if (theAction != Action.NONE) {
+            record(theFrame, theAction.ordinal());
+        }
+    }
+
+    /**
+     * Records the state hash of the board, so that playback can check it
+     * reaches the same state.
+     *
+     * @param theFrame the frame the hash was taken at the start of
+     * @param theHash the hash
+     */
+    public void checksum(final long theFrame, final long theHash) {
+        record(theFrame, CHECKSUM);
+        if (myError == null) {
+            myBuffer.putLong(theHash);
+        }
+    }
+
+    /**
+     * Records a change of gravity.
+     *
+     * @param theFrame the first frame with the new rate
+     * @param theRate the rate, see {@link Gravity}
+     */
+    public void gravity(final long theFrame, final int theRate) {
+        record(theFrame, GRAVITY);
+        if (myError == null) {
+            putVarint(theRate);
+        }
+    }
+
+    /**
+     * Records a piece dealt by the board.
+     *
+     * @param theFrame the frame the piece was dealt in
+     * @param theType the piece's Block ordinal
+     */
+    public void piece(final long theFrame, final int theType) {
+        record(theFrame, PIECE + theType);
+    }
+
+    /**
+     * Records the end of a game and writes the game's records to the file.
+     *
+     * @param theFrame the frame the game ended in
+     */
+    public void endGame(final long theFrame) {
+        record(theFrame, END);
+        if (myError == null) {
+            try {
+                drain();
+            } catch (final IOException e) {
+                myError = e;
+            }
+        }
+    }
+
+    /**
+     * Writes all recorded records to the file.
+     *
+     * @throws IOException if an earlier record or this write failed
+     */
+    public void flush() throws IOException {
+        if (myError == null) {
+            drain();
+        } else {
+            throw myError;
+        }
+    }
+
+    /**
+     * Writes all recorded records to the file and closes it.
+     *
+     * @throws IOException if writing or closing failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            myChannel.close();
+        }
+    }
+
+    /**
+     * Encodes one record.
+     *
+     * @param theFrame the record's frame
+     * @param theCode the record's code
+     */
+    private void record(final long theFrame, final int theCode) {
+        if (theFrame < myFrame) {
+            throw new IllegalArgumentException();
+        }
+        if (myError == null) {
+            reserve();
+            putVarint((theFrame - myFrame) << CODE_BITS | theCode);
+            myFrame = theFrame;
+        }
+    }
+
+    /**
+     * Makes room in the buffer for another record, writing it out if needed.
+     */
+    private void reserve() {
+        if (myBuffer.remaining() < MAX_RECORD) {
+            try {
+                drain();
+            } catch (final IOException e) {
+                myError = e;
+                myBuffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer to the file.
+     *
+     * @throws IOException if writing failed
+     */
+    private void drain() throws IOException {
+        myBuffer.flip();
+        try {
+            while (myBuffer.hasRemaining()) {
+                myChannel.write(myBuffer);
+            }
+        } finally {
+            myBuffer.clear();
+        }
+    }
+
+    /**
+     * Encodes an unsigned variable-length integer.
+     *
+     * @param theValue the value, treated as unsigned
+     */
+    private void putVarint(final long theValue) {
+        long value = theValue;
+        while ((value & ~VARINT_MASK) != 0) {
+            myBuffer.put((byte) (value & VARINT_MASK | VARINT_MORE));
+            value >>>= VARINT_BITS;
+        }
+        myBuffer.put((byte) value);
+    }
+}
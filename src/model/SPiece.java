@@ -28,6 +28,15 @@ public final class SPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public SPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.S);
+        super(theX, theY, Block.S);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a SPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
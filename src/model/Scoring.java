@@ -0,0 +1,53 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The scoring rules, a slightly simplified version of the Nintendo release of Tetris.
+ * Clearing 1, 2, 3 or 4 lines at once earns 40, 100, 300 or 1200 points times
+ * the current level, and the level rises every 20 lines.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class Scoring {
+
+    /** The number of lines cleared to advance one level. */
+    public static final int LINES_PER_LEVEL = 20;
+
+    /** The most lines that can be cleared at once. */
+    public static final int MAX_LINES = 4;
+
+    /** The points for clearing 0 to 4 lines at once on level 1. */
+    private static final int[] LINE_POINTS = {0, 40, 100, 300, 1200};
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Scoring() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the level reached after clearing the given number of lines.
+     * 
+     * @param theLines the number of lines cleared so far
+     * @return the level, starting at 1
+     */
+    public static int level(final int theLines) {
+        return theLines / LINES_PER_LEVEL + 1;
+    }
+
+    /**
+     * Returns the points earned by clearing lines.
+     * 
+     * @param theCleared the number of lines cleared at once, 0 to 4
+     * @param theLevel the level the lines were cleared on
+     * @return the points earned
+     */
+    public static int points(final int theCleared, final int theLevel) {
+        return LINE_POINTS[theCleared] * theLevel;
+    }
+}
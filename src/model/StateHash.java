@@ -0,0 +1,151 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The keys and mixing function of the state hashes kept by boards.
+ *
+ * <p>Frozen cells are hashed Zobrist style: each block type in each column
+ * has a fixed random key and a row's content hash is the XOR of the keys of
+ * its cells. The board's hash is the sum, modulo 2^64, of each row's mixed
+ * content hash times a fixed odd factor raised to the power of its row
+ * number. Freezing a block changes one row, so the hash is updated with one
+ * multiplication. When lines clear, the rows above them all drop by the
+ * same number of rows, so their part of the sum is multiplied by the
+ * factor's inverse that many times instead of being hashed again row by row.
+ * The keys come from a fixed seed, so every machine computes the same hash
+ * for the same state.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+final class StateHash {
+
+    /** The SplitMix64 increment. */
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** The first SplitMix64 mixing multiplier. */
+    private static final long MIX_1 = 0xBF58476D1CE4E5B9L;
+
+    /** The second SplitMix64 mixing multiplier. */
+    private static final long MIX_2 = 0x94D049BB133111EBL;
+
+    /** The factor a row's contribution is multiplied by for each row it is up. */
+    private static final long ROW_FACTOR = 0xD1B54A32D192ED03L;
+
+    /** The inverse of the row factor modulo 2^64. */
+    private static final long ROW_INVERSE = inverse(ROW_FACTOR);
+
+    /** The number of key slots for each column, one per Block ordinal. */
+    private static final int TYPES = 8;
+
+    /** The key of each block type in each column, indexed by column times 8 plus ordinal. */
+    private static final long[] CELL_KEYS = new long[BitBoard.MAX_WIDTH * TYPES];
+
+    static {
+        long state = 0L;
+        for (int i = 0; i < CELL_KEYS.length; i++) {
+            state += GOLDEN_GAMMA;
+            CELL_KEYS[i] = mix(state);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StateHash() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Returns the key of a block in a column.
+     *
+     * @param theX the column
+     * @param theType the Block ordinal, 1 to 7
+     * @return the key
+     */
+    static long cell(final int theX, final int theType) {
+        return CELL_KEYS[theX * TYPES + theType];
+    }
+
+    /**
+     * Returns the contribution of a row to a board's hash before it is
+     * weighted by its row number. Empty rows contribute nothing.
+     *
+     * @param theContent the XOR of the keys of the row's cells
+     * @return the contribution
+     */
+    static long row(final long theContent) {
+        return mix(theContent);
+    }
+
+    /**
+     * Fills an array with the weight of each row, the row factor raised to
+     * the power of the row number.
+     *
+     * @param theWeights the array to fill, indexed by row
+     */
+    static void weights(final long[] theWeights) {
+        long weight = 1L;
+        for (int y = 0; y < theWeights.length; y++) {
+            theWeights[y] = weight;
+            weight *= ROW_FACTOR;
+        }
+    }
+
+    /**
+     * Moves part of a board's hash down a number of rows.
+     *
+     * @param theHash the sum of the contributions of some rows
+     * @param theRows the number of rows they all drop
+     * @return the sum of their contributions once they have dropped
+     */
+    static long lower(final long theHash, final int theRows) {
+        long result = theHash;
+        for (int i = 0; i < theRows; i++) {
+            result *= ROW_INVERSE;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the inverse of an odd number modulo 2^64 by Newton's method, each
+     * step doubling the number of correct low bits.
+     *
+     * @param theValue the odd number
+     * @return the number that multiplied by it gives 1
+     */
+    private static long inverse(final long theValue) {
+        long result = theValue;
+        for (int bits = 3; bits < Long.SIZE; bits *= 2) {
+            result *= 2 - theValue * result;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a value to a hash.
+     *
+     * @param theHash the hash so far
+     * @param theValue the value
+     * @return the new hash
+     */
+    static long combine(final long theHash, final long theValue) {
+        return mix(theHash + GOLDEN_GAMMA + theValue);
+    }
+
+    /**
+     * Scrambles the bits of a value with the SplitMix64 finalizer.
+     *
+     * @param theValue the value
+     * @return the scrambled value
+     */
+    static long mix(final long theValue) {
+        long z = theValue;
+        z = (z ^ (z >>> 30)) * MIX_1;
+        z = (z ^ (z >>> 27)) * MIX_2;
+        return z ^ (z >>> 31);
+    }
+}
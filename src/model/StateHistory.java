@@ -0,0 +1,118 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+/**
+ * The most recent saved states of a board, for rewinding it.
+ *
+ * <p>States are saved with {@link Board#saveState} into fixed-size slots of
+ * one long array used as a ring, so saving and rewinding allocate nothing.
+ * Once the ring is full each save replaces the oldest state.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class StateHistory {
+
+    /** The board whose states are kept. */
+    private final Board myBoard;
+
+    /** The number of states kept. */
+    private final int myCapacity;
+
+    /** The number of longs in each slot. */
+    private int mySlotSize;
+
+    /** The saved states, one slot after another. */
+    private long[] myStates;
+
+    /** The slot the next state is saved in. */
+    private int myNext;
+
+    /** The number of states saved and not rewound or overwritten. */
+    private int myCount;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param theBoard the board whose states are kept
+     * @param theCapacity the number of states kept, at least 1
+     */
+    public StateHistory(final Board theBoard, final int theCapacity) {
+        if (theBoard == null || theCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        myBoard = theBoard;
+        myCapacity = theCapacity;
+        mySlotSize = theBoard.stateSize();
+        myStates = new long[theCapacity * mySlotSize];
+    }
+
+    /**
+     * Saves the board's current state. A board larger than any saved before
+     * empties the history, since its states no longer fit the slots.
+     */
+    public void save() {
+        if (myBoard.stateSize() > mySlotSize) {
+            mySlotSize = myBoard.stateSize();
+            myStates = new long[myCapacity * mySlotSize];
+            myCount = 0;
+        }
+        myBoard.saveState(myStates, myNext * mySlotSize);
+        myNext = (myNext + 1) % myCapacity;
+        myCount = Math.min(myCount + 1, myCapacity);
+    }
+
+    /**
+     * Puts the board back to the last state saved and forgets it.
+     *
+     * @return false if there was no state to rewind to, true otherwise
+     */
+    public boolean rewind() {
+        return rewind(1);
+    }
+
+    /**
+     * Puts the board back to a state saved earlier and forgets it and every
+     * state saved after it.
+     *
+     * @param theSaves how many saves back to go, 1 for the last state saved
+     * @return false if fewer states were kept, leaving the board alone;
+     *         true otherwise
+     */
+    public boolean rewind(final int theSaves) {
+        if (theSaves < 1) {
+            throw new IllegalArgumentException();
+        }
+        final boolean result = theSaves <= myCount;
+        if (result) {
+            myNext = (myNext - theSaves + myCapacity) % myCapacity;
+            myCount -= theSaves;
+            myBoard.restoreState(myStates, myNext * mySlotSize);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of states that can be rewound to
+     */
+    public int size() {
+        return myCount;
+    }
+
+    /**
+     * @return the number of states kept
+     */
+    public int getCapacity() {
+        return myCapacity;
+    }
+
+    /**
+     * Forgets every saved state.
+     */
+    public void clear() {
+        myCount = 0;
+    }
+}
@@ -28,6 +28,15 @@ public final class TPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public TPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.T);
+        super(theX, theY, Block.T);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a TPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 }
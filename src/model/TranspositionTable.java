@@ -0,0 +1,366 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of search results keyed by 64-bit board hashes, shared
+ * by the threads of a search without locks.
+ *
+ * <p>Each entry is two longs in parallel arrays: the data, packing a score,
+ * a move, the depth searched and the search it was stored in, and the key
+ * XORed with the data. A reader takes both longs and accepts the entry only
+ * if XORing them gives back the hash it looked for, so an entry half written
+ * by another thread, or a long torn in two, reads as a miss rather than as
+ * another position's result. Writers never wait for each other; the last
+ * write to a slot wins.
+ *
+ * <p>Each search takes an age from {@link #newSearch()} and stores with it,
+ * so bots on other boards can share a table and search at the same time.
+ * A hash picks a bucket of {@link #BUCKET} entries. Storing a position
+ * already in the bucket replaces it unless the entry there is from the same
+ * or a later search and was searched deeper. Otherwise the entry replaced is
+ * an empty one, or else the one from the oldest search, or else the
+ * shallowest. Entries stored by searches that started after the storing one
+ * count as current, so bots sharing a table do not age each other's entries.
+ * Probes, hits, stores and the live entries of other positions replaced are
+ * counted so the table can be sized.
+ *
+ * <p>A probe returns the entry's data as a long, 0 for a miss, read with the
+ * static accessors of this class, so looking up allocates nothing.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class TranspositionTable {
+
+    /** The number of entries in a bucket. */
+    public static final int BUCKET = 4;
+
+    /** The move stored for an entry without one. */
+    public static final int NO_MOVE = -1;
+
+    /** The largest move that can be stored. */
+    public static final int MAX_MOVE = 0xFFFE;
+
+    /** The largest depth that can be stored. */
+    public static final int MAX_DEPTH = 0xFF;
+
+    /** The number of bytes of an entry. */
+    public static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /** The shift of the move in an entry's data. */
+    private static final int MOVE_SHIFT = 32;
+
+    /** The shift of the depth in an entry's data. */
+    private static final int DEPTH_SHIFT = 48;
+
+    /** The shift of the age in an entry's data. */
+    private static final int AGE_SHIFT = 56;
+
+    /** The mask of a move in an entry's data, after shifting. */
+    private static final int MOVE_MASK = 0xFFFF;
+
+    /** The mask of an age, which wraps around after 128 searches. */
+    private static final int AGE_MASK = 0x7F;
+
+    /** The bit set in the data of every entry, so no stored entry's data is 0. */
+    private static final long OCCUPIED = Long.MIN_VALUE;
+
+    /** The mask of a score's bits in an entry's data. */
+    private static final long SCORE_MASK = 0xFFFFFFFFL;
+
+    /** The most entries a table has. */
+    private static final long MAX_ENTRIES = 1L << 30;
+
+    /** The number of entries sampled by {@link #getUsage()}. */
+    private static final int USAGE_SAMPLE = 1000;
+
+    /** The keys, each XORed with the data stored with it. */
+    private final long[] myKeys;
+
+    /** The data of each entry, or 0 for an empty one. */
+    private final long[] myData;
+
+    /** The mask of a hash that picks the first entry of its bucket. */
+    private final int myMask;
+
+    /** The number of lookups. */
+    private final LongAdder myProbes;
+
+    /** The number of lookups that found their position. */
+    private final LongAdder myHits;
+
+    /** The number of entries written. */
+    private final LongAdder myStores;
+
+    /** The number of live entries replaced by other positions. */
+    private final LongAdder myCollisions;
+
+    /** The number of searches started, of which an age is the low bits. */
+    private final AtomicInteger myGeneration;
+
+    /**
+     * Creates an empty table as large as fits in a number of bytes, in
+     * buckets of a power of two entries.
+     *
+     * @param theBytes the most bytes the entries take, at least enough for one
+     *        bucket; beyond 2^30 entries the rest goes unused
+     */
+    public TranspositionTable(final long theBytes) {
+        final long entries = theBytes / ENTRY_BYTES;
+        if (entries < BUCKET) {
+            throw new IllegalArgumentException();
+        }
+        final int size = Integer.highestOneBit((int) Math.min(entries, MAX_ENTRIES));
+        myKeys = new long[size];
+        myData = new long[size];
+        myMask = size - BUCKET;
+        myProbes = new LongAdder();
+        myHits = new LongAdder();
+        myStores = new LongAdder();
+        myCollisions = new LongAdder();
+        myGeneration = new AtomicInteger();
+    }
+
+    /**
+     * Packs a result as a probe returns it.
+     *
+     * @param theScore the score
+     * @param theMove the move, from 0 to {@link #MAX_MOVE}, or {@link #NO_MOVE}
+     * @param theDepth the depth searched, from 0 to {@link #MAX_DEPTH}
+     * @param theAge the age of the search
+     * @return the data
+     */
+    private static long pack(final float theScore, final int theMove, final int theDepth,
+                             final int theAge) {
+        return OCCUPIED | (long) (theAge & AGE_MASK) << AGE_SHIFT
+               | (long) theDepth << DEPTH_SHIFT
+               | (long) (theMove & MOVE_MASK) << MOVE_SHIFT
+               | Float.floatToRawIntBits(theScore) & SCORE_MASK;
+    }
+
+    /**
+     * @param theEntry an entry a probe found
+     * @return the score stored
+     */
+    public static float score(final long theEntry) {
+        return Float.intBitsToFloat((int) theEntry);
+    }
+
+    /**
+     * @param theEntry an entry a probe found
+     * @return the move stored, or {@link #NO_MOVE}
+     */
+    public static int move(final long theEntry) {
+        int result = (int) (theEntry >>> MOVE_SHIFT) & MOVE_MASK;
+        if (result == MOVE_MASK) {
+            result = NO_MOVE;
+        }
+        return result;
+    }
+
+    /**
+     * @param theEntry an entry a probe found
+     * @return the depth searched
+     */
+    public static int depth(final long theEntry) {
+        return (int) (theEntry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * @param theEntry an entry's data
+     * @return the age of the search it was stored in
+     */
+    private static int age(final long theEntry) {
+        return (int) (theEntry >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /**
+     * Returns how many searches older than a search an entry was stored in.
+     *
+     * @param theEntry an entry's data
+     * @param theAge the age of the search
+     * @return the number of searches, 0 if the entry is from that search or
+     *         from one started after it
+     */
+    private static int staleness(final long theEntry, final int theAge) {
+        int result = theAge - age(theEntry) & AGE_MASK;
+        if (result > AGE_MASK / 2) {
+            // stored by a later search of another bot sharing the table
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new search, so that entries stored before it are replaced
+     * first. Each search, from any thread, gets its own age.
+     *
+     * @return the age to store the search's results with
+     */
+    public int newSearch() {
+        return myGeneration.incrementAndGet() & AGE_MASK;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param theHash the position's hash
+     * @return the entry, or 0 if the position is not in the table
+     */
+    public long probe(final long theHash) {
+        final int first = (int) theHash & myMask;
+        long result = 0L;
+        for (int i = first; i < first + BUCKET && result == 0L; i++) {
+            final long data = myData[i];
+            if (data != 0L && (myKeys[i] ^ data) == theHash) {
+                result = data;
+            }
+        }
+        myProbes.increment();
+        if (result != 0L) {
+            myHits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result of searching a position.
+     *
+     * @param theHash the position's hash
+     * @param theScore the score
+     * @param theMove the best move, from 0 to {@link #MAX_MOVE}, or {@link #NO_MOVE}
+     * @param theDepth the depth searched, from 0 to {@link #MAX_DEPTH}
+     * @param theAge the age {@link #newSearch()} gave the search
+     */
+    public void store(final long theHash, final float theScore, final int theMove,
+                      final int theDepth, final int theAge) {
+        if (theMove < NO_MOVE || theMove > MAX_MOVE || theDepth < 0
+            || theDepth > MAX_DEPTH || (theAge & ~AGE_MASK) != 0) {
+            throw new IllegalArgumentException();
+        }
+        final int first = (int) theHash & myMask;
+        int victim = -1;
+        int worst = Integer.MAX_VALUE;
+        boolean same = false;
+        for (int i = first; i < first + BUCKET && !same; i++) {
+            final long data = myData[i];
+            if (data == 0L) {
+                if (worst > Integer.MIN_VALUE) {
+                    victim = i;
+                    worst = Integer.MIN_VALUE;
+                }
+            } else if ((myKeys[i] ^ data) == theHash) {
+                same = true;
+                victim = i;
+                if (depth(data) > theDepth && staleness(data, theAge) == 0) {
+                    victim = -1;
+                }
+            } else {
+                // older searches first, then shallower depths
+                final int rank = depth(data) - staleness(data, theAge) * (MAX_DEPTH + 1);
+                if (rank < worst) {
+                    victim = i;
+                    worst = rank;
+                }
+            }
+        }
+        if (victim >= 0) {
+            if (!same && myData[victim] != 0L) {
+                myCollisions.increment();
+            }
+            final long data = pack(theScore, theMove, theDepth, theAge);
+            myData[victim] = data;
+            myKeys[victim] = theHash ^ data;
+            myStores.increment();
+        }
+    }
+
+    /**
+     * Empties the table and resets its counts. Must not be called during a search.
+     */
+    public void clear() {
+        for (int i = 0; i < myData.length; i++) {
+            myData[i] = 0L;
+            myKeys[i] = 0L;
+        }
+        myProbes.reset();
+        myHits.reset();
+        myStores.reset();
+        myCollisions.reset();
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int getCapacity() {
+        return myData.length;
+    }
+
+    /**
+     * @return the number of lookups since the table was created or cleared
+     */
+    public long getProbes() {
+        return myProbes.sum();
+    }
+
+    /**
+     * @return the number of lookups that found their position
+     */
+    public long getHits() {
+        return myHits.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found their position, 0 if none were made
+     */
+    public double getHitRate() {
+        final long probes = getProbes();
+        double result = 0.0;
+        if (probes > 0) {
+            result = (double) getHits() / probes;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of entries written
+     */
+    public long getStores() {
+        return myStores.sum();
+    }
+
+    /**
+     * Returns the number of stores that replaced an entry for another
+     * position. Many of them mean the table is too small for the searches
+     * it serves.
+     *
+     * @return the number of live entries replaced by other positions
+     */
+    public long getCollisions() {
+        return myCollisions.sum();
+    }
+
+    /**
+     * Estimates how full the table is from its first thousand entries.
+     *
+     * @return the fraction of the entries sampled that were stored by the
+     *         latest search
+     */
+    public double getUsage() {
+        final int sample = Math.min(USAGE_SAMPLE, myData.length);
+        final int age = myGeneration.get() & AGE_MASK;
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            if (myData[i] != 0L && age(myData[i]) == age) {
+                used++;
+            }
+        }
+        return (double) used / sample;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Chooses every piece type independently with equal probability.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class UniformRandomizer extends AbstractRandomizer {
+
+    /**
+     * Creates a randomizer with an arbitrary seed.
+     */
+    public UniformRandomizer() {
+        super(new SplittableRandom());
+    }
+
+    /**
+     * Creates a randomizer with the given seed.
+     * 
+     * @param theSeed the seed
+     */
+    public UniformRandomizer(final long theSeed) {
+        super(new SplittableRandom(theSeed));
+    }
+
+    /**
+     * Creates a randomizer drawing from the given source.
+     * 
+     * @param theRandom the source of random numbers
+     */
+    private UniformRandomizer(final SplittableRandom theRandom) {
+        super(theRandom);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() {
+        return 1 + nextInt(TYPES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void restart() {
+        // no state between pieces
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Randomizer create(final SplittableRandom theRandom) {
+        return new UniformRandomizer(theRandom);
+    }
+}
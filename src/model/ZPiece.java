@@ -28,7 +28,16 @@ public final class ZPiece extends AbstractPiece {
      * @param theY The y coordinate of the piece
      */
     public ZPiece(final int theX, final int theY) {
-        super(MY_ROTATIONS, theX, theY, Block.Z);
+        super(theX, theY, Block.Z);
+    }
+
+    /**
+     * Returns a copy of the x and y-coordinates for all rotations of a ZPiece.
+     * 
+     * @return the coordinates of every rotation
+     */
+    static int[][][] getRotations() {
+        return copyRotations(MY_ROTATIONS);
     }
 
 }
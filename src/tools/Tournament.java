@@ -0,0 +1,737 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import model.BagRandomizer;
+import model.BeamBot;
+import model.Board;
+import model.Bot;
+import model.MctsBot;
+import model.TranspositionTable;
+
+/**
+ * Plays every bot on every seed on every board size, without a display, and
+ * writes a row of results per game to a CSV file as the games finish.
+ *
+ * <p>Games are numbered size by size, seed by seed, bot by bot, and the
+ * threads of the common fork/join pool take the next number in turn, so no
+ * list of games is ever built. Each row goes through one buffered writer and
+ * is flushed every few rows. Totals for each bot on each board size are added
+ * up as rows are written and printed at the end, so memory does not grow with
+ * the number of games.
+ *
+ * <p>If the file already holds rows, the run resumes: the rows are checked
+ * against the games they claim to be, added to the totals, and their games
+ * are skipped. A row cut short when a run was stopped is dropped and its game
+ * played again. Games finish nearly in order, so the games done are kept as
+ * the number below which all are done and a window of those done past it.
+ *
+ * <p>For the Monte Carlo bots the rollouts per second, the mean tree size
+ * and the bytes of the tree of the games played in this run are printed
+ * too, and for a table shared by the beam bots its hit rate and collisions.
+ *
+ * <p>Options: -bots followed by bots separated by commas, each "beam" or
+ * "beam:width" for {@link BeamBot}, or "mcts" or "mcts:rollouts" for
+ * {@link MctsBot}; -sizes followed by sizes such as "10x20,12x24"; -seeds
+ * followed by the number of seeds; -seed followed by the first seed; -pieces
+ * followed by the most pieces in a game; -table followed by the megabytes of
+ * a {@link TranspositionTable} shared by the beam bots, 0 for none; -out
+ * followed by the results file.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class Tournament {
+
+    /** The columns of the results file. */
+    private static final String HEADER = "game,bot,width,height,seed,pieces,lines,score,"
+                                         + "nanos,singles,doubles,triples,tetrises";
+
+    /** The number of columns. */
+    private static final int COLUMNS = HEADER.split(",").length;
+
+    /** The column of the game number. */
+    private static final int GAME = 0;
+
+    /** The column of the bot. */
+    private static final int BOT = 1;
+
+    /** The column of the board width. */
+    private static final int WIDTH = 2;
+
+    /** The column of the board height. */
+    private static final int HEIGHT = 3;
+
+    /** The column of the seed. */
+    private static final int SEED = 4;
+
+    /** The column of the pieces played. */
+    private static final int PIECES = 5;
+
+    /** The column of the lines cleared. */
+    private static final int LINES = 6;
+
+    /** The column of the score. */
+    private static final int SCORE = 7;
+
+    /** The column of the time taken. */
+    private static final int NANOS = 8;
+
+    /** The column of the single line clears, followed by doubles, triples and tetrises. */
+    private static final int CLEARS = 9;
+
+    /** The most lines cleared at once. */
+    private static final int MOST_LINES = 4;
+
+    /** The number of rows written between flushes. */
+    private static final int FLUSH_ROWS = 64;
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** The number of bytes in a megabyte. */
+    private static final long MEGABYTE = 1L << 20;
+
+    /** Turns a fraction into a percentage. */
+    private static final double PERCENT = 100.0;
+
+    /** The default number of seeds. */
+    private static final int DEFAULT_SEEDS = 4;
+
+    /** The default most pieces in a game. */
+    private static final int DEFAULT_PIECES = 500;
+
+    /** The tree capacity of the Monte Carlo bots, small as one runs per thread. */
+    private static final int MCTS_CAPACITY = 1 << 16;
+
+    /** The default rollouts of the Monte Carlo bots. */
+    private static final int MCTS_ROLLOUTS = 200;
+
+    /** The bots, as given. */
+    private String[] myBots;
+
+    /** The width of each board size. */
+    private int[] myWidths;
+
+    /** The height of each board size. */
+    private int[] myHeights;
+
+    /** The number of seeds. */
+    private int mySeeds;
+
+    /** The first seed. */
+    private long myFirstSeed;
+
+    /** The most pieces in a game. */
+    private int myPieces;
+
+    /** The table shared by the beam bots, or null. */
+    private TranspositionTable myTable;
+
+    /** The results file. */
+    private Path myOut;
+
+    /** The number of games. */
+    private long myGames;
+
+    /** Every game below this number is done. */
+    private long myDoneBelow;
+
+    /** The games done at or past myDoneBelow, as offsets from it. */
+    private BitSet myDoneAhead;
+
+    /** The number of the next game to hand out. */
+    private final AtomicLong myNext;
+
+    /** The totals of each bot on each size, indexed by size times bots plus bot. */
+    private Totals[] myTotals;
+
+    /** Writes the results; guarded by itself. */
+    private BufferedWriter myWriter;
+
+    /** The number of rows written since the last flush, guarded by myWriter. */
+    private int myUnflushed;
+
+    /**
+     * Creates a tournament with the default options.
+     */
+    private Tournament() {
+        myBots = new String[] {"beam:1", "beam"};
+        myWidths = new int[] {10};
+        myHeights = new int[] {20};
+        mySeeds = DEFAULT_SEEDS;
+        myFirstSeed = 1;
+        myPieces = DEFAULT_PIECES;
+        myOut = Paths.get("tournament.csv");
+        myDoneAhead = new BitSet();
+        myNext = new AtomicLong();
+    }
+
+    /**
+     * Runs a tournament.
+     *
+     * @param theArgs the options
+     * @throws IOException if the results file could not be read or written
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        final Tournament tournament = new Tournament();
+        for (int i = 0; i + 1 < theArgs.length; i += 2) {
+            tournament.option(theArgs[i], theArgs[i + 1]);
+        }
+        tournament.run();
+    }
+
+    /**
+     * Sets an option.
+     *
+     * @param theName the option's name
+     * @param theValue the option's value
+     */
+    private void option(final String theName, final String theValue) {
+        switch (theName) {
+            case "-bots":
+                myBots = theValue.split(",");
+                for (final String bot : myBots) {
+                    createBot(bot);
+                }
+                break;
+            case "-sizes":
+                final String[] sizes = theValue.split(",");
+                myWidths = new int[sizes.length];
+                myHeights = new int[sizes.length];
+                for (int i = 0; i < sizes.length; i++) {
+                    final String[] size = sizes[i].split("x");
+                    myWidths[i] = Integer.parseInt(size[0]);
+                    myHeights[i] = Integer.parseInt(size[1]);
+                }
+                break;
+            case "-seeds":
+                mySeeds = Integer.parseInt(theValue);
+                break;
+            case "-seed":
+                myFirstSeed = Long.parseLong(theValue);
+                break;
+            case "-pieces":
+                myPieces = Integer.parseInt(theValue);
+                break;
+            case "-table":
+                myTable = null;
+                if (Long.parseLong(theValue) > 0) {
+                    myTable = new TranspositionTable(Long.parseLong(theValue) * MEGABYTE);
+                }
+                break;
+            case "-out":
+                myOut = Paths.get(theValue);
+                break;
+            default:
+                throw new IllegalArgumentException(theName);
+        }
+        if (mySeeds < 1 || myPieces < 1) {
+            throw new IllegalArgumentException(theName + " " + theValue);
+        }
+    }
+
+    /**
+     * Resumes from the results file, plays the games not yet played and
+     * prints the totals.
+     *
+     * @throws IOException if the results file could not be read or written
+     */
+    private void run() throws IOException {
+        myGames = (long) myWidths.length * mySeeds * myBots.length;
+        myTotals = new Totals[myWidths.length * myBots.length];
+        for (int i = 0; i < myTotals.length; i++) {
+            myTotals[i] = new Totals();
+        }
+        final long resumed = resume();
+        System.out.println("# " + ForkJoinPool.getCommonPoolParallelism() + " threads, "
+                           + myGames + " games, " + resumed + " already played");
+
+        final long start = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(myOut, StandardOpenOption.CREATE,
+                                                             StandardOpenOption.APPEND)) {
+            myWriter = writer;
+            if (Files.size(myOut) == 0) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            myNext.set(myDoneBelow);
+            final int threads = ForkJoinPool.getCommonPoolParallelism();
+            ForkJoinPool.commonPool().invoke(new Players(0, threads));
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println("bot          size     games   mean lines  mean pieces  "
+                           + "mean score  tetrises  pieces/s");
+        for (int size = 0; size < myWidths.length; size++) {
+            for (int bot = 0; bot < myBots.length; bot++) {
+                final Totals totals = myTotals[size * myBots.length + bot];
+                System.out.println(String.format(
+                    "%-12s %2dx%-3d %8d %12.1f %12.1f %11.0f %9d %9.0f",
+                    myBots[bot], myWidths[size], myHeights[size], totals.myGames,
+                    totals.mean(totals.myLines), totals.mean(totals.myPieces),
+                    totals.mean(totals.myScore), totals.myClears[MOST_LINES - 1],
+                    totals.myPieces * NANOS_PER_SECOND / Math.max(1, totals.myNanos)));
+            }
+        }
+        printSearches();
+        if (myTable != null) {
+            System.out.println(String.format(
+                "# table %d MB: %.1f%% hits, %d collisions, %d stores",
+                myTable.getCapacity() * (long) TranspositionTable.ENTRY_BYTES / MEGABYTE,
+                PERCENT * myTable.getHitRate(), myTable.getCollisions(),
+                myTable.getStores()));
+        }
+        System.out.println(String.format("# %.1f s", elapsed / NANOS_PER_SECOND));
+    }
+
+    /**
+     * Prints the rollouts per second and tree sizes of the Monte Carlo bots,
+     * for the games played in this run.
+     */
+    private void printSearches() {
+        boolean header = false;
+        for (int size = 0; size < myWidths.length; size++) {
+            for (int bot = 0; bot < myBots.length; bot++) {
+                final Totals totals = myTotals[size * myBots.length + bot];
+                if (totals.mySearches > 0) {
+                    if (!header) {
+                        System.out.println("bot          size    searches  rollouts/s  "
+                                           + "mean nodes  tree MB");
+                        header = true;
+                    }
+                    System.out.println(String.format(
+                        "%-12s %2dx%-3d %9d %11.0f %11.0f %8.1f",
+                        myBots[bot], myWidths[size], myHeights[size], totals.mySearches,
+                        totals.myRollouts * NANOS_PER_SECOND
+                            / Math.max(1, totals.mySearchNanos),
+                        (double) totals.myTreeNodes / totals.mySearches,
+                        (double) totals.myTreeBytes / MEGABYTE));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows already in the results file, marking their games done
+     * and adding them to the totals. A line cut short at the end of the file,
+     * without its line break, is removed.
+     *
+     * @return the number of rows read
+     * @throws IOException if the file could not be read, or holds rows of
+     *         another tournament
+     */
+    private long resume() throws IOException {
+        long result = 0;
+        long kept = 0;
+        if (Files.exists(myOut)) {
+            final boolean ended = endsWithLineBreak();
+            try (BufferedReader reader = Files.newBufferedReader(myOut)) {
+                String line = reader.readLine();
+                String next = null;
+                if (line != null) {
+                    next = reader.readLine();
+                }
+                if (line != null && (next != null || ended)) {
+                    if (!HEADER.equals(line)) {
+                        throw new IOException(myOut + " is not a results file");
+                    }
+                    kept = line.length() + 1;
+                    line = next;
+                    next = reader.readLine();
+                    while (line != null && (next != null || ended)) {
+                        final String[] row = line.split(",", -1);
+                        if (row.length != COLUMNS || !isComplete(row)) {
+                            throw new IOException(myOut + " has a broken row: " + line);
+                        }
+                        final long game = Long.parseLong(row[GAME]);
+                        check(game, row);
+                        add(game, row);
+                        markDone(game);
+                        kept += line.length() + 1;
+                        result++;
+                        line = next;
+                        next = reader.readLine();
+                    }
+                }
+            }
+            truncate(kept);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the results file ends with a line break
+     * @throws IOException if the file could not be read
+     */
+    private boolean endsWithLineBreak() throws IOException {
+        boolean result = false;
+        try (FileChannel channel = FileChannel.open(myOut, StandardOpenOption.READ)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            if (channel.size() > 0 && channel.read(last, channel.size() - 1) == 1) {
+                result = last.get(0) == '\n';
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cuts the results file after its last complete row.
+     *
+     * @param theLength the length of the file up to the end of that row
+     * @throws IOException if the file could not be cut
+     */
+    private void truncate(final long theLength) throws IOException {
+        if (Files.size(myOut) > theLength) {
+            try (FileChannel channel = FileChannel.open(myOut, StandardOpenOption.WRITE)) {
+                channel.truncate(theLength);
+            }
+        }
+    }
+
+    /**
+     * @param theRow a row read back
+     * @return true if every column of the row holds a number, apart from the bot
+     */
+    private static boolean isComplete(final String[] theRow) {
+        boolean result = true;
+        for (int i = 0; i < theRow.length; i++) {
+            if (i != BOT) {
+                result &= theRow[i].matches("-?\\d+");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that a row read back is the game its number says.
+     *
+     * @param theGame the game number
+     * @param theRow the row
+     * @throws IOException if the row belongs to another tournament
+     */
+    private void check(final long theGame, final String[] theRow) throws IOException {
+        final int size = (int) (theGame / myBots.length / mySeeds);
+        if (theGame >= myGames || !myBots[bot(theGame)].equals(theRow[BOT])
+            || myWidths[size] != Integer.parseInt(theRow[WIDTH])
+            || myHeights[size] != Integer.parseInt(theRow[HEIGHT])
+            || seed(theGame) != Long.parseLong(theRow[SEED])) {
+            throw new IOException(myOut + " holds results of another tournament: "
+                                  + String.join(",", theRow));
+        }
+    }
+
+    /**
+     * @param theGame a game number
+     * @return the index of the bot that plays it
+     */
+    private int bot(final long theGame) {
+        return (int) (theGame % myBots.length);
+    }
+
+    /**
+     * @param theGame a game number
+     * @return the seed it is played with
+     */
+    private long seed(final long theGame) {
+        return myFirstSeed + theGame / myBots.length % mySeeds;
+    }
+
+    /**
+     * Adds a row to the totals of its bot and board size.
+     *
+     * @param theGame the game number
+     * @param theRow the row
+     */
+    private void add(final long theGame, final String[] theRow) {
+        final Totals totals = myTotals[(int) (theGame / myBots.length / mySeeds)
+                                       * myBots.length + bot(theGame)];
+        final long[] clears = new long[MOST_LINES];
+        for (int i = 0; i < MOST_LINES; i++) {
+            clears[i] = Long.parseLong(theRow[CLEARS + i]);
+        }
+        totals.add(Long.parseLong(theRow[PIECES]), Long.parseLong(theRow[LINES]),
+                   Long.parseLong(theRow[SCORE]), Long.parseLong(theRow[NANOS]), clears);
+    }
+
+    /**
+     * Marks a game done.
+     *
+     * @param theGame the game number
+     */
+    private void markDone(final long theGame) {
+        if (theGame >= myDoneBelow) {
+            myDoneAhead.set((int) (theGame - myDoneBelow));
+            final int run = myDoneAhead.nextClearBit(0);
+            if (run > 0) {
+                myDoneBelow += run;
+                myDoneAhead = myDoneAhead.get(run, Math.max(run, myDoneAhead.length()));
+            }
+        }
+    }
+
+    /**
+     * @param theGame a game number
+     * @return true if the game was played before the run resumed
+     */
+    private boolean wasPlayed(final long theGame) {
+        return theGame < myDoneBelow
+               || theGame - myDoneBelow < myDoneAhead.length()
+                  && myDoneAhead.get((int) (theGame - myDoneBelow));
+    }
+
+    /**
+     * Creates a bot from its description.
+     *
+     * @param theBot the bot, such as "beam:4" or "mcts"
+     * @return the bot
+     */
+    private Bot createBot(final String theBot) {
+        final String[] parts = theBot.split(":");
+        final Bot result;
+        if ("beam".equals(parts[0]) && parts.length <= 2) {
+            int width = BeamBot.DEFAULT_BEAM_WIDTH;
+            if (parts.length > 1) {
+                width = Integer.parseInt(parts[1]);
+            }
+            final BeamBot bot = new BeamBot(BeamBot.defaultWeights(), width, 0, null);
+            bot.setTable(myTable);
+            result = bot;
+        } else if ("mcts".equals(parts[0]) && parts.length <= 2) {
+            final MctsBot bot = new MctsBot(BeamBot.defaultWeights(), MCTS_CAPACITY, 0, null);
+            bot.setRolloutBudget(MCTS_ROLLOUTS);
+            if (parts.length > 1) {
+                bot.setRolloutBudget(Long.parseLong(parts[1]));
+            }
+            result = bot;
+        } else {
+            throw new IllegalArgumentException(theBot);
+        }
+        return result;
+    }
+
+    /**
+     * Plays one game and writes its row.
+     *
+     * @param theGame the game number
+     * @param theBots a bot of each kind, for this thread only
+     * @throws IOException if the row could not be written
+     */
+    private void play(final long theGame, final Bot[] theBots) throws IOException {
+        final int size = (int) (theGame / myBots.length / mySeeds);
+        final long seed = seed(theGame);
+        final Bot bot = theBots[bot(theGame)];
+        final Board board = new Board(myWidths[size], myHeights[size],
+                                      new BagRandomizer(seed));
+        final long[] clears = new long[MOST_LINES];
+        MctsBot mcts = null;
+        if (bot instanceof MctsBot) {
+            mcts = (MctsBot) bot;
+        }
+        long rollouts = 0;
+        long nodes = 0;
+        final long start = System.nanoTime();
+        int pieces = 0;
+        int lines = 0;
+        while (pieces < myPieces && !board.isGameOver() && bot.playPiece(board)) {
+            pieces++;
+            if (mcts != null) {
+                rollouts += mcts.getRollouts();
+                nodes += mcts.getNodes();
+            }
+            final int cleared = board.getLinesCleared() - lines;
+            if (cleared > 0) {
+                clears[Math.min(cleared, MOST_LINES) - 1]++;
+                lines += cleared;
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+
+        final String row = theGame + "," + myBots[bot(theGame)] + "," + myWidths[size] + ","
+                           + myHeights[size] + "," + seed + "," + pieces + ","
+                           + board.getLinesCleared() + "," + board.getScore() + "," + nanos
+                           + "," + clears[0] + "," + clears[1] + "," + clears[2] + ","
+                           + clears[MOST_LINES - 1];
+        synchronized (myWriter) {
+            myWriter.write(row);
+            myWriter.write('\n');
+            myUnflushed++;
+            if (myUnflushed == FLUSH_ROWS) {
+                myWriter.flush();
+                myUnflushed = 0;
+            }
+            final Totals totals = myTotals[size * myBots.length + bot(theGame)];
+            totals.add(pieces, board.getLinesCleared(), board.getScore(), nanos, clears);
+            if (mcts != null) {
+                totals.addSearches(pieces, rollouts, nodes, nanos, mcts.getTreeBytes());
+            }
+        }
+    }
+
+    /**
+     * Plays games until none are left, with as many tasks as threads.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Players extends RecursiveAction {
+
+        /** The class's serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The first thread of the task. */
+        private final int myLow;
+
+        /** One past the last thread of the task. */
+        private final int myHigh;
+
+        /**
+         * Creates a task.
+         *
+         * @param theLow the first thread of the task
+         * @param theHigh one past the last thread of the task
+         */
+        Players(final int theLow, final int theHigh) {
+            super();
+            myLow = theLow;
+            myHigh = theHigh;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (myHigh - myLow == 1) {
+                final Bot[] bots = new Bot[myBots.length];
+                for (int i = 0; i < bots.length; i++) {
+                    bots[i] = createBot(myBots[i]);
+                }
+                for (long game = myNext.getAndIncrement(); game < myGames;
+                        game = myNext.getAndIncrement()) {
+                    if (!wasPlayed(game)) {
+                        try {
+                            play(game, bots);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            } else {
+                final int middle = (myLow + myHigh) >>> 1;
+                invokeAll(new Players(myLow, middle), new Players(middle, myHigh));
+            }
+        }
+    }
+
+    /**
+     * The running totals of one bot on one board size.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private static final class Totals {
+
+        /** The number of games. */
+        private long myGames;
+
+        /** The pieces played. */
+        private long myPieces;
+
+        /** The lines cleared. */
+        private long myLines;
+
+        /** The points scored. */
+        private long myScore;
+
+        /** The time taken, in nanoseconds. */
+        private long myNanos;
+
+        /** The number of clears of each number of lines, from 1. */
+        private final long[] myClears = new long[MOST_LINES];
+
+        /** The number of tree searches made in this run. */
+        private long mySearches;
+
+        /** The rollouts played by those searches. */
+        private long myRollouts;
+
+        /** The nodes in the trees of those searches. */
+        private long myTreeNodes;
+
+        /** The time taken by the games of those searches, in nanoseconds. */
+        private long mySearchNanos;
+
+        /** The bytes of the tree searched. */
+        private long myTreeBytes;
+
+        /**
+         * Adds a game.
+         *
+         * @param thePieces the pieces played
+         * @param theLines the lines cleared
+         * @param theScore the points scored
+         * @param theNanos the time taken
+         * @param theClears the number of clears of each number of lines
+         */
+        void add(final long thePieces, final long theLines, final long theScore,
+                 final long theNanos, final long[] theClears) {
+            myGames++;
+            myPieces += thePieces;
+            myLines += theLines;
+            myScore += theScore;
+            myNanos += theNanos;
+            for (int i = 0; i < MOST_LINES; i++) {
+                myClears[i] += theClears[i];
+            }
+        }
+
+        /**
+         * Adds the tree searches of a game played in this run.
+         *
+         * @param theSearches the number of searches, one per piece
+         * @param theRollouts the rollouts played
+         * @param theNodes the nodes in the trees, added up over the searches
+         * @param theNanos the time taken by the game
+         * @param theTreeBytes the bytes of the tree searched
+         */
+        void addSearches(final long theSearches, final long theRollouts,
+                         final long theNodes, final long theNanos, final long theTreeBytes) {
+            mySearches += theSearches;
+            myRollouts += theRollouts;
+            myTreeNodes += theNodes;
+            mySearchNanos += theNanos;
+            myTreeBytes = theTreeBytes;
+        }
+
+        /**
+         * @param theTotal a total of these games
+         * @return the total's mean per game, 0 if there were no games
+         */
+        double mean(final long theTotal) {
+            double result = 0.0;
+            if (myGames > 0) {
+                result = (double) theTotal / myGames;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * TCSS 305 - Project Tetris
+ */
+
+package tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import model.BagRandomizer;
+import model.BeamBot;
+import model.Board;
+
+/**
+ * Tunes the weights of {@link BeamBot} with the cross-entropy method.
+ *
+ * <p>Each generation draws a population of weight vectors from a normal
+ * distribution per weight, plays every vector on the same fixed set of
+ * seeded games, and moves the distribution to the mean and spread of the
+ * best quarter, with extra spread that shrinks each generation so it does
+ * not collapse early. A vector's fitness is its mean lines cleared, and
+ * games end after a fixed number of pieces so a generation takes bounded
+ * time. The games of a generation are played on every core of the common
+ * fork/join pool, each on its own board with its own bot.
+ *
+ * <p>After each generation the distribution, the population and its
+ * fitness, and the best vector so far are written to a checkpoint file,
+ * replacing it in one move. Run again with the same checkpoint to carry on
+ * from the last generation written; the vectors drawn depend only on the
+ * seed and the generation, so an interrupted run goes on as if it had not
+ * stopped. Each generation reports games and pieces per second.
+ *
+ * <p>Options: -generations, -population, -games, -pieces, -beam and -seed,
+ * each followed by a number, and -checkpoint followed by a file name.
+ *
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class WeightTrainer {
+
+    /** The width of the boards played on. */
+    private static final int WIDTH = 10;
+
+    /** The height of the boards played on. */
+    private static final int HEIGHT = 20;
+
+    /** The default number of generations to run. */
+    private static final int DEFAULT_GENERATIONS = 10;
+
+    /** The default number of vectors in each generation. */
+    private static final int DEFAULT_POPULATION = 16;
+
+    /** The default number of games each vector plays. */
+    private static final int DEFAULT_GAMES = 4;
+
+    /** The default most pieces played in a game. */
+    private static final int DEFAULT_PIECES = 300;
+
+    /** The default seed. */
+    private static final long DEFAULT_SEED = 305L;
+
+    /** The fraction of each population the distribution is fitted to. */
+    private static final double ELITE = 0.25;
+
+    /** The spread of each weight in the first generation. */
+    private static final double INITIAL_SPREAD = 1.0;
+
+    /** The spread added in the first generation, divided by the generation after. */
+    private static final double NOISE = 0.25;
+
+    /** The number of nanoseconds in a second. */
+    private static final double NANOS = 1e9;
+
+    /** The first word of a checkpoint line holding the generation. */
+    private static final String GENERATION = "generation";
+
+    /** The first word of a checkpoint line holding the mean of each weight. */
+    private static final String MEAN = "mean";
+
+    /** The first word of a checkpoint line holding the spread of each weight. */
+    private static final String SPREAD = "spread";
+
+    /** The first word of a checkpoint line holding the best vector and its fitness. */
+    private static final String BEST = "best";
+
+    /** The first word of a checkpoint line holding a vector and its fitness. */
+    private static final String CANDIDATE = "candidate";
+
+    /** The number of generations to run. */
+    private int myGenerations;
+
+    /** The number of vectors in each generation. */
+    private int myPopulation;
+
+    /** The number of games each vector plays. */
+    private int myGames;
+
+    /** The most pieces played in a game. */
+    private int myPieces;
+
+    /** The beam width of the bots. */
+    private int myBeam;
+
+    /** The seed of the games and of the vectors drawn. */
+    private long mySeed;
+
+    /** The checkpoint file, or null for none. */
+    private Path myCheckpoint;
+
+    /** The generation to run next. */
+    private int myGeneration;
+
+    /** The mean of each weight. */
+    private double[] myMean;
+
+    /** The spread of each weight. */
+    private double[] mySpread;
+
+    /** The best vector played, with its fitness after the weights. */
+    private double[] myBest;
+
+    /** The vectors of the last generation, each with its fitness after the weights. */
+    private double[][] myCandidates;
+
+    /**
+     * Creates a trainer with the default options, starting from the default
+     * weights.
+     */
+    private WeightTrainer() {
+        myGenerations = DEFAULT_GENERATIONS;
+        myPopulation = DEFAULT_POPULATION;
+        myGames = DEFAULT_GAMES;
+        myPieces = DEFAULT_PIECES;
+        myBeam = 1;
+        mySeed = DEFAULT_SEED;
+        myMean = BeamBot.defaultWeights();
+        mySpread = new double[BeamBot.WEIGHTS];
+        Arrays.fill(mySpread, INITIAL_SPREAD);
+        myCandidates = new double[0][];
+    }
+
+    /**
+     * Trains weights.
+     *
+     * @param theArgs the options
+     * @throws IOException if the checkpoint could not be read or written
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        final WeightTrainer trainer = new WeightTrainer();
+        for (int i = 0; i + 1 < theArgs.length; i += 2) {
+            trainer.option(theArgs[i], theArgs[i + 1]);
+        }
+        if (trainer.myCheckpoint != null && Files.exists(trainer.myCheckpoint)) {
+            trainer.load();
+            System.out.println("# resuming at generation " + trainer.myGeneration);
+        }
+        System.out.println("# " + ForkJoinPool.getCommonPoolParallelism() + " threads, "
+                           + trainer.myPopulation + " vectors of " + trainer.myGames
+                           + " games of at most " + trainer.myPieces + " pieces");
+        trainer.train();
+    }
+
+    /**
+     * Sets an option.
+     *
+     * @param theName the option's name
+     * @param theValue the option's value
+     */
+    private void option(final String theName, final String theValue) {
+        switch (theName) {
+            case "-generations":
+                myGenerations = Integer.parseInt(theValue);
+                break;
+            case "-population":
+                myPopulation = Integer.parseInt(theValue);
+                break;
+            case "-games":
+                myGames = Integer.parseInt(theValue);
+                break;
+            case "-pieces":
+                myPieces = Integer.parseInt(theValue);
+                break;
+            case "-beam":
+                myBeam = Integer.parseInt(theValue);
+                break;
+            case "-seed":
+                mySeed = Long.parseLong(theValue);
+                break;
+            case "-checkpoint":
+                myCheckpoint = Paths.get(theValue);
+                break;
+            default:
+                throw new IllegalArgumentException(theName);
+        }
+        if (myPopulation < 2 || myGames < 1 || myPieces < 1 || myBeam < 1) {
+            throw new IllegalArgumentException(theName + " " + theValue);
+        }
+    }
+
+    /**
+     * Runs generations until the number asked for have run.
+     *
+     * @throws IOException if the checkpoint could not be written
+     */
+    private void train() throws IOException {
+        long totalGames = 0;
+        long totalPieces = 0;
+        long totalNanos = 0;
+        while (myGeneration < myGenerations) {
+            final double[][] vectors = sample();
+            final int tasks = vectors.length * myGames;
+            final int[] lines = new int[tasks];
+            final int[] pieces = new int[tasks];
+            final long start = System.nanoTime();
+            ForkJoinPool.commonPool().invoke(new Games(vectors, lines, pieces, 0, tasks));
+            final long elapsed = System.nanoTime() - start;
+
+            long played = 0;
+            for (int i = 0; i < tasks; i++) {
+                vectors[i / myGames][BeamBot.WEIGHTS] += (double) lines[i] / myGames;
+                played += pieces[i];
+            }
+            fit(vectors);
+            totalGames += tasks;
+            totalPieces += played;
+            totalNanos += elapsed;
+            System.out.println(String.format(
+                "generation %3d best %8.1f elite %8.1f %8.1f games/s %,10.0f pieces/s",
+                myGeneration, myCandidates[0][BeamBot.WEIGHTS],
+                eliteFitness(), tasks * NANOS / elapsed, played * NANOS / elapsed));
+            myGeneration++;
+            if (myCheckpoint != null) {
+                save();
+            }
+        }
+        if (totalNanos > 0) {
+            System.out.println(String.format("# %,d games %,d pieces %.1f games/s "
+                                             + "%,.0f pieces/s", totalGames, totalPieces,
+                                             totalGames * NANOS / totalNanos,
+                                             totalPieces * NANOS / totalNanos));
+        }
+        System.out.println("# mean " + join(myMean, myMean.length));
+        if (myBest != null) {
+            System.out.println("# best " + join(myBest, BeamBot.WEIGHTS) + " fitness "
+                               + myBest[BeamBot.WEIGHTS]);
+        }
+    }
+
+    /**
+     * Draws the vectors of the current generation.
+     *
+     * @return the vectors, each with room for its fitness after the weights
+     */
+    private double[][] sample() {
+        final SplittableRandom random = new SplittableRandom(seed(mySeed, myGeneration));
+        final double[][] result = new double[myPopulation][BeamBot.WEIGHTS + 1];
+        for (final double[] vector : result) {
+            for (int w = 0; w < BeamBot.WEIGHTS; w++) {
+                vector[w] = myMean[w] + mySpread[w] * gaussian(random);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fits the distribution to the best vectors of a generation.
+     *
+     * @param theVectors the vectors, with their fitness
+     */
+    private void fit(final double[][] theVectors) {
+        // best first, the earlier vector first among equals
+        final double[][] sorted = theVectors.clone();
+        Arrays.sort(sorted, new Comparator<double[]>() {
+            @Override
+            public int compare(final double[] theFirst, final double[] theSecond) {
+                return Double.compare(theSecond[BeamBot.WEIGHTS], theFirst[BeamBot.WEIGHTS]);
+            }
+        });
+        myCandidates = sorted;
+        if (myBest == null || sorted[0][BeamBot.WEIGHTS] > myBest[BeamBot.WEIGHTS]) {
+            myBest = sorted[0].clone();
+        }
+        final int elite = eliteCount();
+        final double noise = NOISE / (myGeneration + 1);
+        for (int w = 0; w < BeamBot.WEIGHTS; w++) {
+            double mean = 0.0;
+            for (int i = 0; i < elite; i++) {
+                mean += sorted[i][w];
+            }
+            mean /= elite;
+            double variance = 0.0;
+            for (int i = 0; i < elite; i++) {
+                variance += (sorted[i][w] - mean) * (sorted[i][w] - mean);
+            }
+            myMean[w] = mean;
+            mySpread[w] = Math.sqrt(variance / elite) + noise;
+        }
+    }
+
+    /**
+     * @return the number of vectors the distribution is fitted to
+     */
+    private int eliteCount() {
+        return Math.max(1, (int) Math.round(myPopulation * ELITE));
+    }
+
+    /**
+     * @return the mean fitness of the best vectors of the last generation
+     */
+    private double eliteFitness() {
+        final int elite = Math.min(eliteCount(), myCandidates.length);
+        double result = 0.0;
+        for (int i = 0; i < elite; i++) {
+            result += myCandidates[i][BeamBot.WEIGHTS] / elite;
+        }
+        return result;
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param theWeights the bot's weights, and a fitness after them that is ignored
+     * @param theGame the index of the game in the fixed set
+     * @param theLines where to put the lines cleared
+     * @param thePieces where to put the pieces played
+     * @param theIndex the index to put them at
+     */
+    private void play(final double[] theWeights, final int theGame, final int[] theLines,
+                      final int[] thePieces, final int theIndex) {
+        final Board board = new Board(WIDTH, HEIGHT,
+                                      new BagRandomizer(seed(~mySeed, theGame)));
+        final BeamBot bot = new BeamBot(Arrays.copyOf(theWeights, BeamBot.WEIGHTS),
+                                        myBeam, 0, null);
+        int played = 0;
+        while (played < myPieces && !board.isGameOver() && bot.playPiece(board)) {
+            played++;
+        }
+        theLines[theIndex] = board.getLinesCleared();
+        thePieces[theIndex] = played;
+    }
+
+    /**
+     * Writes the checkpoint to a new file and moves it over the old one.
+     *
+     * @throws IOException if the file could not be written
+     */
+    private void save() throws IOException {
+        final Path temporary =
+            myCheckpoint.resolveSibling(myCheckpoint.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary)) {
+            out.write(GENERATION + " " + myGeneration);
+            out.newLine();
+            out.write(MEAN + " " + join(myMean, myMean.length));
+            out.newLine();
+            out.write(SPREAD + " " + join(mySpread, mySpread.length));
+            out.newLine();
+            out.write(BEST + " " + join(myBest, myBest.length));
+            out.newLine();
+            for (final double[] candidate : myCandidates) {
+                out.write(CANDIDATE + " " + join(candidate, candidate.length));
+                out.newLine();
+            }
+        }
+        Files.move(temporary, myCheckpoint, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the checkpoint.
+     *
+     * @throws IOException if the file could not be read
+     */
+    private void load() throws IOException {
+        final List<String> lines = Files.readAllLines(myCheckpoint);
+        int candidates = 0;
+        for (final String line : lines) {
+            if (line.startsWith(CANDIDATE)) {
+                candidates++;
+            }
+        }
+        myCandidates = new double[candidates][];
+        candidates = 0;
+        for (final String line : lines) {
+            final String[] words = line.trim().split("\\s+");
+            final double[] values = new double[words.length - 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.parseDouble(words[i + 1]);
+            }
+            switch (words[0]) {
+                case GENERATION:
+                    myGeneration = (int) values[0];
+                    break;
+                case MEAN:
+                    myMean = checked(values, BeamBot.WEIGHTS);
+                    break;
+                case SPREAD:
+                    mySpread = checked(values, BeamBot.WEIGHTS);
+                    break;
+                case BEST:
+                    myBest = checked(values, BeamBot.WEIGHTS + 1);
+                    break;
+                case CANDIDATE:
+                    myCandidates[candidates] = checked(values, BeamBot.WEIGHTS + 1);
+                    candidates++;
+                    break;
+                default:
+                    throw new IOException("unknown checkpoint line: " + line);
+            }
+        }
+    }
+
+    /**
+     * @param theValues values read from a checkpoint
+     * @param theLength the number there should be
+     * @return the values
+     * @throws IOException if there are not that many
+     */
+    private static double[] checked(final double[] theValues, final int theLength)
+        throws IOException {
+        if (theValues.length != theLength) {
+            throw new IOException("checkpoint line has " + theValues.length
+                                  + " values, not " + theLength);
+        }
+        return theValues;
+    }
+
+    /**
+     * @param theValues some numbers
+     * @param theLength the number of them to join
+     * @return the first numbers, separated by spaces, each as it reads back exactly
+     */
+    private static String join(final double[] theValues, final int theLength) {
+        final StringBuilder result = new StringBuilder();
+        for (int i = 0; i < theLength; i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(theValues[i]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Mixes a number into a seed, so each generation and game gets its own.
+     *
+     * @param theSeed the seed
+     * @param theIndex the number of the generation or game
+     * @return the seed for it
+     */
+    private static long seed(final long theSeed, final long theIndex) {
+        return new SplittableRandom(theSeed + theIndex).nextLong();
+    }
+
+    /**
+     * Draws a number from the standard normal distribution with the
+     * Box-Muller transform.
+     *
+     * @param theRandom the source of random numbers
+     * @return the number
+     */
+    private static double gaussian(final SplittableRandom theRandom) {
+        final double radius = Math.sqrt(-2.0 * Math.log(1.0 - theRandom.nextDouble()));
+        return radius * Math.cos(2.0 * Math.PI * theRandom.nextDouble());
+    }
+
+    /**
+     * Plays games of a generation, splitting until each task has one game.
+     *
+     * @author Robbie Nichols eibbor08@uw.edu
+     * @version Autumn 2014
+     */
+    private final class Games extends RecursiveAction {
+
+        /** The class's serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The vectors of the generation. */
+        private final double[][] myVectors;
+
+        /** The lines cleared in each game. */
+        private final int[] myLines;
+
+        /** The pieces played in each game. */
+        private final int[] myPlayed;
+
+        /** The first game of the task, counting the games of every vector in turn. */
+        private final int myLow;
+
+        /** One past the last game of the task. */
+        private final int myHigh;
+
+        /**
+         * Creates a task.
+         *
+         * @param theVectors the vectors of the generation
+         * @param theLines where to put the lines cleared in each game
+         * @param thePlayed where to put the pieces played in each game
+         * @param theLow the first game of the task
+         * @param theHigh one past the last game of the task
+         */
+        Games(final double[][] theVectors, final int[] theLines, final int[] thePlayed,
+              final int theLow, final int theHigh) {
+            super();
+            myVectors = theVectors;
+            myLines = theLines;
+            myPlayed = thePlayed;
+            myLow = theLow;
+            myHigh = theHigh;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (myHigh - myLow == 1) {
+                play(myVectors[myLow / myGames], myLow % myGames, myLines, myPlayed, myLow);
+            } else {
+                final int middle = (myLow + myHigh) >>> 1;
+                invokeAll(new Games(myVectors, myLines, myPlayed, myLow, middle),
+                          new Games(myVectors, myLines, myPlayed, middle, myHigh));
+            }
+        }
+    }
+}
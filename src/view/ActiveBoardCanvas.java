@@ -0,0 +1,386 @@
+/* TCSS 305 - Project Tetris */
+package view;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.Toolkit;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.LockSupport;
+
+import model.Block;
+import model.BoardSnapshot;
+import model.PieceShapes;
+import model.RateMeter;
+
+/**
+ * Draws the game board on its own thread, independently of the game timer.
+ * 
+ * <p>The canvas draws the most recent {@link BoardSnapshot} it has been given
+ * into a page-flipping buffer, as often as the frame rate cap allows. It never
+ * reads the Board itself, so drawing needs no locking and cannot delay the game.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ *
+ */
+@SuppressWarnings("serial")
+public class ActiveBoardCanvas extends Canvas implements Runnable {
+    
+    /** The number of nanoseconds in a second. */
+    private static final long NANOS = 1_000_000_000L;
+    
+    /** The number of buffers flipped between. */
+    private static final int BUFFERS = 2;
+    
+    /** The font for the game over and pause messages. */
+    private static final Font FONT = new Font(null, Font.BOLD, 24);
+    
+    /** The font for the frame and tick rates. */
+    private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    
+    /** The stroke for the border. */
+    private static final Stroke BORDER_STROKE =
+        new BasicStroke(GameBoardPanel.DEFAULT_BORDER);
+    
+    /** The stroke for block outlines. */
+    private static final Stroke BLOCK_STROKE = new BasicStroke(1);
+    
+    /** The kinds of blocks, indexed by ordinal. */
+    private static final Block[] BLOCKS = Block.values();
+    
+    /** The time between frames in nanoseconds, or 0 to draw as fast as possible. */
+    private final long myFramePeriod;
+    
+    /** Measures the frames drawn. */
+    private final RateMeter myFrames;
+    
+    /** Measures the game ticks, shown next to the frame rate. */
+    private final RateMeter myTicks;
+    
+    /** The snapshot to draw. */
+    private volatile BoardSnapshot mySnapshot;
+    
+    /** Whether the game is shown as over. */
+    private volatile boolean myOver;
+    
+    /** Whether the game is shown as paused. */
+    private volatile boolean myPause;
+    
+    /** The drawing thread, or null when the canvas is not displayed. */
+    private volatile Thread myThread;
+    
+    /** The frozen blocks drawn at the current block size. Used only by the drawing thread. */
+    private BufferedImage myFrozenImage;
+    
+    /** The version of the frozen blocks in the image. */
+    private int myImageVersion;
+    
+    /**
+     * Creates the canvas.
+     * 
+     * @param theFrameRate The most frames to draw per second, or 0 for no limit.
+     * @param theTicks Measures the game ticks, so their rate can be shown.
+     */
+    public ActiveBoardCanvas(final int theFrameRate, final RateMeter theTicks) {
+        super();
+        if (theFrameRate < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (theFrameRate == 0) {
+            myFramePeriod = 0;
+        } else {
+            myFramePeriod = NANOS / theFrameRate;
+        }
+        myFrames = new RateMeter();
+        myTicks = theTicks;
+        setIgnoreRepaint(true);
+        setFocusable(false);
+        setBackground(GameBoardPanel.DEFAULT_BACKGROUND);
+    }
+    
+    /**
+     * Sets the snapshot to draw from the next frame on.
+     * 
+     * @param theSnapshot The snapshot.
+     */
+    public void setSnapshot(final BoardSnapshot theSnapshot) {
+        mySnapshot = theSnapshot;
+    }
+    
+    /**
+     * Sets whether the game is shown as over.
+     * 
+     * @param theBool True if the game is over.
+     */
+    public void setOver(final boolean theBool) {
+        myOver = theBool;
+    }
+    
+    /**
+     * Sets whether the game is shown as paused.
+     * 
+     * @param theBool True if the game is paused.
+     */
+    public void setPause(final boolean theBool) {
+        myPause = theBool;
+    }
+    
+    /**
+     * @return The number of frames drawn per second.
+     */
+    public double getFrameRate() {
+        return myFrames.getRate();
+    }
+    
+    /**
+     * Starts drawing once the canvas can be displayed.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(BUFFERS);
+        final Thread thread = new Thread(this, "Tetris renderer");
+        thread.setDaemon(true);
+        myThread = thread;
+        thread.start();
+    }
+    
+    /**
+     * Stops drawing before the canvas stops being displayable.
+     */
+    @Override
+    public void removeNotify() {
+        final Thread thread = myThread;
+        myThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.removeNotify();
+    }
+    
+    /**
+     * Draws frames until the canvas stops being displayed.
+     */
+    @Override
+    public void run() {
+        final BufferStrategy strategy = getBufferStrategy();
+        long next = System.nanoTime();
+        while (myThread == Thread.currentThread()) {
+            render(strategy);
+            myFrames.record();
+            if (myFramePeriod > 0) {
+                next += myFramePeriod;
+                final long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    // running late; don't try to catch up on missed frames
+                    next = System.nanoTime();
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+    
+    /**
+     * Draws one frame and shows it.
+     * 
+     * @param theStrategy The buffers to draw into.
+     */
+    private void render(final BufferStrategy theStrategy) {
+        do {
+            do {
+                final Graphics2D graphics = (Graphics2D) theStrategy.getDrawGraphics();
+                try {
+                    draw(graphics);
+                } finally {
+                    graphics.dispose();
+                }
+            } while (theStrategy.contentsRestored());
+            theStrategy.show();
+        } while (theStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+    
+    /**
+     * Draws the board, the current piece and any messages.
+     * 
+     * @param theGraphics The graphics to draw with.
+     */
+    private void draw(final Graphics2D theGraphics) {
+        final int width = getWidth();
+        final int height = getHeight();
+        theGraphics.setColor(getBackground());
+        theGraphics.fillRect(0, 0, width, height);
+        theGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                     RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        final BoardSnapshot snapshot = mySnapshot;
+        if (snapshot != null) {
+            final int blockSize = (width - 2 * GameBoardPanel.DEFAULT_BORDER)
+                                  / snapshot.getWidth();
+            if (blockSize > 0) {
+                drawFrozen(theGraphics, snapshot, blockSize, height);
+                if (snapshot.getShape() >= 0 && !snapshot.isGameOver()) {
+                    drawPiece(theGraphics, snapshot, blockSize, height);
+                }
+            }
+        }
+        
+        theGraphics.setStroke(BORDER_STROKE);
+        theGraphics.setColor(Color.LIGHT_GRAY);
+        theGraphics.drawRect(1, 1, width - 2, height - 2);
+        
+        theGraphics.setColor(Color.BLACK);
+        theGraphics.setFont(STATS_FONT);
+        theGraphics.drawString(String.format("%.0f fps %.1f tps", myFrames.getRate(),
+                                             myTicks.getRate()),
+                               2 * GameBoardPanel.DEFAULT_BORDER,
+                               2 * GameBoardPanel.DEFAULT_BORDER + STATS_FONT.getSize());
+        if (myOver) {
+            drawMessage(theGraphics, "YOU LOOSE");
+        } else if (myPause) {
+            drawMessage(theGraphics, "Take your time...");
+        }
+    }
+    
+    /**
+     * Draws the frozen blocks, from an image that is redrawn only when they change.
+     * 
+     * @param theGraphics The graphics to draw with.
+     * @param theSnapshot The snapshot being drawn.
+     * @param theBlockSize The size of a block in pixels.
+     * @param theHeight The height of the canvas.
+     */
+    private void drawFrozen(final Graphics2D theGraphics, final BoardSnapshot theSnapshot,
+                            final int theBlockSize, final int theHeight) {
+        final int rows = theSnapshot.getRows();
+        final int imageWidth = theSnapshot.getWidth() * theBlockSize + 1;
+        final int imageHeight = rows * theBlockSize + 1;
+        final boolean resized = myFrozenImage == null || myFrozenImage.getWidth() != imageWidth
+                                || myFrozenImage.getHeight() != imageHeight;
+        
+        if (resized || myImageVersion != theSnapshot.getFrozenVersion()) {
+            if (resized) {
+                myFrozenImage = new BufferedImage(imageWidth, imageHeight,
+                                                  BufferedImage.TYPE_INT_ARGB);
+            }
+            myImageVersion = theSnapshot.getFrozenVersion();
+            
+            final Graphics2D graphics = myFrozenImage.createGraphics();
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(0, 0, myFrozenImage.getWidth(), myFrozenImage.getHeight());
+            graphics.setComposite(AlphaComposite.SrcOver);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                      RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setStroke(BLOCK_STROKE);
+            for (int yAxis = 0; yAxis < rows; yAxis++) {
+                for (int xAxis = 0; xAxis < theSnapshot.getWidth(); xAxis++) {
+                    final Block block = theSnapshot.getBlock(xAxis, yAxis);
+                    if (block != Block.EMPTY) {
+                        final int x = xAxis * theBlockSize;
+                        final int y = (rows - 1 - yAxis) * theBlockSize;
+                        graphics.setColor(BlockPalette.getColor(block));
+                        graphics.fillRect(x, y, theBlockSize, theBlockSize);
+                        graphics.setColor(Color.BLACK);
+                        graphics.drawRect(x, y, theBlockSize, theBlockSize);
+                    }
+                }
+            }
+            graphics.dispose();
+        }
+        theGraphics.drawImage(myFrozenImage, GameBoardPanel.DEFAULT_BORDER,
+                              theHeight - GameBoardPanel.DEFAULT_BORDER
+                              - rows * theBlockSize, null);
+    }
+    
+    /**
+     * Draws the current piece and outlines where it would land.
+     * 
+     * @param theGraphics The graphics to draw with.
+     * @param theSnapshot The snapshot being drawn.
+     * @param theBlockSize The size of a block in pixels.
+     * @param theHeight The height of the canvas.
+     */
+    private void drawPiece(final Graphics2D theGraphics, final BoardSnapshot theSnapshot,
+                           final int theBlockSize, final int theHeight) {
+        final int shape = theSnapshot.getShape();
+        final Color color = BlockPalette.getColor(BLOCKS[PieceShapes.type(shape)]);
+        final int drop = theSnapshot.getDropDistance();
+        
+        theGraphics.setStroke(BLOCK_STROKE);
+        if (drop > 0) {
+            theGraphics.setColor(color);
+            for (int i = 0; i < PieceShapes.BLOCKS; i++) {
+                theGraphics.drawRect(blockX(theSnapshot, i, theBlockSize),
+                                     blockY(theSnapshot, i, theBlockSize, theHeight)
+                                     + drop * theBlockSize,
+                                     theBlockSize, theBlockSize);
+            }
+        }
+        for (int i = 0; i < PieceShapes.BLOCKS; i++) {
+            final int x = blockX(theSnapshot, i, theBlockSize);
+            final int y = blockY(theSnapshot, i, theBlockSize, theHeight);
+            // doesn't draw clipped pieces
+            if (y > GameBoardPanel.DEFAULT_BORDER - theBlockSize) {
+                theGraphics.setColor(color);
+                theGraphics.fillRect(x, y, theBlockSize, theBlockSize);
+                theGraphics.setColor(Color.GRAY);
+                theGraphics.drawRect(x, y, theBlockSize, theBlockSize);
+            }
+        }
+    }
+    
+    /**
+     * @param theSnapshot The snapshot being drawn.
+     * @param theBlock The index of a block of the current piece.
+     * @param theBlockSize The size of a block in pixels.
+     * @return The x-coordinate of the left of the block on the canvas.
+     */
+    private static int blockX(final BoardSnapshot theSnapshot, final int theBlock,
+                              final int theBlockSize) {
+        return (theSnapshot.getX() + PieceShapes.cellX(theSnapshot.getShape(), theBlock))
+               * theBlockSize + GameBoardPanel.DEFAULT_BORDER;
+    }
+    
+    /**
+     * @param theSnapshot The snapshot being drawn.
+     * @param theBlock The index of a block of the current piece.
+     * @param theBlockSize The size of a block in pixels.
+     * @param theHeight The height of the canvas.
+     * @return The y-coordinate of the top of the block on the canvas.
+     */
+    private static int blockY(final BoardSnapshot theSnapshot, final int theBlock,
+                              final int theBlockSize, final int theHeight) {
+        final int row = theSnapshot.getY() + PieceShapes.cellY(theSnapshot.getShape(), theBlock);
+        return theHeight - GameBoardPanel.DEFAULT_BORDER - (row + 1) * theBlockSize;
+    }
+    
+    /**
+     * Draws a message in the middle of the canvas.
+     * 
+     * @param theGraphics The graphics to draw with.
+     * @param theMessage The message.
+     */
+    private void drawMessage(final Graphics2D theGraphics, final String theMessage) {
+        theGraphics.setFont(FONT);
+        final Rectangle2D bounds = FONT.getStringBounds(theMessage,
+                                                        theGraphics.getFontRenderContext());
+        theGraphics.drawString(theMessage, getWidth() / 2 - (int) bounds.getWidth() / 2,
+                               getHeight() / 2);
+    }
+}
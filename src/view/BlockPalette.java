@@ -0,0 +1,44 @@
+/* TCSS 305 - Project Tetris */
+package view;
+
+import java.awt.Color;
+
+import model.Block;
+
+/**
+ * The colors used to draw each type of Block.
+ * 
+ * @author Robbie Nichols eibbor08@uw.edu
+ * @version Autumn 2014
+ */
+public final class BlockPalette {
+    
+    /** The color of each Block, indexed by ordinal. */
+    private static final Color[] COLORS = {
+        Color.BLACK,    // EMPTY
+        Color.CYAN,     // I
+        Color.BLUE,     // J
+        Color.ORANGE,   // L
+        Color.YELLOW,   // O
+        Color.GREEN,    // S
+        Color.MAGENTA,  // T
+        Color.RED       // Z
+    };
+    
+    /**
+     * Constructs BlockPalette.
+     */
+    private BlockPalette() {
+        throw new IllegalStateException();
+    }
+    
+    /**
+     * Returns the Color used to draw a Block.
+     * 
+     * @param theBlock The Block.
+     * @return The Color of the Block.
+     */
+    public static Color getColor(final Block theBlock) {
+        return COLORS[theBlock.ordinal()];
+    }
+}
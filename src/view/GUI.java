@@ -3,8 +3,8 @@ package view;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.FlowLayout;
-import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.FocusEvent;
@@ -13,18 +13,23 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.swing.AbstractAction;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
-import javax.swing.Timer;
 
-import model.Block;
+import model.Action;
 import model.Board;
-import model.Piece;
+import model.BoardAdapter;
+import model.BoardEvent;
+import model.BoardSnapshot;
+import model.Bot;
+import model.GameThread;
+import model.Gravity;
+import model.ReplayWriter;
 
 /**
  * The GUI that contains and organizes all the visual and action components.
@@ -33,16 +38,13 @@ import model.Piece;
  * @version Autumn 2014
  *
  */
-public class GUI implements Observer, KeyListener {
+public class GUI implements PropertyChangeListener, KeyListener {
     
     /** Default grid size for a game of Tetris. */
     protected static final Dimension DEFAULT_GRID = new Dimension(10, 20);
     
-    /** Default timer interval. */
-    private static final int DEFAULT_TIMER = 750;
-    
-    /** Default timer decrement. */
-    private static final int DEFAULT_TIMER_DEC = 100;
+    /** Default starting gravity level. */
+    private static final int DEFAULT_LEVEL = 2;
 
     /** Minimum size the game can be shrunk to. */
     private static final Dimension MIN_SIZE = new Dimension(420, 480);
@@ -50,18 +52,27 @@ public class GUI implements Observer, KeyListener {
     /** The game board display. */
     private final GameBoardPanel myGameBoard;
     
+    /** The game board display drawn on its own thread, or null if Swing draws the board. */
+    private final ActiveBoardCanvas myCanvas;
+    
     /** The preview panel. */
     private final PreviewPanel myPreviewPanel;
     
-    /** The game timer. */
-    private final Timer myGameTimer;
+    /** Runs the game on its own thread. */
+    private final GameThread myEngine;
+    
+    /** Set while a display update is waiting to run on the event dispatch thread. */
+    private final AtomicBoolean myUpdatePending;
+    
+    /** Updates the Swing display from the latest snapshot. */
+    private final Runnable myUpdate;
+    
+    /** Records the games played, or null. */
+    private final ReplayWriter myRecorder;
     
     /** The JFrame container for all other components. */
     private final JFrame myFrame;
     
-    /** The actual game board from the model package. */
-    private final Board myBoard;
-    
     /** Displays and tallies the current score. */
     private final ScorePanel myScorePanel;
     
@@ -71,20 +82,92 @@ public class GUI implements Observer, KeyListener {
     /** Boolean indicating whether or not the game is paused. */
     private boolean myIsPaused;
     
-    /** The current timer decrement for level changes. */
-    private int myCurrentDec;
+    /** The gravity level a game starts on. */
+    private int myStartLevel;
+    
+    /** The gravity levels gained each time a level's worth of lines is cleared. */
+    private int myLevelStep;
+
+    /**
+     * The number of the first game the score panel counts; line clears of
+     * earlier games that arrive late are dropped.
+     */
+    private int myScoredGame;
     
     /** GUI constructor. */
     public GUI() {
-        myBoard = new Board(); //default constructor
+        this(false, 0);
+    }
+
+    /**
+     * GUI constructor.
+     * 
+     * @param theActive True to draw the board on its own thread rather than through Swing.
+     * @param theFrameRate The most frames per second to draw the board on its own
+     *        thread, or 0 for no limit.
+     */
+    public GUI(final boolean theActive, final int theFrameRate) {
+        this(theActive, theFrameRate, null);
+    }
+
+    /**
+     * GUI constructor.
+     * 
+     * @param theActive True to draw the board on its own thread rather than through Swing.
+     * @param theFrameRate The most frames per second to draw the board on its own
+     *        thread, or 0 for no limit.
+     * @param theRecorder Records every game played, or null. It is closed when the
+     *        window closes.
+     */
+    public GUI(final boolean theActive, final int theFrameRate,
+               final ReplayWriter theRecorder) {
+        this(theActive, theFrameRate, theRecorder, null);
+    }
+
+    /**
+     * GUI constructor.
+     * 
+     * @param theActive True to draw the board on its own thread rather than through Swing.
+     * @param theFrameRate The most frames per second to draw the board on its own
+     *        thread, or 0 for no limit.
+     * @param theRecorder Records every game played, or null. It is closed when the
+     *        window closes.
+     * @param theBot Plays every game in place of the player, or null.
+     */
+    public GUI(final boolean theActive, final int theFrameRate,
+               final ReplayWriter theRecorder, final Bot theBot) {
+        final Board board = new Board(); //default constructor
+        board.addBoardListener(new BoardEvents(), BoardEvent.LINES_CLEARED,
+                               BoardEvent.GAME_OVER);
         myGameBoard = new GameBoardPanel();
         myPreviewPanel = new PreviewPanel();
         myScorePanel = new ScorePanel();
-        myGameTimer = new Timer(DEFAULT_TIMER, new TimerAction());
+        myUpdatePending = new AtomicBoolean();
+        myUpdate = new Runnable() {
+            @Override
+            public void run() {
+                myUpdatePending.set(false);
+                refresh();
+            }
+        };
+        myRecorder = theRecorder;
+        myEngine = new GameThread(board, Gravity.forLevel(DEFAULT_LEVEL), new Runnable() {
+            @Override
+            public void run() {
+                publish();
+            }
+        }, theRecorder);
+        myEngine.setBot(theBot);
+        if (theActive) {
+            myCanvas = new ActiveBoardCanvas(theFrameRate, myEngine.getTickMeter());
+        } else {
+            myCanvas = null;
+        }
         myFrame = new JFrame("Tetris: Autumn 2014");
         myMenu = new MenuBar(myFrame);
         myIsPaused = false;     
-        myCurrentDec = DEFAULT_TIMER_DEC;
+        myStartLevel = DEFAULT_LEVEL;
+        myLevelStep = 1;
         setup();
     }
 
@@ -102,10 +185,13 @@ public class GUI implements Observer, KeyListener {
 
         myFrame.setLayout(new FlowLayout());
         myFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        myFrame.add(myGameBoard);        
+        if (myCanvas == null) {
+            myFrame.add(myGameBoard);        
+        } else {
+            myFrame.add(myCanvas);
+        }
         myFrame.add(sidePanel);
         myFrame.addKeyListener(this);
-        myGameTimer.start();    
         
         final FocusListener focus = new FocusListener() {
             @Override
@@ -124,69 +210,132 @@ public class GUI implements Observer, KeyListener {
             @Override
             public void componentResized(final ComponentEvent theEvent) {
                 final Dimension temp = myFrame.getSize();
-                myGameBoard.resizeTetrisBoard(temp.width, temp.height);    
+                resizeBoard(temp.width, temp.height);    
             }
         };
         final WindowAdapter windowAdapter = new WindowAdapter() {
             @Override
             public void windowStateChanged(final WindowEvent theEvent) {
                 final Dimension temp = myFrame.getSize();
-                myGameBoard.resizeTetrisBoard(temp.width, temp.height);
+                resizeBoard(temp.width, temp.height);
+            }
+            @Override
+            public void windowClosing(final WindowEvent theEvent) {
+                closeRecorder();
             }
         };
         myFrame.addFocusListener(focus);
         myFrame.addWindowStateListener(windowAdapter);
+        myFrame.addWindowListener(windowAdapter);
         myFrame.addComponentListener(componentAdapter);
-        myBoard.addObserver(this);     
-        myMenu.addObserver(this);
+        refresh();
+        if (myCanvas != null) {
+            myCanvas.setSnapshot(myEngine.getSnapshot());
+        }
+        myEngine.start();
+        myMenu.addPropertyChangeListener(this);
         final Dimension temp = myFrame.getSize();
-        myGameBoard.resizeTetrisBoard(temp.width, temp.height);
+        resizeBoard(temp.width, temp.height);
         
         myFrame.pack();     
         myFrame.setVisible(true);
     }
 
     /**
-     * Updates the GUI when the Observable (the model package) dispatches an Observable 
-     * object.
+     * Stops the game and writes out the games recorded, if any.
+     */
+    private void closeRecorder() {
+        if (myRecorder != null) {
+            try {
+                myEngine.stop();
+                myRecorder.close();
+            } catch (final InterruptedException | IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Updates the GUI when the menu bar ends or starts a game or changes the
+     * game mode.
      * 
-     * @param theObservable The Observable received from the model package.
-     * @param theObject The Object received from the model package.
+     * @param theEvent The change received from the menu bar.
      */
     @Override
-    public void update(final Observable theObservable, final Object theObject) {
-        if ("MenuBar".equals(theObservable.getClass().getSimpleName())) {
-            if ("java.lang.Boolean".equals(theObject.getClass().getTypeName())) {
-                menuUpdate((boolean) theObject);
-            } else if ("java.lang.Integer".equals(theObject.getClass().getTypeName())) {
-                modeUpdate((int) theObject);
-            }
-            
+    public void propertyChange(final PropertyChangeEvent theEvent) {
+        if (MenuBar.GAME_ENDED.equals(theEvent.getPropertyName())) {
+            menuUpdate((boolean) theEvent.getNewValue());
+        } else if (MenuBar.GAME_MODE.equals(theEvent.getPropertyName())) {
+            modeUpdate((int) theEvent.getNewValue());
         }
-        if (myBoard.isGameOver()) {
-            myGameBoard.displayOver(true);
-            myGameTimer.stop();
-        } else if (!myMenu.isGameEnded()) {
-            if (!myGameTimer.isRunning()) {
-                myGameBoard.displayOver(false);
-            }
-            myPreviewPanel.setPreview(myBoard.getNextPiece());
-            myPreviewPanel.repaint();
-            
-            if (myBoard.getCurrentPiece() != null) {
-                final Piece newPiece = myBoard.getCurrentPiece();
-                myGameBoard.setCurrentPiece(newPiece);                
-            }
+    }
 
-            if (myBoard.getFrozenBlocks() != null) {
-                final List<Block[]> newFrozen = myBoard.getFrozenBlocks();
-                myGameBoard.setFrozen(newFrozen);
-                myScorePanel.setFrozen(newFrozen);
-                myGameBoard.repaint();
+    /**
+     * Shows the latest snapshot of the board's pieces and frozen blocks.
+     */
+    private void refresh() {
+        if (!myMenu.isGameEnded()) {
+            final BoardSnapshot snapshot = myEngine.getSnapshot();
+            if (myPreviewPanel.getPreview() != snapshot.getNextShape()) {
+                myPreviewPanel.setPreview(snapshot.getNextShape());
+                myPreviewPanel.repaint();
             }
+            myGameBoard.setSnapshot(snapshot);
+            myGameBoard.repaint();
+        }
+    }
+    
+    /**
+     * Passes a newly published snapshot on to the displays. Called on the engine
+     * thread; the Swing display is updated on the event dispatch thread, once
+     * however many snapshots arrive before it gets there.
+     */
+    private void publish() {
+        if (myCanvas != null) {
+            myCanvas.setSnapshot(myEngine.getSnapshot());
+        }
+        if (myUpdatePending.compareAndSet(false, true)) {
+            EventQueue.invokeLater(myUpdate);
+        }
+    }
+    
+    /**
+     * Shows or hides the game over message.
+     * 
+     * @param theOver True if the game is over.
+     */
+    private void showOver(final boolean theOver) {
+        myGameBoard.setOver(theOver);
+        if (myCanvas != null) {
+            myCanvas.setOver(theOver);
+        }
+    }
+    
+    /**
+     * Shows or hides the pause message.
+     * 
+     * @param thePause True if the game is paused.
+     */
+    private void showPause(final boolean thePause) {
+        myGameBoard.setPause(thePause);
+        if (myCanvas != null) {
+            myCanvas.setPause(thePause);
+        }
+    }
+    
+    /**
+     * Resizes the game board display to fit the window.
+     * 
+     * @param theWidth The width of the window.
+     * @param theHeight The height of the window.
+     */
+    private void resizeBoard(final int theWidth, final int theHeight) {
+        myGameBoard.resizeTetrisBoard(theWidth, theHeight);
+        if (myCanvas != null) {
+            myCanvas.setPreferredSize(myGameBoard.getPreferredSize());
+            myCanvas.setSize(myGameBoard.getPreferredSize());
+            myFrame.validate();
         }
-        myScorePanel.tallyLineClear();
-        accelerateTimer();
     }
     
     /**
@@ -195,18 +344,19 @@ public class GUI implements Observer, KeyListener {
      * @param theMode Int representing the game mode.
      */
     private void modeUpdate(final int theMode) {
-        final int easy = 1000;
-        final int killer = 300;
+        final int easy = 1;
+        final int killer = 6;
         if (MenuBar.GAME_PEACEFUL == theMode) {
-            myGameTimer.setDelay(easy);
-            myCurrentDec = 0;
+            myStartLevel = easy;
+            myLevelStep = 0;
         } else if (MenuBar.GAME_NORMAL == theMode) {
-            myGameTimer.setDelay(DEFAULT_TIMER);
-            myCurrentDec = DEFAULT_TIMER_DEC;
+            myStartLevel = DEFAULT_LEVEL;
+            myLevelStep = 1;
         } else if (MenuBar.GAME_HARD == theMode) {
-            myGameTimer.setDelay(killer);
-            myCurrentDec = DEFAULT_TIMER_DEC;
+            myStartLevel = killer;
+            myLevelStep = 1;
         }
+        accelerateTimer();
     }
     
     /**
@@ -216,28 +366,27 @@ public class GUI implements Observer, KeyListener {
      */
     private void menuUpdate(final boolean theOver) {
         if (theOver) {
-            myGameBoard.setOver(true);
-            myGameTimer.stop();
+            showOver(true);
+            myEngine.setPaused(true);
         } else if (!theOver) {
-            myBoard.newGame(DEFAULT_GRID.width, DEFAULT_GRID.height, null);
-            myGameBoard.setOver(false);
+            myEngine.setGravity(Gravity.forLevel(myStartLevel));
+            myScoredGame = myEngine.getGames() + 1;
+            myEngine.newGame();
+            showOver(false);
             myScorePanel.reset();
-            myGameTimer.setDelay(DEFAULT_TIMER);
-            if (myIsPaused) {
-                togglePause();
-            }
+            myIsPaused = false;
+            showPause(false);
+            myEngine.setPaused(false);
         }
     }
     
-    /** Increases the game timer based on the number of lines cleared.  */
+    /**
+     * Increases the gravity based on the number of lines cleared. Past the
+     * end of the gravity curve pieces drop to their landing row at once.
+     */
     private void accelerateTimer() {
         final int lines = myScorePanel.getLinesCleared() / (int) DEFAULT_GRID.getHeight();
-        if (lines > 0) {
-            final int newDelay = DEFAULT_TIMER - (lines * myCurrentDec);
-            if (newDelay > 0) {
-                myGameTimer.setDelay(newDelay);
-            }
-        }
+        myEngine.setGravity(Gravity.forLevel(myStartLevel + lines * myLevelStep));
     }
 
     @Override
@@ -249,15 +398,15 @@ public class GUI implements Observer, KeyListener {
                 togglePause();
             } else if (!myIsPaused) {
                 if ("a".equalsIgnoreCase(key)) {
-                    myBoard.moveLeft();
+                    myEngine.offer(Action.LEFT);
                 } else if ("d".equalsIgnoreCase(key)) {
-                    myBoard.moveRight();
+                    myEngine.offer(Action.RIGHT);
                 } else if ("s".equalsIgnoreCase(key)) {
-                    myBoard.moveDown();
+                    myEngine.offer(Action.DOWN);
                 } else if ("w".equalsIgnoreCase(key)) {
-                    myBoard.hardDrop();
+                    myEngine.offer(Action.HARD_DROP);
                 } else if (" ".equalsIgnoreCase(key)) {
-                    myBoard.rotateCW();
+                    myEngine.offer(Action.ROTATE_CW);
                 }
             }
         }
@@ -268,15 +417,9 @@ public class GUI implements Observer, KeyListener {
      * game is unpaused, this method pauses it.
      */
     private void togglePause() {
-        if (myGameTimer.isRunning()) {
-            myGameTimer.stop();
-            myIsPaused = true;
-            myGameBoard.setPause(true);
-        } else {
-            myGameTimer.start();
-            myIsPaused = false;
-            myGameBoard.setPause(false);
-        }
+        myIsPaused = !myIsPaused;
+        myEngine.setPaused(myIsPaused);
+        showPause(myIsPaused);
     }
 
     /**
@@ -298,16 +441,40 @@ public class GUI implements Observer, KeyListener {
     }
     
     /**
-     * Action class for each time the Timer dispatches an action.
+     * Scores line clears and ends the game. The board calls these methods on
+     * the engine thread, so they hand the work to the event dispatch thread,
+     * tagged with the game they came from so that events of a game already
+     * replaced by a new one are dropped.
      * @author Robbie Nichols
      * @version Autumn 2014
      */
-    @SuppressWarnings("serial")
-    private class TimerAction extends AbstractAction {
+    private class BoardEvents extends BoardAdapter {
 
         @Override
-        public void actionPerformed(final ActionEvent theEvent) {
-            myBoard.step();            
+        public void linesCleared(final int theCount, final int[] theRows) {
+            final int game = myEngine.getGames();
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (game >= myScoredGame) {
+                        myScorePanel.tallyLineClear(theCount);
+                        accelerateTimer();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void gameOver() {
+            final int game = myEngine.getGames();
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (game >= myScoredGame) {
+                        showOver(true);
+                    }
+                }
+            });
         }
     }
 }
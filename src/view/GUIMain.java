@@ -2,7 +2,13 @@
 package view;
 
 import java.awt.EventQueue;
+import java.io.IOException;
+import java.nio.file.Paths;
 
+import model.BeamBot;
+import model.Bot;
+import model.MctsBot;
+import model.ReplayWriter;
 
 /**
  * Main method to launch the GUI.
@@ -12,6 +18,21 @@ import java.awt.EventQueue;
  *
  */
 public final class GUIMain {
+    /** The argument that turns on drawing the board on its own thread. */
+    private static final String ACTIVE = "-active";
+    
+    /** The argument that records every game played to a file. */
+    private static final String RECORD = "-record";
+    
+    /** The argument that lets a bot play every game. */
+    private static final String BOT = "-bot";
+    
+    /** The argument after -bot that picks the Monte Carlo tree search bot. */
+    private static final String MCTS = "mcts";
+    
+    /** The default frame rate cap when the board is drawn on its own thread. */
+    private static final int DEFAULT_FRAME_RATE = 60;
+    
     /**
      * Constructs GUIMain.
      */
@@ -21,14 +42,46 @@ public final class GUIMain {
     /**
      * Launches the Tetris GUI.
      * 
-     * @param theArgs The foobargs.
+     * @param theArgs The foobargs. "-active" draws the board on its own thread, and may
+     *        be followed by the most frames to draw per second, 0 meaning no limit.
+     *        "-record" followed by a file name records every game played to the file.
+     *        "-bot" lets a bot play every game, the beam search bot unless followed
+     *        by "mcts" for the Monte Carlo tree search bot.
+     * @throws IOException if the recording file can't be created
      */
-    public static void main(final String[] theArgs) {
+    public static void main(final String[] theArgs) throws IOException {
+        boolean isActive = false;
+        int frameRate = DEFAULT_FRAME_RATE;
+        ReplayWriter writer = null;
+        Bot player = null;
+        for (int i = 0; i < theArgs.length; i++) {
+            if (ACTIVE.equals(theArgs[i])) {
+                isActive = true;
+                if (i + 1 < theArgs.length && theArgs[i + 1].matches("\\d+")) {
+                    i++;
+                    frameRate = Integer.parseInt(theArgs[i]);
+                }
+            } else if (RECORD.equals(theArgs[i]) && i + 1 < theArgs.length) {
+                i++;
+                writer = new ReplayWriter(Paths.get(theArgs[i]));
+            } else if (BOT.equals(theArgs[i])) {
+                if (i + 1 < theArgs.length && MCTS.equals(theArgs[i + 1])) {
+                    i++;
+                    player = new MctsBot();
+                } else {
+                    player = new BeamBot();
+                }
+            }
+        }
+        final boolean active = isActive;
+        final int rate = frameRate;
+        final ReplayWriter recorder = writer;
+        final Bot bot = player;
 
         EventQueue.invokeLater(new Runnable() {
             @Override
             public void run() {
-                new GUI();
+                new GUI(active, rate, recorder, bot);
             }
         });
         
@@ -1,6 +1,7 @@
 /* TCSS 305 - Project Tetris */
 package view;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -8,14 +9,16 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 
 import javax.swing.JPanel;
 
-import model.AbstractPiece;
 import model.Block;
-import model.Piece;
+import model.BoardSnapshot;
+import model.PieceShapes;
 
 
 /**
@@ -40,15 +43,36 @@ public class GameBoardPanel extends JPanel {
     /** Stroke size of the border. */
     protected static final int DEFAULT_BORDER = 4;
     
-    /** List of frozen blocks to paint. */
-    private List<Block[]> myFrozen;
+    /** The font for the game over and pause messages. */
+    private static final Font FONT = new Font(null, Font.BOLD, 24);
+    
+    /** The stroke for the border. */
+    private static final Stroke BORDER_STROKE = new BasicStroke(DEFAULT_BORDER);
+    
+    /** The stroke for block outlines. */
+    private static final Stroke BLOCK_STROKE = new BasicStroke(1);
+    
+    /** The kinds of blocks, indexed by ordinal. */
+    private static final Block[] BLOCKS = Block.values();
+    
+    /** The snapshot of the board to paint. */
+    private BoardSnapshot mySnapshot;
+    
+    /** The frozen blocks drawn at the current block size, row 0 at the bottom. */
+    private BufferedImage myFrozenImage;
+    
+    /** The number of rows of blocks the cached image holds. */
+    private int myImageRows;
+    
+    /** The block size the cached image was drawn at. */
+    private int myImageBlockSize;
+    
+    /** The rows whose frozen blocks have changed since the image was drawn. */
+    private final BitSet myDirtyRows;
     
     /** Current block size. */
     private int myBlockSize;
     
-    /** Current piece in play. */
-    private Piece myPiece;
-    
     /** Boolean indicating if the game has ended. True if the game is over, otherwise false. */
     private boolean myOver;
     
@@ -60,6 +84,7 @@ public class GameBoardPanel extends JPanel {
         super(true);
         myOver = false;
         myPause = false;
+        myDirtyRows = new BitSet();
         setup();
     }
     
@@ -85,16 +110,16 @@ public class GameBoardPanel extends JPanel {
     public void paintComponent(final Graphics theGraphics) {       
         super.paintComponent(theGraphics);
         final Graphics2D graphics2d = (Graphics2D) theGraphics;
-        final int fontSize = 24;
-        final Font font = new Font(null, Font.BOLD, fontSize);     
+        final Font font = FONT;
         graphics2d.setFont(font);
         graphics2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                                      RenderingHints.VALUE_ANTIALIAS_ON);
         
-        if (myPiece != null) {
+        if (mySnapshot != null && mySnapshot.getShape() >= 0) {
+            drawGhost(graphics2d);
             drawPiece(graphics2d);
         }        
-        if (myFrozen != null) {
+        if (mySnapshot != null) {
             drawFrozen(graphics2d);
         }
         drawBorder(graphics2d);
@@ -129,7 +154,7 @@ public class GameBoardPanel extends JPanel {
      * @param theGraphics The graphics component to draw with.
      */
     private void drawBorder(final Graphics2D theGraphics) {
-        theGraphics.setStroke(new BasicStroke(DEFAULT_BORDER));
+        theGraphics.setStroke(BORDER_STROKE);
         theGraphics.setColor(Color.LIGHT_GRAY);
         theGraphics.drawRect(1, 1, this.getWidth() - 2, getHeight() - 2);
 
@@ -141,14 +166,15 @@ public class GameBoardPanel extends JPanel {
      * @param theGraphics The graphics component to draw with.
      */
     private void drawPiece(final Graphics2D theGraphics) {
-        final Color pieceColor = ((AbstractPiece) myPiece).getBlock().getColor();
+        final int shape = mySnapshot.getShape();
+        final Color pieceColor = BlockPalette.getColor(BLOCKS[PieceShapes.type(shape)]);
         
-        theGraphics.setStroke(new BasicStroke(1));
-        final int[][] coords = ((AbstractPiece) myPiece).getBoardCoordinates();
-        for (int i = 0; i < coords.length; i++) {
-            final int x = coords[i][0] * myBlockSize + DEFAULT_BORDER;
+        theGraphics.setStroke(BLOCK_STROKE);
+        for (int i = 0; i < PieceShapes.BLOCKS; i++) {
+            final int x = (mySnapshot.getX() + PieceShapes.cellX(shape, i)) * myBlockSize
+                          + DEFAULT_BORDER;
             final int y = this.getPreferredSize().height - DEFAULT_BORDER 
-                                            - (coords[i][1] + 1) * myBlockSize;
+                          - (mySnapshot.getY() + PieceShapes.cellY(shape, i) + 1) * myBlockSize;
             // doesn't draw clipped pieces
             if (y > DEFAULT_BORDER - myBlockSize) {
                 theGraphics.setColor(pieceColor);
@@ -160,48 +186,136 @@ public class GameBoardPanel extends JPanel {
     }
 
     /**
-     * Draws the frozen blocks.
+     * Outlines where the current piece would land if it were dropped.
+     * 
+     * @param theGraphics The graphics component to draw with.
+     */
+    private void drawGhost(final Graphics2D theGraphics) {
+        final int drop = mySnapshot.getDropDistance();
+        if (drop > 0) {
+            final int shape = mySnapshot.getShape();
+            
+            theGraphics.setStroke(BLOCK_STROKE);
+            theGraphics.setColor(BlockPalette.getColor(BLOCKS[PieceShapes.type(shape)]));
+            for (int i = 0; i < PieceShapes.BLOCKS; i++) {
+                final int x = (mySnapshot.getX() + PieceShapes.cellX(shape, i)) * myBlockSize
+                              + DEFAULT_BORDER;
+                final int y = this.getPreferredSize().height - DEFAULT_BORDER 
+                              - (mySnapshot.getY() + PieceShapes.cellY(shape, i) - drop + 1)
+                              * myBlockSize;
+                theGraphics.drawRect(x, y, myBlockSize, myBlockSize);
+            }
+        }
+    }
+
+    /**
+     * Draws the frozen blocks. They are kept in a cached image, and only the
+     * rows that changed since the last paint are drawn again.
      * 
      * @param theGraphics The graphics component to draw with.
      */
     private void drawFrozen(final Graphics2D theGraphics) {
-        theGraphics.setStroke(new BasicStroke(1));
+        if (myFrozenImage == null || myImageBlockSize != myBlockSize
+            || myImageRows != mySnapshot.getRows()) {
+            myImageRows = mySnapshot.getRows();
+            myImageBlockSize = myBlockSize;
+            final int columns = mySnapshot.getWidth();
+            myFrozenImage = null;
+            if (columns > 0 && myBlockSize > 0) {
+                myFrozenImage = new BufferedImage(columns * myBlockSize + 1,
+                                                  myImageRows * myBlockSize + 1,
+                                                  BufferedImage.TYPE_INT_ARGB);
+            }
+            myDirtyRows.set(0, myImageRows);
+        }
+        if (myFrozenImage != null) {
+            if (!myDirtyRows.isEmpty()) {
+                redrawRows(myDirtyRows.nextSetBit(0),
+                           Math.min(myDirtyRows.length() - 1, myImageRows - 1));
+                myDirtyRows.clear();
+            }
+            theGraphics.drawImage(myFrozenImage, DEFAULT_BORDER, getHeight() - DEFAULT_BORDER
+                                  - myImageRows * myBlockSize, null);
+        }
+    }
+
+    /**
+     * Draws a range of rows of the cached image again. Block outlines overlap
+     * the rows next to them, so the rows on either side are drawn as well and
+     * the pixels shared with unchanged rows are left alone.
+     * 
+     * @param theLow The lowest changed row.
+     * @param theHigh The highest changed row.
+     */
+    private void redrawRows(final int theLow, final int theHigh) {
+        final int low = Math.max(theLow - 1, 0);
+        final int high = Math.min(theHigh + 1, myImageRows - 1);
+        final Graphics2D graphics = myFrozenImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        // clear between the top line of the row above and the bottom line of the row below,
+        // or to the edge of the image if there is no such row
+        int top = 0;
+        if (high < myImageRows - 1) {
+            top = rowTop(high) + 1;
+        }
+        int bottom = rowTop(low) + myBlockSize;
+        if (low == 0) {
+            bottom++;
+        }
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fillRect(0, top, myFrozenImage.getWidth(), bottom - top);
+        graphics.setComposite(AlphaComposite.SrcOver);
         
-        for (int yAxis = 0; yAxis < myFrozen.size(); yAxis++) {
-            final Block[] blocks = myFrozen.get(yAxis);
-            for (int xAxis = 0; xAxis < blocks.length; xAxis++) {
+        graphics.setStroke(BLOCK_STROKE);
+        for (int yAxis = low; yAxis <= high; yAxis++) {
+            for (int xAxis = 0; xAxis < mySnapshot.getWidth(); xAxis++) {
+                final Block block = mySnapshot.getBlock(xAxis, yAxis);
                 
-                if (blocks[xAxis] != Block.EMPTY) {
-                    final int x = xAxis * myBlockSize + DEFAULT_BORDER;
-                    final int y = getHeight() - DEFAULT_BORDER - (yAxis * myBlockSize)
-                                                    - myBlockSize;
+                if (block != Block.EMPTY) {
+                    final int x = xAxis * myBlockSize;
+                    final int y = rowTop(yAxis);
                     
-                    theGraphics.setColor(blocks[xAxis].getColor());
-                    theGraphics.fillRect(x, y, myBlockSize, myBlockSize);
-                    theGraphics.setColor(Color.BLACK);
-                    theGraphics.drawRect(x, y, myBlockSize, myBlockSize);
+                    graphics.setColor(BlockPalette.getColor(block));
+                    graphics.fillRect(x, y, myBlockSize, myBlockSize);
+                    graphics.setColor(Color.BLACK);
+                    graphics.drawRect(x, y, myBlockSize, myBlockSize);
                 }
             }
         }
+        graphics.dispose();
     }
-    
-    
+
     /**
-     * Draws the piece as it moves down the board.
-     * 
-     * @param thePiece The piece currently in play. 
+     * @param theRow A row of frozen blocks.
+     * @return The y-coordinate of the top of the row in the cached image.
      */
-    public void setCurrentPiece(final Piece thePiece) {
-        myPiece = thePiece;
+    private int rowTop(final int theRow) {
+        return (myImageRows - 1 - theRow) * myBlockSize;
     }
     
     /**
-     * Draws frozen blocks from the passed List.
+     * Sets the snapshot of the board to draw. Rows of frozen blocks that differ
+     * from the previous snapshot are marked to be drawn again.
      * 
-     * @param theFrozen The list of frozen blocks to draw.
+     * @param theSnapshot The snapshot of the board.
      */
-    public void setFrozen(final List<Block[]> theFrozen) {
-        myFrozen = theFrozen;
+    public void setSnapshot(final BoardSnapshot theSnapshot) {
+        final BoardSnapshot old = mySnapshot;
+        mySnapshot = theSnapshot;
+        if (old == null || old.getWidth() != theSnapshot.getWidth()
+            || old.getRows() != theSnapshot.getRows()) {
+            myFrozenImage = null;
+        } else if (old.getFrozenVersion() != theSnapshot.getFrozenVersion()) {
+            for (int y = 0; y < theSnapshot.getRows(); y++) {
+                for (int x = 0; x < theSnapshot.getWidth(); x++) {
+                    if (old.getBlock(x, y) != theSnapshot.getBlock(x, y)) {
+                        myDirtyRows.set(y);
+                    }
+                }
+            }
+        }
     }
     
     /**
@@ -5,7 +5,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
-import java.util.Observable;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JFrame;
@@ -22,7 +23,7 @@ import javax.swing.JRadioButtonMenuItem;
  * @version Autumn 2014
  */
 
-public class MenuBar extends Observable {
+public class MenuBar {
     
     /** Constant representing the peaceful game mode. */
     public static final int GAME_PEACEFUL = 0;
@@ -33,6 +34,12 @@ public class MenuBar extends Observable {
     /** Constant representing the hard game mode. */
     public static final int GAME_HARD = 2;
 
+    /** The name of the property changed when a game is ended or started. */
+    public static final String GAME_ENDED = "gameEnded";
+
+    /** The name of the property changed when the game mode is picked. */
+    public static final String GAME_MODE = "gameMode";
+
     /** The JMenuBar. */
     private final JMenuBar myMenuBar;
     
@@ -54,6 +61,9 @@ public class MenuBar extends Observable {
     /** The current game mode. */
     private int myCurrentMode;
     
+    /** Tells the listeners about the menu's changes. */
+    private final PropertyChangeSupport myChanges;
+    
     /**
      * MenuBar constructor.
      * 
@@ -68,6 +78,7 @@ public class MenuBar extends Observable {
         myGameMode = new JMenu("Game Modes");
         myIsGameEnded = false;
         myCurrentMode = GAME_NORMAL;
+        myChanges = new PropertyChangeSupport(this);
         setup();
     }
     /**
@@ -141,24 +152,21 @@ public class MenuBar extends Observable {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
                 myCurrentMode = GAME_PEACEFUL;
-                setChanged();
-                notifyObservers(myCurrentMode);                
+                fireChange(GAME_MODE, myCurrentMode);
             }
         });
         theNormal.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
                 myCurrentMode = GAME_NORMAL;
-                setChanged();
-                notifyObservers(myCurrentMode);                
+                fireChange(GAME_MODE, myCurrentMode);
             }
         });
         theHard.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
                 myCurrentMode = GAME_HARD;
-                setChanged();
-                notifyObservers(myCurrentMode);                
+                fireChange(GAME_MODE, myCurrentMode);
             }
         });
     }
@@ -181,8 +189,7 @@ public class MenuBar extends Observable {
                 theEndgame.setEnabled(true);
                 theNewgame.setEnabled(false);
                 myIsGameEnded = false;
-                setChanged();
-                notifyObservers(myIsGameEnded);
+                fireChange(GAME_ENDED, myIsGameEnded);
             }
         });  
         
@@ -193,8 +200,7 @@ public class MenuBar extends Observable {
                 myIsGameEnded = true;
                 theNewgame.setEnabled(true);
                 theEndgame.setEnabled(false);
-                setChanged();
-                notifyObservers(myIsGameEnded);
+                fireChange(GAME_ENDED, myIsGameEnded);
             }
         });       
         
@@ -264,4 +270,25 @@ public class MenuBar extends Observable {
     public boolean isGameEnded() {
         return myIsGameEnded;
     }
+    
+    /**
+     * Adds a listener told when a game is ended or started or the game mode
+     * is picked.
+     * 
+     * @param theListener The listener.
+     */
+    public void addPropertyChangeListener(final PropertyChangeListener theListener) {
+        myChanges.addPropertyChangeListener(theListener);
+    }
+    
+    /**
+     * Tells the listeners the new value of a property. They are told even if
+     * it has not changed, as each menu action is meant to reach them.
+     * 
+     * @param theProperty The name of the property.
+     * @param theValue The new value.
+     */
+    private void fireChange(final String theProperty, final Object theValue) {
+        myChanges.firePropertyChange(theProperty, null, theValue);
+    }
 }
@@ -11,8 +11,8 @@ import java.awt.RenderingHints;
 
 import javax.swing.JPanel;
 
-import model.AbstractPiece;
-import model.Piece;
+import model.Block;
+import model.PieceShapes;
 
 /**
  * Preview panel. Displays the next piece and the controls.
@@ -36,12 +36,13 @@ public class PreviewPanel extends JPanel {
     /** Default border size. */
     protected static final int DEFAULT_BORDER = 4;    
     
-    /** The preview piece. */
-    private Piece myPreview;
+    /** The shape of the preview piece, or -1 if there is none. */
+    private int myPreview;
     
     /** Preview panel constructor. */
     public PreviewPanel() {
         super();
+        myPreview = -1;
         setup();
     }
     
@@ -68,7 +69,7 @@ public class PreviewPanel extends JPanel {
         graphics2d.setColor(Color.LIGHT_GRAY);
         graphics2d.drawRect(2, 2, this.getWidth() - DEFAULT_BORDER, 
                             DISPLAY_SIZE.height - DEFAULT_BORDER);        
-        if (myPreview != null) {
+        if (myPreview >= 0) {
             drawPiece(graphics2d);
         }        
         drawControls(graphics2d);
@@ -80,17 +81,15 @@ public class PreviewPanel extends JPanel {
      * @param theGraphics The graphics component to draw with.
      */
     private void drawPiece(final Graphics2D theGraphics) {
-        final Color pieceColor = ((AbstractPiece) myPreview).getBlock().getColor();
+        final Color pieceColor =
+            BlockPalette.getColor(Block.values()[PieceShapes.type(myPreview)]);
         final int blockSize  = 20;
         theGraphics.setStroke(new BasicStroke(1));
         theGraphics.setColor(Color.BLACK);
-        final int[][] coords = ((AbstractPiece) myPreview).getBoardCoordinates();
-        for (int i = 0; i < coords.length; i++) {
+        for (int i = 0; i < PieceShapes.BLOCKS; i++) {
             final int offset = 40;
-            final int coordOffsetX = 3;
-            final int coordOffsetY = 20;
-            final int x = coords[i][0] - coordOffsetX;
-            final int y = coords[i][1] - coordOffsetY;
+            final int x = PieceShapes.cellX(myPreview, i);
+            final int y = PieceShapes.cellY(myPreview, i);
             theGraphics.setColor(pieceColor);
             theGraphics.fillRect(x * blockSize + DEFAULT_BORDER + offset, DISPLAY_SIZE.height
                                  - DEFAULT_BORDER - blockSize - y * blockSize,
@@ -126,17 +125,17 @@ public class PreviewPanel extends JPanel {
         }    
     }
     /**
-     * Sets myPreviewPiece.
-     * @param thePiece The next piece.
+     * Sets the preview piece.
+     * @param theShape The shape of the next piece, or -1 if there is none.
      */
-    public void setPreview(final Piece thePiece) {
-        myPreview = thePiece;
+    public void setPreview(final int theShape) {
+        myPreview = theShape;
     }
     /**
-     * Returns a reference to the myPreviewPiece.
-     * @return The next piece.
+     * Returns the shape of the preview piece.
+     * @return The shape of the next piece, or -1 if there is none.
      */
-    public Piece getPreview() {
+    public int getPreview() {
         return myPreview;
     }
 }
@@ -3,11 +3,9 @@ package view;
 import java.awt.Color;
 import java.awt.Font;
 
-import java.util.List;
-
 import javax.swing.JTextArea;
 
-import model.Block;
+import model.Scoring;
 
 /**
  * 
@@ -19,18 +17,12 @@ public class ScorePanel {
     /** Keeps track of the score. */
     private int myScore;
     
-    /** The list of frozen block arrays. */
-    private List<Block[]> myFrozen;
-    
     /** The Score Display. */
     private final JTextArea myScoreDisplay;
     
     /** The number of lines cleared in the current game. */
     private int myLinesCleared;
     
-    /** The current number of lines on the board. */
-    private int myCurrentLines;
-    
     /** Score Panel constructor. */
     public ScorePanel() {
         myScore = 0;
@@ -54,8 +46,7 @@ public class ScorePanel {
     /** Updates the text in the Score Display. */
     private void updateScore() {
         myScoreDisplay.setText(String.format("Score: %d\nLines: %d\nLevel: %d", myScore, 
-                                             myLinesCleared, myLinesCleared 
-                                             / (int) GUI.DEFAULT_GRID.getHeight() + 1));
+                                             myLinesCleared, Scoring.level(myLinesCleared)));
     }
 
     /**
@@ -70,24 +61,16 @@ public class ScorePanel {
     
     /**
      * Tallies the score from lines cleared.
+     * 
+     * @param theLines The number of lines cleared at once.
      */
-    public void tallyLineClear() {
-        final int[] linePts = {40, 100, 300, 1200};
-        final int size = myFrozen.size();
-        final int maxLinesCleared = 4;  //can't clear more than 4 lines at once in this version
-                                        //of Tetris.        
-        if (size < myCurrentLines) {
-            final int lines = myCurrentLines - size;
-            final int level = myLinesCleared / (int) GUI.DEFAULT_GRID.getHeight() + 1;
-            myLinesCleared += lines;
-            for (int i = 0; i < maxLinesCleared; i++) {
-                if (lines == i + 1) {
-                    myScore += level * linePts[i];
-                }
-            }
+    public void tallyLineClear(final int theLines) {
+        //can't clear more than 4 lines at once in this version of Tetris.
+        if (theLines <= Scoring.MAX_LINES) {
+            myScore += Scoring.points(theLines, Scoring.level(myLinesCleared));
         }
+        myLinesCleared += theLines;
         updateScore();
-        myCurrentLines = size;
     }
     
     /**
@@ -96,7 +79,6 @@ public class ScorePanel {
     public void reset() {
         myScore = 0;
         myLinesCleared = 0;
-        myCurrentLines = 0;
         updateScore();
     }
 
@@ -108,12 +90,4 @@ public class ScorePanel {
     public int getLinesCleared() {
         return myLinesCleared;
     }
-    
-    /**
-     * 
-     * @param theList The list of frozen block arrays.
-     */
-    public void setFrozen(final List<Block[]> theList) {
-        myFrozen = theList;
-    }
 }